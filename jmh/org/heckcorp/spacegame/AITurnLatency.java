@@ -0,0 +1,108 @@
+package org.heckcorp.spacegame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.heckcorp.spacegame.metrics.Counter;
+import org.heckcorp.spacegame.metrics.Metrics;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.GameState;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.UnitStore;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports how long the computer takes to plan a turn, and for how many of its units, as the number
+ * of units per side grows. Maps are sized so units cover about an eighth of the hexes. Turns are
+ * planned with the usual budgets, so for large armies most units get fallback plans rather than
+ * searched ones, and the hit rate of the planner's transposition table shows how much of the
+ * search it saved. This is a plain program rather than a JMH benchmark, since each turn changes
+ * the game; run it with {@code gradle aiTurnLatency}, optionally passing units per side with
+ * {@code -PaiTurnLatencyArgs="1 100"}.
+ */
+public class AITurnLatency {
+  public static void main(String[] args) {
+    int[] unitCounts =
+        args.length == 0
+            ? DEFAULT_UNIT_COUNTS
+            : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+    System.out.printf(
+        "%-10s %9s %7s %10s %10s %12s %9s %8s%n",
+        "Units/side", "Map", "Turns", "Mean ms", "p99 ms", "Units moved", "Fallback", "TT hits");
+    for (int unitsPerSide : unitCounts) {
+      run(unitsPerSide);
+    }
+  }
+
+  private static void run(int unitsPerSide) {
+    int mapSize = Math.max(MIN_MAP_SIZE, (int) Math.ceil(Math.sqrt(unitsPerSide * 2 * 8.0)));
+    MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS, mapSize, mapSize);
+    Player red = new Player("Red", Player.Type.COMPUTER, .75, .25, .25);
+    Player blue = new Player("Blue", Player.Type.COMPUTER, .25, .45, .85);
+    GameState gameState = new GameState(mapUtils, ImmutableList.of(red, blue));
+    UnitStore unitStore = new UnitStore(unitsPerSide * 2);
+    ViewResources.Identifier imageId = new ViewResources.Identifier();
+    SplittableRandom random = new SplittableRandom(0);
+    Set<Point> occupied = Sets.newHashSet();
+    for (int i = 0; i < unitsPerSide * 2; i++) {
+      Point point;
+      do {
+        point = new Point(random.nextInt(mapSize), random.nextInt(mapSize));
+      } while (!occupied.add(point));
+      Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+      gameState.addUnit(
+          unitStore.allocate(i % 2 == 0 ? red : blue, imageId), new MapPosition(point, direction));
+    }
+
+    AIPlanner planner = new AIPlanner(mapUtils);
+    long[] turnNanos = new long[TURNS];
+    long unitsMoved = 0;
+    long fallbackPlans = 0;
+    int turns = 0;
+    for (int turn = -WARMUP_TURNS; turn < TURNS && gameState.getWinner() == null; turn++) {
+      long fallbacksBefore = fallbackCounter.get();
+      long start = System.nanoTime();
+      ImmutableList<AIPlanner.Plan> plans =
+          planner.planTurn(
+              gameState,
+              gameState.getCurrentPlayer(),
+              start + TimeUnit.MILLISECONDS.toNanos(Constants.AI_TURN_BUDGET_MILLIS));
+      long elapsed = System.nanoTime() - start;
+      if (turn >= 0) {
+        turnNanos[turns++] = elapsed;
+        unitsMoved += plans.size();
+        fallbackPlans += fallbackCounter.get() - fallbacksBefore;
+      }
+      plans.forEach(plan -> plan.apply(gameState));
+      gameState.endTurn();
+    }
+
+    long[] measured = Arrays.copyOf(turnNanos, turns);
+    Arrays.sort(measured);
+    double mean = Arrays.stream(measured).average().orElse(0) / 1e6;
+    double p99 = turns == 0 ? 0 : measured[Math.min(turns - 1, (int) (turns * .99))] / 1e6;
+    System.out.printf(
+        "%-10d %9s %7d %10.1f %10.1f %12.1f %9.1f %7.1f%%%n",
+        unitsPerSide,
+        mapSize + "x" + mapSize,
+        turns,
+        mean,
+        p99,
+        turns == 0 ? 0 : (double) unitsMoved / turns,
+        turns == 0 ? 0 : (double) fallbackPlans / turns,
+        planner.getTranspositionTable().getHitRate() * 100);
+  }
+
+  private static final int[] DEFAULT_UNIT_COUNTS = {1, 10, 100, 1_000, 10_000};
+  private static final Counter fallbackCounter = Metrics.counter("ai.fallback_plans");
+  private static final int MIN_MAP_SIZE = 10;
+  private static final int TURNS = 20;
+  private static final int WARMUP_TURNS = 4;
+}
@@ -0,0 +1,259 @@
+package org.heckcorp.spacegame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.GameSnapshot;
+import org.heckcorp.spacegame.model.GameState;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Model;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
+import org.heckcorp.spacegame.model.UnitStats;
+import org.heckcorp.spacegame.model.UnitStore;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Checks that the {@link Model} stays consistent under concurrent use. Writer threads queue random
+ * moves, attacks and ends of turn, the computer player plans its turns on snapshots, and reader
+ * threads check every snapshot they get: each unit is in the hex its position says, the copy of
+ * the state agrees with the snapshot, stats and hash included, and versions never go backwards.
+ * At the end the last snapshot and the JavaFX properties must both match the game state. A
+ * single-threaded executor stands in for the FX thread. Run it with {@code gradle modelStress},
+ * optionally passing the number of seconds with {@code -PmodelStressArgs="30"}; it exits with
+ * status 1 if anything was inconsistent.
+ */
+public class ModelStress {
+  public static void main(String[] args) throws InterruptedException {
+    long seconds = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_SECONDS;
+    MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS);
+    Player computer = new Player("Computer", Player.Type.COMPUTER, .75, .25, .25);
+    Player human = new Player("Human", Player.Type.HUMAN, .25, .45, .85);
+    GameState gameState = new GameState(mapUtils, ImmutableList.of(computer, human));
+    UnitStore unitStore = new UnitStore(UNITS_PER_SIDE * 2);
+    ViewResources.Identifier imageId = new ViewResources.Identifier();
+    SplittableRandom random = new SplittableRandom(0);
+    Set<Point> occupied = Sets.newHashSet();
+    for (int i = 0; i < UNITS_PER_SIDE * 2; i++) {
+      Point point;
+      do {
+        point =
+            new Point(random.nextInt(Constants.MAP_WIDTH), random.nextInt(Constants.MAP_HEIGHT));
+      } while (!occupied.add(point));
+      // Units are hard to destroy, so the game goes on for the whole run.
+      Unit unit =
+          unitStore.allocate(
+              i % 2 == 0 ? computer : human,
+              imageId,
+              Unit.DEFAULT_ATTACK_STRENGTH,
+              UNIT_HEALTH,
+              Unit.DEFAULT_MAX_ENERGY,
+              Unit.DEFAULT_MAX_ARMOR);
+      gameState.addUnit(unit, new MapPosition(point, Direction.NORTH));
+    }
+
+    ExecutorService uiExecutor = Executors.newSingleThreadExecutor();
+    Model model = Model.create(mapUtils, gameState, uiExecutor);
+    AIPlayer aiPlayer = new AIPlayer(mapUtils, AI_TURN_BUDGET_MILLIS);
+    Queue<String> errors = new ConcurrentLinkedQueue<>();
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicLong commandsQueued = new AtomicLong();
+    AtomicLong snapshotsChecked = new AtomicLong();
+    AtomicLong computerTurns = new AtomicLong();
+
+    List<Thread> threads = Lists.newArrayList();
+    for (int i = 0; i < WRITERS; i++) {
+      long seed = i;
+      threads.add(
+          new Thread(
+              () -> {
+                SplittableRandom writerRandom = new SplittableRandom(seed);
+                while (running.get()) {
+                  model.submit(randomCommand(model.getSnapshot(), writerRandom)).join();
+                  commandsQueued.incrementAndGet();
+                }
+              }));
+    }
+    for (int i = 0; i < READERS; i++) {
+      threads.add(
+          new Thread(
+              () -> {
+                long lastVersion = -1;
+                while (running.get()) {
+                  GameSnapshot snapshot = model.getSnapshot();
+                  if (snapshot.getVersion() < lastVersion) {
+                    errors.add("Version went from " + lastVersion + " to " + snapshot.getVersion());
+                  }
+                  lastVersion = snapshot.getVersion();
+                  check(snapshot, errors);
+                  snapshotsChecked.incrementAndGet();
+                }
+              }));
+    }
+    threads.add(
+        new Thread(
+            () -> {
+              while (running.get()) {
+                if (model.getSnapshot().getCurrentPlayer().equals(computer)) {
+                  aiPlayer.playTurn(model, computer);
+                  computerTurns.incrementAndGet();
+                } else {
+                  Thread.onSpinWait();
+                }
+              }
+            }));
+    threads.forEach(Thread::start);
+    Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // Once the writer has run everything queued, the last snapshot must match the game state, and
+    // once the UI executor has too, so must the properties.
+    model.submit(state -> compare(state, model.getSnapshot(), errors)).join();
+    uiExecutor.submit(() -> compare(model, gameState, errors));
+    uiExecutor.shutdown();
+    uiExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    model.shutdown();
+
+    System.out.printf("Commands queued:   %,d%n", commandsQueued.get());
+    System.out.printf("Computer turns:    %,d%n", computerTurns.get());
+    System.out.printf("Snapshots checked: %,d%n", snapshotsChecked.get());
+    System.out.printf("Final version:     %,d%n", model.getSnapshot().getVersion());
+    System.out.printf("Errors:            %,d%n", errors.size());
+    errors.stream().limit(MAX_ERRORS_SHOWN).forEach(System.out::println);
+    if (!errors.isEmpty()) {
+      System.exit(1);
+    }
+  }
+
+  /** Returns a move, rotation or attack by a random unit, or now and then the end of the turn. */
+  private static Consumer<GameState> randomCommand(
+      GameSnapshot snapshot, SplittableRandom random) {
+    ImmutableList<Unit> units = snapshot.getUnits();
+    if (units.isEmpty() || random.nextInt(END_TURN_ODDS) == 0) {
+      return GameState::endTurn;
+    }
+    Unit unit = units.get(random.nextInt(units.size()));
+    Unit other = units.get(random.nextInt(units.size()));
+    return switch (random.nextInt(4)) {
+      case 0 -> state -> state.rotateLeft(unit);
+      case 1 -> state -> state.rotateRight(unit);
+      case 2 -> state -> state.attack(unit, other);
+      default -> state -> state.moveForward(unit);
+    };
+  }
+
+  private static void check(GameSnapshot snapshot, Queue<String> errors) {
+    ImmutableList<Unit> units = snapshot.getUnits();
+    String version = "Version " + snapshot.getVersion() + ": ";
+    if (ImmutableSet.copyOf(units).size() != units.size()) {
+      errors.add(version + "a unit is listed twice");
+    }
+    Set<Point> hexes = Sets.newHashSet();
+    for (Unit unit : units) {
+      @Nullable MapPosition position = snapshot.getPosition(unit);
+      if (position == null) {
+        errors.add(version + "a unit has no position");
+        continue;
+      }
+      hexes.add(position.position());
+      if (!snapshot.getUnitsAt(position.position()).contains(unit)) {
+        errors.add(version + "a unit isn't in its hex " + position.position());
+      }
+    }
+    if (snapshot.getUnitsIn(hexes).size() != units.size()) {
+      errors.add(version + "the hexes hold a different number of units than the game");
+    }
+    GameState copy = snapshot.copyState();
+    List<Unit> copiedUnits = Lists.newArrayList(copy.getUnits());
+    if (copiedUnits.size() != units.size()) {
+      errors.add(version + "the copied state has a different number of units");
+      return;
+    }
+    for (int i = 0; i < units.size(); i++) {
+      @Nullable MapPosition copiedPosition = copy.getPosition(copiedUnits.get(i));
+      if (!Objects.equals(copiedPosition, snapshot.getPosition(units.get(i)))) {
+        errors.add(version + "a copied unit is somewhere else");
+      }
+      if (!UnitStats.of(copiedUnits.get(i)).equals(snapshot.getStats(units.get(i)))) {
+        errors.add(version + "a copied unit has other stats");
+      }
+    }
+    // The hash covers every unit's position and stats, so a torn snapshot would show up here.
+    if (copy.getHash() != snapshot.getHash()) {
+      errors.add(version + "the copied state's hash differs from the snapshot's");
+    }
+    @Nullable Player winner = snapshot.getWinner();
+    if (winner != null && units.stream().anyMatch(unit -> !unit.getOwner().equals(winner))) {
+      errors.add(version + "the winner isn't the only player left");
+    }
+  }
+
+  private static void compare(GameState gameState, GameSnapshot snapshot, Queue<String> errors) {
+    if (!snapshot.getUnits().equals(ImmutableList.copyOf(gameState.getUnits()))) {
+      errors.add("The last snapshot's units differ from the game's");
+      return;
+    }
+    for (Unit unit : snapshot.getUnits()) {
+      if (!Objects.equals(snapshot.getPosition(unit), gameState.getPosition(unit))) {
+        errors.add("The last snapshot has a unit somewhere else than the game");
+      }
+      if (!UnitStats.of(unit).equals(snapshot.getStats(unit))) {
+        errors.add("The last snapshot has other stats for a unit than the game");
+      }
+    }
+    if (!snapshot.getCurrentPlayer().equals(gameState.getCurrentPlayer())
+        || snapshot.getTurnCount() != gameState.getTurnCount()) {
+      errors.add("The last snapshot is on a different turn than the game");
+    }
+  }
+
+  private static void compare(Model model, GameState gameState, Queue<String> errors) {
+    Map<Unit, MapPosition> positions = Maps.newHashMap();
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      positions.put(unit, position);
+    }
+    if (!positions.keySet().equals(model.unitsProperty())) {
+      errors.add("The units property differs from the game's units");
+    }
+    if (!positions.equals(model.unitPositionsProperty())) {
+      errors.add("The unit positions property differs from the game's positions");
+    }
+    if (!model.currentPlayerProperty().get().equals(gameState.getCurrentPlayer())) {
+      errors.add("The current player property differs from the game's");
+    }
+  }
+
+  private static final long AI_TURN_BUDGET_MILLIS = 20;
+  private static final long DEFAULT_SECONDS = 10;
+  private static final int END_TURN_ODDS = 50;
+  private static final int MAX_ERRORS_SHOWN = 20;
+  private static final int READERS = 4;
+  private static final int UNIT_HEALTH = 1_000_000;
+  private static final int UNITS_PER_SIDE = 20;
+  private static final int WRITERS = 4;
+}
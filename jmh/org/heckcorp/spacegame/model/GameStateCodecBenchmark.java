@@ -0,0 +1,127 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares saving and loading games with GameStateCodec against Java serialization of the same
+ * units and positions. The file sizes are printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameStateCodecBenchmark {
+  @Param({"1000", "100000"})
+  public int units;
+
+  @Setup
+  public void setUp() throws IOException {
+    int mapSize = (int) Math.ceil(Math.sqrt(units * 4.0));
+    mapUtils = new MapUtils(Constants.HEX_RADIUS, mapSize, mapSize);
+    Player red = new Player("Red", Player.Type.COMPUTER, .75, .25, .25);
+    Player blue = new Player("Blue", Player.Type.COMPUTER, .25, .45, .85);
+    gameState = new GameState(mapUtils, ImmutableList.of(red, blue));
+    UnitStore unitStore = new UnitStore(units);
+    SplittableRandom random = new SplittableRandom(0);
+    for (int i = 0; i < units; i++) {
+      Unit unit = unitStore.allocate(i % 2 == 0 ? red : blue, imageId);
+      Point point = new Point(random.nextInt(mapSize), random.nextInt(mapSize));
+      Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+      gameState.addUnit(unit, new MapPosition(point, direction));
+    }
+
+    codecFile = Files.createTempFile("codec", ".sav");
+    serializedFile = Files.createTempFile("serialized", ".sav");
+    codecWrite();
+    serializationWrite();
+    System.out.printf(
+        "%n%d units: codec %,d bytes, serialization %,d bytes%n",
+        units, Files.size(codecFile), Files.size(serializedFile));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(codecFile);
+    Files.deleteIfExists(serializedFile);
+  }
+
+  @Benchmark
+  public void codecWrite() throws IOException {
+    GameStateCodec.write(gameState, codecFile);
+  }
+
+  @Benchmark
+  public GameState codecRead() throws IOException {
+    return GameStateCodec.read(codecFile, mapUtils, imageId);
+  }
+
+  /**
+   * The model's positions aren't serializable, so this writes the units as objects and their
+   * positions as an int array alongside them.
+   */
+  @Benchmark
+  public void serializationWrite() throws IOException {
+    List<Unit> unitList = Lists.newArrayList(gameState.getUnits());
+    int[] positions = new int[unitList.size() * 3];
+    int i = 0;
+    for (Unit unit : unitList) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      positions[i++] = position.position().x();
+      positions[i++] = position.position().y();
+      positions[i++] = position.direction().ordinal();
+    }
+    try (ObjectOutputStream out =
+        new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(serializedFile)))) {
+      out.writeObject(gameState.getPlayers().toArray(new Player[0]));
+      out.writeInt(gameState.getTurnCount());
+      out.writeObject(unitList);
+      out.writeObject(positions);
+    }
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public GameState serializationRead() throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in =
+        new ObjectInputStream(new BufferedInputStream(Files.newInputStream(serializedFile)))) {
+      Player[] players = (Player[]) in.readObject();
+      in.readInt();
+      List<Unit> unitList = (List<Unit>) in.readObject();
+      int[] positions = (int[]) in.readObject();
+      GameState result = new GameState(mapUtils, ImmutableList.copyOf(players));
+      int i = 0;
+      for (Unit unit : unitList) {
+        Point point = new Point(positions[i++], positions[i++]);
+        result.addUnit(unit, new MapPosition(point, Direction.values()[positions[i++]]));
+      }
+      return result;
+    }
+  }
+
+  private Path codecFile;
+  private GameState gameState;
+  private final ViewResources.Identifier imageId = new ViewResources.Identifier();
+  private MapUtils mapUtils;
+  private Path serializedFile;
+}
@@ -0,0 +1,73 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.Maps;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/** Compares finding the units in a hex by scanning every unit position against HexIndex. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexIndexBenchmark {
+  @Param({"10", "1000", "100000"})
+  public int units;
+
+  @Setup
+  public void setUp() {
+    // Leave roughly three empty hexes for every unit.
+    mapSize = (int) Math.ceil(Math.sqrt(units * 4.0));
+    Player player = new Player("Player", Player.Type.COMPUTER, 0, 0, 0);
+    ViewResources.Identifier imageId = new ViewResources.Identifier();
+    SplittableRandom random = new SplittableRandom(0);
+    for (int i = 0; i < units; i++) {
+      Unit unit = new Unit(player, imageId);
+      Point point = randomPoint(random);
+      unitPositions.put(unit, new MapPosition(point, Direction.NORTH));
+      hexIndex.add(unit, point);
+    }
+    for (int i = 0; i < SAMPLES; i++) {
+      queries[i] = randomPoint(random);
+    }
+  }
+
+  @Benchmark
+  public List<Unit> scan() {
+    Point point = queries[nextIndex()];
+    return unitPositions.entrySet().stream()
+        .filter(e -> e.getValue().position().equals(point))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<Unit> index() {
+    return hexIndex.getUnitsAt(queries[nextIndex()]);
+  }
+
+  private int nextIndex() {
+    index = (index + 1) & (SAMPLES - 1);
+    return index;
+  }
+
+  private Point randomPoint(SplittableRandom random) {
+    return new Point(random.nextInt(mapSize), random.nextInt(mapSize));
+  }
+
+  private static final int SAMPLES = 1024;
+
+  private final HexIndex hexIndex = new HexIndex();
+  private int index;
+  private int mapSize;
+  private final Point[] queries = new Point[SAMPLES];
+  private final Map<Unit, MapPosition> unitPositions = Maps.newHashMap();
+}
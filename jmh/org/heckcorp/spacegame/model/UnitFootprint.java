@@ -0,0 +1,54 @@
+package org.heckcorp.spacegame.model;
+
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.util.function.IntFunction;
+
+/**
+ * Reports the retained heap per unit for units that each own their stats and for units allocated
+ * from one shared {@link UnitStore}. This measures retained size rather than time, so it is a plain
+ * program rather than a JMH benchmark; run it with {@code gradle unitFootprint}.
+ */
+public class UnitFootprint {
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    Player player = new Player("Player", Player.Type.COMPUTER, 0, 0, 0);
+    ViewResources.Identifier imageId = new ViewResources.Identifier();
+
+    double standalone = measure(count, n -> {
+      Unit[] units = new Unit[n];
+      for (int i = 0; i < n; i++) {
+        units[i] = new Unit(player, imageId);
+      }
+      return units;
+    });
+    double stored = measure(count, n -> {
+      UnitStore store = new UnitStore(n);
+      Unit[] units = new Unit[n];
+      for (int i = 0; i < n; i++) {
+        units[i] = store.allocate(player, imageId);
+      }
+      return units;
+    });
+    System.out.printf("Units:                   %d%n", count);
+    System.out.printf("Own stats (bytes/unit):  %.1f%n", standalone);
+    System.out.printf("UnitStore (bytes/unit):  %.1f%n", stored);
+  }
+
+  private static double measure(int count, IntFunction<Unit[]> allocator) {
+    long before = usedMemory();
+    Unit[] units = allocator.apply(count);
+    long after = usedMemory();
+    // Keep the units reachable until after the measurement; the array itself is not counted.
+    long arrayBytes = 16L + 4L * units.length;
+    return (after - before - arrayBytes) / (double) count;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,187 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import javafx.animation.AnimationTimer;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.stage.Stage;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.ResourceLoader;
+import org.heckcorp.spacegame.SequentialExecutor;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the node and canvas map renderers on maps of several sizes: the time to build the map
+ * and show its first frame, the heap it holds, and the frame times while counters move. Frame
+ * times need real pulses, so this is a JavaFX program rather than a JMH benchmark; run it with
+ * {@code gradle mapFrameTimes}, optionally passing map sizes with {@code
+ * -PmapFrameTimesArgs="20 100"}. Pulses run at full speed rather than at the display's refresh
+ * rate, so the frame times show what rendering costs.
+ */
+public class MapRenderFrameTimes extends Application {
+  @Override
+  public void start(Stage stage) throws FileNotFoundException {
+    List<String> args = getParameters().getRaw();
+    int[] mapSizes =
+        args.isEmpty() ? DEFAULT_MAP_SIZES : args.stream().mapToInt(Integer::parseInt).toArray();
+    for (int mapSize : mapSizes) {
+      trials.add(new Trial("nodes", MapPane::create, mapSize));
+      trials.add(new Trial("canvas", CanvasMapPane::create, mapSize));
+    }
+    System.out.printf(
+        "%-8s %9s %10s %10s %8s %10s %10s%n",
+        "Renderer", "Map", "Setup ms", "Heap KB", "Frames", "Mean ms", "p99 ms");
+    runNextTrial(stage);
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("javafx.animation.fullspeed", "true");
+    System.setProperty("prism.vsync", "false");
+    launch(args);
+  }
+
+  private void runNextTrial(Stage stage) throws FileNotFoundException {
+    if (trials.isEmpty()) {
+      Platform.exit();
+      return;
+    }
+    Trial trial = trials.remove(0);
+    long setupStart = System.nanoTime();
+    MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS, trial.mapSize(), trial.mapSize());
+    ViewResources viewResources = new ViewResources();
+    ViewResources.Identifier imageId =
+        viewResources.addImageResource(ResourceLoader.getResource("resource/spaceship.png"));
+    SequentialExecutor sequentialExecutor = new SequentialExecutor();
+    MapView mapView =
+        trial.factory().create(mapUtils, (hex, button) -> {}, viewResources, sequentialExecutor);
+    ScrollPane scrollPane = new ScrollPane(mapView.asRegion());
+    scrollPane.setPrefSize(
+        Constants.UI_COMPONENT_LARGE_WIDTH, Constants.UI_COMPONENT_LARGE_HEIGHT);
+    MapView.trackViewport(scrollPane, mapView);
+    stage.setScene(new Scene(scrollPane));
+    stage.show();
+
+    // Units start in the top left of the map, where the scroll pane shows them.
+    SplittableRandom random = new SplittableRandom(0);
+    ImmutableList<Player> players =
+        ImmutableList.of(
+            new Player("Blue", Player.Type.COMPUTER, .25, .45, .85),
+            new Player("Red", Player.Type.COMPUTER, .75, .25, .25));
+    Map<Unit, MapPosition> positions = Maps.newLinkedHashMap();
+    int startArea = Math.min(trial.mapSize(), START_AREA_SIZE);
+    for (int i = 0; i < UNITS; i++) {
+      Unit unit = new Unit(players.get(i % players.size()), imageId);
+      MapPosition position =
+          new MapPosition(
+              new Point(random.nextInt(startArea), random.nextInt(startArea)),
+              Direction.values()[random.nextInt(Direction.values().length)]);
+      positions.put(unit, position);
+      mapView.addUnit(unit, position);
+    }
+    List<Unit> units = Lists.newArrayList(positions.keySet());
+
+    FrameTimer frameTimer = new FrameTimer();
+    frameTimer.start();
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          long setupNanos = System.nanoTime() - setupStart;
+          for (int i = 0; i < MOVES; i++) {
+            Unit unit = units.get(random.nextInt(units.size()));
+            MapPosition from = positions.get(unit);
+            assert from != null : "@AssumeAssertion(nullness)";
+            Point ahead = mapUtils.getAdjacentHex(from);
+            MapPosition to =
+                mapUtils.isInsideMap(ahead)
+                    ? new MapPosition(ahead, from.direction())
+                    : new MapPosition(from.position(), from.direction().right());
+            positions.put(unit, to);
+            mapView.moveUnit(unit, from, to);
+          }
+          frameTimer.startMeasuring();
+          sequentialExecutor.runLaterSequentially(
+              () -> {
+                frameTimer.stop();
+                report(trial, setupNanos, frameTimer.getFrameNanos());
+                try {
+                  runNextTrial(stage);
+                } catch (FileNotFoundException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+        });
+  }
+
+  private static void report(Trial trial, long setupNanos, long[] frameNanos) {
+    System.gc();
+    Runtime runtime = Runtime.getRuntime();
+    long heapKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+    Arrays.sort(frameNanos);
+    double mean = Arrays.stream(frameNanos).average().orElse(0) / 1e6;
+    double p99 =
+        frameNanos.length == 0
+            ? 0
+            : frameNanos[Math.min(frameNanos.length - 1, (int) (frameNanos.length * .99))] / 1e6;
+    System.out.printf(
+        "%-8s %9s %10.1f %,10d %8d %10.2f %10.2f%n",
+        trial.renderer(),
+        trial.mapSize() + "x" + trial.mapSize(),
+        setupNanos / 1e6,
+        heapKb,
+        frameNanos.length,
+        mean,
+        p99);
+  }
+
+  private static final int[] DEFAULT_MAP_SIZES = {20, 100, 500};
+  private static final int MOVES = 100;
+  private static final int START_AREA_SIZE = 10;
+  private static final int UNITS = 40;
+
+  private final List<Trial> trials = Lists.newArrayList();
+
+  private interface MapViewFactory {
+    MapView create(
+        MapUtils mapUtils,
+        MapModel model,
+        ViewResources viewResources,
+        SequentialExecutor sequentialExecutor);
+  }
+
+  private record Trial(String renderer, MapViewFactory factory, int mapSize) {}
+
+  /** Records the time between consecutive pulses once measuring starts. */
+  private static class FrameTimer extends AnimationTimer {
+    @Override
+    public void handle(long now) {
+      if (measuring && lastPulse != 0) {
+        frameNanos.add(now - lastPulse);
+      }
+      lastPulse = now;
+    }
+
+    long[] getFrameNanos() {
+      return frameNanos.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    void startMeasuring() {
+      measuring = true;
+    }
+
+    private final List<Long> frameNanos = Lists.newArrayList();
+    private long lastPulse;
+    private boolean measuring;
+  }
+}
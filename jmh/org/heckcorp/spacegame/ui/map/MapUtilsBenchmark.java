@@ -0,0 +1,162 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.Sets;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hex geometry used by every AI decision and targeting click. Each benchmark takes
+ * the state holding the parameters it depends on, so it only runs for their combinations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapUtilsBenchmark {
+  @Benchmark
+  public int distance(OffsetTableState state) {
+    int i = state.nextIndex();
+    return state.mapUtils.distance(state.sources[i], state.destinations[i]);
+  }
+
+  @Benchmark
+  public Point getAdjacentHex(MapState state) {
+    return state.mapUtils.getAdjacentHex(state.positions[state.nextIndex()]);
+  }
+
+  @Benchmark
+  public int getHexDirection(OffsetTableState state) {
+    int i = state.nextIndex();
+    return state.mapUtils.getHexDirection(state.sources[i], state.destinations[i]);
+  }
+
+  /** Looks up target hexes that are in the cache, since the samples all fit in it. */
+  @Benchmark
+  public void getTargetHexes(WeaponRangeState state, Blackhole blackhole) {
+    blackhole.consume(
+        state.mapUtils.getTargetHexes(state.positions[state.nextIndex()], state.weaponRange));
+  }
+
+  /** Looks up target hexes that aren't in the cache, so each is worked out and cached anew. */
+  @Benchmark
+  public void getTargetHexesMiss(TargetHexMissState state, Blackhole blackhole) {
+    int i = state.nextMissIndex();
+    blackhole.consume(state.mapUtils.getTargetHexes(state.missPositions[i], state.missRanges[i]));
+  }
+
+  /** A map of each size, with random pairs of hexes and positions on it. */
+  @State(Scope.Benchmark)
+  public static class MapState {
+    @Setup
+    public void setUp() {
+      mapUtils = createMapUtils();
+      SplittableRandom random = new SplittableRandom(0);
+      for (int i = 0; i < SAMPLES; i++) {
+        sources[i] = new Point(random.nextInt(mapSize), random.nextInt(mapSize));
+        destinations[i] = new Point(random.nextInt(mapSize), random.nextInt(mapSize));
+        positions[i] =
+            new MapPosition(
+                sources[i], Direction.values()[random.nextInt(Direction.values().length)]);
+      }
+    }
+
+    MapUtils createMapUtils() {
+      return new MapUtils(Constants.HEX_RADIUS, mapSize, mapSize);
+    }
+
+    int nextIndex() {
+      index = (index + 1) & (SAMPLES - 1);
+      return index;
+    }
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"20", "100", "500"})
+    public int mapSize;
+
+    final Point[] destinations = new Point[SAMPLES];
+    private int index;
+    MapUtils mapUtils;
+    final MapPosition[] positions = new MapPosition[SAMPLES];
+    final Point[] sources = new Point[SAMPLES];
+  }
+
+  /** A map that computes distances and directions, or looks them up in an offset table. */
+  @State(Scope.Benchmark)
+  public static class OffsetTableState extends MapState {
+    @Override
+    MapUtils createMapUtils() {
+      return new MapUtils(Constants.HEX_RADIUS, mapSize, mapSize, offsetTableBudget);
+    }
+
+    /** 0 computes distances and directions; the default budget looks them up in a table. */
+    @Param({"0", "16777216"})
+    public long offsetTableBudget;
+  }
+
+  /**
+   * A map, and many more distinct positions and weapon ranges than the target hex cache holds.
+   * They are looked up in turn, so each has been evicted by the time it comes round again. Ranges
+   * vary as well as positions, since the smallest map has fewer positions than the cache holds.
+   */
+  @State(Scope.Benchmark)
+  public static class TargetHexMissState extends MapState {
+    @Setup
+    public void setUpMisses() {
+      SplittableRandom random = new SplittableRandom(1);
+      Set<List<Object>> keys = Sets.newHashSet();
+      for (int i = 0; i < MISS_SAMPLES; i++) {
+        MapPosition position;
+        int range;
+        do {
+          position =
+              new MapPosition(
+                  new Point(random.nextInt(mapSize), random.nextInt(mapSize)),
+                  Direction.values()[random.nextInt(Direction.values().length)]);
+          range = 1 + random.nextInt(MAX_RANGE);
+        } while (!keys.add(List.of(position, range)));
+        missPositions[i] = position;
+        missRanges[i] = range;
+      }
+    }
+
+    /** Fails the run if the lookups mostly hit the cache, as then they don't measure misses. */
+    @TearDown
+    public void checkMisses() {
+      double hitRate = mapUtils.getTargetHexCacheStats().hitRate();
+      if (hitRate > MAX_HIT_RATE) {
+        throw new IllegalStateException("Target hex cache hit rate was " + hitRate);
+      }
+    }
+
+    int nextMissIndex() {
+      missIndex = (missIndex + 1) & (MISS_SAMPLES - 1);
+      return missIndex;
+    }
+
+    private static final double MAX_HIT_RATE = 0.1;
+    private static final int MAX_RANGE = 8;
+    // Four times the target hex cache's size.
+    private static final int MISS_SAMPLES = 1 << 14;
+
+    private int missIndex;
+    final MapPosition[] missPositions = new MapPosition[MISS_SAMPLES];
+    final int[] missRanges = new int[MISS_SAMPLES];
+  }
+
+  /** A map, and the range of the weapons whose target hexes are looked up. */
+  @State(Scope.Benchmark)
+  public static class WeaponRangeState extends MapState {
+    @Param({"1", "4", "8"})
+    public int weaponRange;
+  }
+}
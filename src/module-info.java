@@ -3,12 +3,14 @@ module space.game.main {
   requires com.google.common;
   requires java.desktop;
   requires java.logging;
+  requires java.management;
   requires javafx.controls;
   requires javafx.fxml;
   requires org.jetbrains.annotations;
 
   exports org.heckcorp.spacegame;
   exports org.heckcorp.spacegame.ui.map;
+  exports org.heckcorp.spacegame.metrics;
   exports org.heckcorp.spacegame.model;
   exports org.heckcorp.spacegame.ui;
 }
@@ -0,0 +1,705 @@
+package org.heckcorp.spacegame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Counter;
+import org.heckcorp.spacegame.metrics.Metrics;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.GameState;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Pathfinder;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
+import org.heckcorp.spacegame.model.UnitStore;
+import org.heckcorp.spacegame.ui.map.HexMath;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.heckcorp.spacegame.Constants.WEAPON_RANGE;
+
+/**
+ * Plans the computer's turns by search. For each unit it finds every (hex, facing, energy) state
+ * the unit can reach with its energy, and from each state every enemy in its firing arc. Candidate
+ * plans with attacks are played out on a copy of the unit and the enemies near it, and undone
+ * again, so they are scored by the game's own facing-armor rules however big the game is; plans
+ * without attacks only move the unit and are scored in place.
+ *
+ * <p>Every unit is planned for at once, in parallel, against the same state. The best plans are
+ * then committed in order of score, skipping any that would end in a hex another committed plan
+ * ends in, or attack a unit another committed plan attacks, since that plan's score no longer
+ * holds. The units whose plans were skipped are planned again against the state the committed
+ * plans leave, and so on until every unit has a plan or the budget below runs out.
+ *
+ * <p>The work is bounded by budgets rather than by the clock, so the plans depend only on the game
+ * state, not on the number of threads, their timing or the machine. Each unit's search scores at
+ * most the first {@code candidatesPerUnit} candidates it finds, cheapest first, and the whole turn
+ * scores at most {@code candidatesPerTurn}, shared evenly among the units searched in each round.
+ * Once too little of the turn's budget is left to search the units still waiting, in the order
+ * they were added, each of them instead follows the cheapest path towards a position from which
+ * it can fire on its nearest enemy, as far as its energy and the free hexes allow, and attacks it
+ * if it gets there; these fallback plans are counted in the "ai.fallback_plans" metric.
+ *
+ * <p>The deadline is only a safety cap, checked between rounds; the turn's budget should keep
+ * planning well within it. If it passes anyway, the units still waiting get fallback plans at
+ * once, so which units were searched depends on timing, and the cutoff is logged and counted in
+ * the "ai.deadline_cutoffs" metric. The overrun is at most one round.
+ *
+ * <p>Attacks can lead to states already scored, such as when a unit is planned for again with
+ * nothing near it changed, so their scores are kept in a {@link TranspositionTable} that the
+ * planning threads share, keyed by the Zobrist hashes of the states before and after.
+ */
+public final class AIPlanner {
+  /**
+   * Returns plans for the player's units, in the order they are to be carried out. Units with
+   * nowhere to go and nothing to attack get none. The game state isn't changed.
+   */
+  public ImmutableList<Plan> planTurn(GameState gameState, Player player, long deadlineNanos) {
+    GameState working = gameState.copy();
+    Map<Unit, Unit> originals = Maps.newHashMapWithExpectedSize(gameState.getUnits().size());
+    Iterator<Unit> originalUnits = gameState.getUnits().iterator();
+    List<Unit> waiting = Lists.newArrayList();
+    for (Unit unit : working.getUnits()) {
+      originals.put(unit, originalUnits.next());
+      if (unit.getOwner().equals(player)) {
+        waiting.add(unit);
+      }
+    }
+
+    ImmutableList.Builder<Plan> plans = ImmutableList.builder();
+    boolean cutOff = false;
+    int budget = candidatesPerTurn;
+    while (!waiting.isEmpty() && working.getWinner() == null) {
+      // Search as many of the waiting units as the budget can give a useful search each.
+      int searched = Math.min(waiting.size(), budget / MIN_CANDIDATES_PER_UNIT);
+      if (searched == 0) {
+        break;
+      }
+      if (System.nanoTime() >= deadlineNanos) {
+        cutOff = true;
+        break;
+      }
+      int candidateLimit = Math.min(candidatesPerUnit, budget / searched);
+      ImmutableList<Unit> units = ImmutableList.copyOf(working.getUnits());
+      Map<Unit, Integer> unitIndexes = Maps.newHashMapWithExpectedSize(units.size());
+      int enemyCount = 0;
+      for (int i = 0; i < units.size(); i++) {
+        unitIndexes.put(units.get(i), i);
+        if (!units.get(i).getOwner().equals(player)) {
+          enemyCount++;
+        }
+      }
+      int enemies = enemyCount;
+      int[] nearestEnemies = findNearestEnemies(working, player);
+      List<Unit> planning = waiting.subList(0, searched);
+      @Nullable ScoredCandidate[] best = new ScoredCandidate[searched];
+      int[] scoredCounts = new int[searched];
+      IntStream.range(0, searched)
+          .parallel()
+          .forEach(
+              i -> {
+                UnitPlanner unitPlanner =
+                    new UnitPlanner(
+                        working, units, unitIndexes, enemies, nearestEnemies, planning.get(i));
+                best[i] = unitPlanner.findBest(candidateLimit);
+                scoredCounts[i] = unitPlanner.getScoredCount();
+              });
+      budget -= Arrays.stream(scoredCounts).sum();
+      List<ScoredCandidate> ranked = Lists.newArrayList();
+      for (@Nullable ScoredCandidate scored : best) {
+        if (scored != null) {
+          ranked.add(scored);
+        }
+      }
+      // The sort is stable, so equal scores keep the units' order.
+      ranked.sort(Comparator.comparingDouble(ScoredCandidate::score).reversed());
+
+      Set<Point> claimedHexes = Sets.newHashSet();
+      Set<Unit> claimedTargets = Sets.newHashSet();
+      Set<Unit> committed = Sets.newHashSet();
+      for (ScoredCandidate scored : ranked) {
+        Candidate candidate = scored.candidate();
+        Unit unit = units.get(candidate.unitIndex());
+        @Nullable Unit target =
+            candidate.targetIndex() < 0 ? null : units.get(candidate.targetIndex());
+        if (claimedHexes.contains(candidate.endHex())
+            || (target != null && claimedTargets.contains(target))) {
+          continue;
+        }
+        Plan.apply(working, unit, candidate.actions(), target);
+        plans.add(
+            new Plan(
+                getOriginal(originals, unit),
+                candidate.actions(),
+                target == null ? null : getOriginal(originals, target)));
+        claimedHexes.add(candidate.endHex());
+        if (target != null) {
+          claimedTargets.add(target);
+        }
+        committed.add(unit);
+        if (working.getWinner() != null) {
+          break;
+        }
+      }
+      if (committed.isEmpty()) {
+        break;
+      }
+      waiting = Lists.newArrayList(waiting);
+      waiting.removeIf(committed::contains);
+    }
+    if (cutOff) {
+      deadlineCutoffs.increment();
+      logger.warning(
+          String.format(
+              "Planning for %s stopped at the deadline; %d units get fallback plans.",
+              player.getName(), waiting.size()));
+    }
+    if (working.getWinner() == null) {
+      planFallbacks(working, player, waiting, originals, plans);
+    }
+    return plans.build();
+  }
+
+  public TranspositionTable getTranspositionTable() {
+    return transpositions;
+  }
+
+  /** Forgets the scores kept from earlier games. Not to be called while a turn is planned. */
+  public void startGame() {
+    transpositions.clear();
+  }
+
+  /**
+   * Adds fallback plans for the units, in order, carrying each out on the working state. The paths
+   * are found in parallel against the state as it was before any of them, and each unit stops at
+   * the last hex along its path that it has the energy for and that no other unit is in by then.
+   */
+  private void planFallbacks(
+      GameState working,
+      Player player,
+      List<Unit> units,
+      Map<Unit, Unit> originals,
+      ImmutableList.Builder<Plan> plans) {
+    int[] nearestEnemies = findNearestEnemies(working, player);
+    @Nullable Approach[] approaches = new Approach[units.size()];
+    IntStream.range(0, units.size())
+        .parallel()
+        .forEach(
+            i -> {
+              @Nullable MapPosition start = working.getPosition(units.get(i));
+              @Nullable Point enemyHex =
+                  start == null ? null : getNearestEnemy(nearestEnemies, start.position());
+              if (start != null && enemyHex != null) {
+                @Nullable ImmutableList<MapPosition> path =
+                    pathfinders.get().findPathToFire(start, enemyHex);
+                approaches[i] = path == null ? null : new Approach(enemyHex, path);
+              }
+            });
+    for (int i = 0; i < units.size() && working.getWinner() == null; i++) {
+      Unit unit = units.get(i);
+      @Nullable Approach approach = approaches[i];
+      if (approach == null || working.getPosition(unit) == null) {
+        continue;
+      }
+      ImmutableList<MapPosition> path = approach.path();
+      int stop = 0;
+      for (int step = 1; step < path.size() && step <= unit.getEnergy(); step++) {
+        Point hex = path.get(step).position();
+        if (hex.equals(path.get(0).position()) || working.getUnitsAt(hex).isEmpty()) {
+          stop = step;
+        }
+      }
+      List<Action> actions = Lists.newArrayList();
+      for (int step = 1; step <= stop; step++) {
+        actions.add(getAction(path.get(step - 1), path.get(step)));
+      }
+      @Nullable Unit target = null;
+      int energyLeft = unit.getEnergy() - stop;
+      if (stop == path.size() - 1 && energyLeft > 0) {
+        for (Unit other : working.getUnitsAt(approach.enemyHex())) {
+          if (!other.getOwner().equals(unit.getOwner())) {
+            target = other;
+            actions.addAll(Collections.nCopies(energyLeft, Action.ATTACK));
+            break;
+          }
+        }
+      }
+      if (actions.isEmpty()) {
+        continue;
+      }
+      Plan.apply(working, unit, actions, target);
+      plans.add(
+          new Plan(
+              getOriginal(originals, unit),
+              ImmutableList.copyOf(actions),
+              target == null ? null : getOriginal(originals, target)));
+      fallbackPlans.increment();
+    }
+  }
+
+  /**
+   * Returns the hex of the nearest enemy of the player to each hex on the map, or -1 if there are
+   * none. Hexes are numbered row by row. One breadth-first search outwards from every enemy at
+   * once finds them all, however far apart the units are.
+   */
+  private int[] findNearestEnemies(GameState gameState, Player player) {
+    int width = mapUtils.getMapWidth();
+    int height = mapUtils.getMapHeight();
+    int[] nearest = new int[width * height];
+    Arrays.fill(nearest, -1);
+    int[] queue = new int[width * height];
+    int tail = 0;
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      if (unit.getOwner().equals(player)
+          || position == null
+          || !mapUtils.isInsideMap(position.position())) {
+        continue;
+      }
+      int hex = position.position().y() * width + position.position().x();
+      if (nearest[hex] < 0) {
+        nearest[hex] = hex;
+        queue[tail++] = hex;
+      }
+    }
+    for (int head = 0; head < tail; head++) {
+      int hex = queue[head];
+      int x = hex % width;
+      int y = hex / width;
+      for (int direction = 0; direction < Direction.values().length; direction++) {
+        int neighborX = HexMath.neighborX(x, direction);
+        int neighborY = HexMath.neighborY(x, y, direction);
+        if (neighborX >= 0 && neighborX < width && neighborY >= 0 && neighborY < height) {
+          int neighbor = neighborY * width + neighborX;
+          if (nearest[neighbor] < 0) {
+            nearest[neighbor] = nearest[hex];
+            queue[tail++] = neighbor;
+          }
+        }
+      }
+    }
+    return nearest;
+  }
+
+  /** Looks up the hex of the nearest enemy found by {@link #findNearestEnemies}. */
+  private @Nullable Point getNearestEnemy(int[] nearestEnemies, Point hex) {
+    if (!mapUtils.isInsideMap(hex)) {
+      return null;
+    }
+    int width = mapUtils.getMapWidth();
+    int nearest = nearestEnemies[hex.y() * width + hex.x()];
+    return nearest < 0 ? null : new Point(nearest % width, nearest / width);
+  }
+
+  /** Returns how many rotations bring the hex into the firing arc, or a lot if none do. */
+  private int getRotationsToTarget(MapPosition position, Point hex) {
+    Direction left = position.direction();
+    Direction right = position.direction();
+    for (int rotations = 0; rotations <= Direction.values().length / 2; rotations++) {
+      if (mapUtils.getTargetHexes(new MapPosition(position.position(), left)).contains(hex)
+          || mapUtils.getTargetHexes(new MapPosition(position.position(), right)).contains(hex)) {
+        return rotations;
+      }
+      left = left.left();
+      right = right.right();
+    }
+    return Integer.MAX_VALUE / 2;
+  }
+
+  private void addIfInsideMap(List<Point> points, int x, int y) {
+    Point point = new Point(x, y);
+    if (mapUtils.isInsideMap(point)) {
+      points.add(point);
+    }
+  }
+
+  /** Returns the move that takes a unit from one position on a path to the next. */
+  private static Action getAction(MapPosition from, MapPosition to) {
+    if (!from.position().equals(to.position())) {
+      return Action.MOVE_FORWARD;
+    }
+    return to.direction() == from.direction().left() ? Action.ROTATE_LEFT : Action.ROTATE_RIGHT;
+  }
+
+  private static Unit getOriginal(Map<Unit, Unit> originals, Unit unit) {
+    @Nullable Unit original = originals.get(unit);
+    assert original != null : "@AssumeAssertion(nullness)";
+    return original;
+  }
+
+  public AIPlanner(MapUtils mapUtils) {
+    this(mapUtils, Constants.AI_CANDIDATES_PER_UNIT, Constants.AI_CANDIDATES_PER_TURN);
+  }
+
+  /**
+   * Creates a planner that scores at most the given numbers of candidates per unit planned for and
+   * per turn.
+   */
+  public AIPlanner(MapUtils mapUtils, int candidatesPerUnit, int candidatesPerTurn) {
+    checkArgument(candidatesPerUnit > 0, "candidatesPerUnit must be positive");
+    checkArgument(candidatesPerTurn >= 0, "candidatesPerTurn must not be negative");
+    this.candidatesPerTurn = candidatesPerTurn;
+    this.candidatesPerUnit = candidatesPerUnit;
+    this.mapUtils = mapUtils;
+    this.pathfinders = ThreadLocal.withInitial(() -> new Pathfinder(mapUtils));
+    this.transpositions = new TranspositionTable(Constants.AI_TRANSPOSITION_TABLE_ENTRIES);
+  }
+
+  /**
+   * How near the nearest enemy a unit's moves to fire on it are searched for when scoring where the
+   * unit ends its turn. The search's cost grows with the distance, and far away the moves are
+   * close to the estimate anyway.
+   */
+  private static final int APPROACH_SEARCH_DISTANCE = 16;
+  private static final double APPROACH_WEIGHT = 1;
+  private static final double ARMOR_WEIGHT = 0.5;
+  private static final Counter deadlineCutoffs = Metrics.counter("ai.deadline_cutoffs");
+  private static final double EXPOSURE_WEIGHT = 0.75;
+  private static final Counter fallbackPlans = Metrics.counter("ai.fallback_plans");
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double HEALTH_WEIGHT = 1;
+  private static final double KILL_BONUS = 20;
+  private static final Logger logger = Logger.getLogger(AIPlanner.class.getName());
+  /** The fewest candidates a unit is searched with; units that can't be given them fall back. */
+  private static final int MIN_CANDIDATES_PER_UNIT = 32;
+  private static final ImmutableList<Action> MOVES =
+      ImmutableList.of(Action.MOVE_FORWARD, Action.ROTATE_LEFT, Action.ROTATE_RIGHT);
+  private static final double WIN_BONUS = 1000;
+
+  private final int candidatesPerTurn;
+  private final int candidatesPerUnit;
+  private final MapUtils mapUtils;
+  private final ThreadLocal<Pathfinder> pathfinders;
+  private final TranspositionTable transpositions;
+
+  public enum Action {
+    MOVE_FORWARD,
+    ROTATE_LEFT,
+    ROTATE_RIGHT,
+    ATTACK;
+
+    MapPosition getNextPosition(MapUtils mapUtils, MapPosition position) {
+      return switch (this) {
+        case MOVE_FORWARD ->
+            new MapPosition(mapUtils.getAdjacentHex(position), position.direction());
+        case ROTATE_LEFT -> new MapPosition(position.position(), position.direction().left());
+        case ROTATE_RIGHT -> new MapPosition(position.position(), position.direction().right());
+        case ATTACK -> position;
+      };
+    }
+  }
+
+  /** A unit's moves for the turn, ending with attacks on the target if it has one. */
+  public record Plan(Unit unit, ImmutableList<Action> actions, @Nullable Unit target) {
+    /** Carries out the plan, stopping early if the target is destroyed or the game is won. */
+    public void apply(GameState gameState) {
+      apply(gameState, unit, actions, target);
+    }
+
+    static void apply(
+        GameState gameState, Unit unit, List<Action> actions, @Nullable Unit target) {
+      for (Action action : actions) {
+        if (gameState.getWinner() != null) {
+          return;
+        }
+        switch (action) {
+          case MOVE_FORWARD -> gameState.moveForward(unit);
+          case ROTATE_LEFT -> gameState.rotateLeft(unit);
+          case ROTATE_RIGHT -> gameState.rotateRight(unit);
+          case ATTACK -> {
+            if (target == null || !gameState.attack(unit, target)) {
+              return;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** The cheapest path from a unit to where it can fire on the enemy in the hex. */
+  private record Approach(Point enemyHex, ImmutableList<MapPosition> path) {}
+
+  private record Candidate(
+      int unitIndex, ImmutableList<Action> actions, int targetIndex, MapPosition end) {
+    Point endHex() {
+      return end.position();
+    }
+  }
+
+  private record ScoredCandidate(Candidate candidate, double score) {}
+
+  /** A state reached in the search, with the move that reached it from its parent. */
+  private record Node(
+      MapPosition position, int cost, @Nullable Node parent, @Nullable Action action) {
+    ImmutableList<Action> getPath() {
+      List<Action> path = Lists.newArrayList();
+      for (@Nullable Node node = this; node != null; node = node.parent()) {
+        @Nullable Action nodeAction = node.action();
+        if (nodeAction != null) {
+          path.add(nodeAction);
+        }
+      }
+      return ImmutableList.copyOf(Lists.reverse(path));
+    }
+  }
+
+  /**
+   * Finds one unit's best plan. The enemies that could reach the unit wherever it ends up are
+   * gathered once, and each end position is scored once, however many candidates end there.
+   */
+  private final class UnitPlanner {
+    /**
+     * Returns the best of the first candidates found, up to the limit, or null if the unit has
+     * none.
+     */
+    @Nullable ScoredCandidate findBest(int candidateLimit) {
+      if (start == null) {
+        return null;
+      }
+      @Nullable ScoredCandidate best = null;
+      for (Candidate candidate : findCandidates(start, candidateLimit)) {
+        scoredCount++;
+        double score = evaluate(candidate);
+        if (best == null || score > best.score()) {
+          best = new ScoredCandidate(candidate, score);
+        }
+      }
+      return best;
+    }
+
+    int getScoredCount() {
+      return scoredCount;
+    }
+
+    /**
+     * Searches the states the unit can reach this turn, breadth first so that each state is
+     * reached with as much energy left as possible. Returns a candidate for stopping in each state
+     * and for spending the rest of the energy there on each enemy in the firing arc, up to the
+     * limit. Units only stop in hexes no other unit is in.
+     */
+    private List<Candidate> findCandidates(MapPosition start, int candidateLimit) {
+      List<Candidate> candidates = Lists.newArrayList();
+      Map<MapPosition, Node> visited = Maps.newHashMap();
+      Deque<Node> queue = new ArrayDeque<>();
+      Node root = new Node(start, 0, null, null);
+      visited.put(start, root);
+      queue.add(root);
+      while (!queue.isEmpty() && candidates.size() < candidateLimit) {
+        Node node = queue.remove();
+        int energyLeft = unit.getEnergy() - node.cost();
+        for (Action action : energyLeft > 0 ? MOVES : ImmutableList.<Action>of()) {
+          MapPosition next = action.getNextPosition(mapUtils, node.position());
+          if (mapUtils.isInsideMap(next.position()) && !visited.containsKey(next)) {
+            Node nextNode = new Node(next, node.cost() + 1, node, action);
+            visited.put(next, nextNode);
+            queue.add(nextNode);
+          }
+        }
+        Point hex = node.position().position();
+        if (!hex.equals(start.position()) && !gameState.getUnitsAt(hex).isEmpty()) {
+          continue;
+        }
+        ImmutableList<Action> path = node.getPath();
+        candidates.add(new Candidate(unitIndex, path, -1, node.position()));
+        if (energyLeft <= 0) {
+          continue;
+        }
+        for (Unit enemy : gameState.getUnitsIn(mapUtils.getTargetHexes(node.position()))) {
+          if (candidates.size() >= candidateLimit) {
+            return candidates;
+          }
+          if (!enemy.getOwner().equals(unit.getOwner())) {
+            ImmutableList<Action> actions =
+                ImmutableList.<Action>builder()
+                    .addAll(path)
+                    .addAll(Collections.nCopies(energyLeft, Action.ATTACK))
+                    .build();
+            @Nullable Integer targetIndex = unitIndexes.get(enemy);
+            assert targetIndex != null : "@AssumeAssertion(nullness)";
+            candidates.add(new Candidate(unitIndex, actions, targetIndex, node.position()));
+          }
+        }
+      }
+      return candidates;
+    }
+
+    /**
+     * Returns the candidate's score. Candidates with attacks are played out on the local copy and
+     * then undone. Their scores only depend on the local units before and after, the approach hex
+     * and whether the target is the last enemy, so they are looked up by those in the
+     * transposition table and only worked out if they aren't there. Candidates without attacks are
+     * scored by where they end; see {@link #scorePosition}.
+     */
+    private double evaluate(Candidate candidate) {
+      if (candidate.targetIndex() < 0) {
+        return scorePosition(candidate.end(), null);
+      }
+      Unit original = units.get(candidate.targetIndex());
+      Unit target = localCopies.get(localUnits.indexOf(original));
+      long before = localState.getHash();
+      int mark = localState.mark();
+      Plan.apply(localState, localCopies.get(0), candidate.actions(), target);
+      long key = Long.rotateLeft(before, 1) ^ localState.getHash() ^ contextKey;
+      double score = transpositions.get(key);
+      if (Double.isNaN(score)) {
+        score = score(candidate, original, target);
+        transpositions.put(key, score);
+      }
+      localState.undo(mark);
+      return score;
+    }
+
+    /**
+     * Scores an attack once it has been played out on the local copy. Damage done to the target
+     * counts for it, as does where it leaves the unit; see {@link #scorePosition}.
+     */
+    private double score(Candidate candidate, Unit original, Unit target) {
+      double score = HEALTH_WEIGHT * (original.getHealth() - Math.max(target.getHealth(), 0));
+      for (int side = 0; side < UnitStore.SIDES; side++) {
+        score += ARMOR_WEIGHT * (original.getArmor(side) - Math.max(target.getArmor(side), 0));
+      }
+      if (localState.getPosition(target) == null) {
+        if (enemyCount == 1) {
+          return score + KILL_BONUS + WIN_BONUS;
+        }
+        return score + KILL_BONUS + scorePosition(candidate.end(), original);
+      }
+      return score + scorePosition(candidate.end(), null);
+    }
+
+    /**
+     * Returns the damage the enemies in weapon range of the hex could do to the unit on their next
+     * turn, each turning to face it if needed and spending the rest of its energy on attacks
+     * against the armor on the side it would hit.
+     */
+    private double getExposure(Point hex, @Nullable Unit destroyed) {
+      double exposure = 0;
+      for (Unit enemy : nearbyEnemies) {
+        @Nullable MapPosition enemyPosition = gameState.getPosition(enemy);
+        assert enemyPosition != null : "@AssumeAssertion(nullness)";
+        if (enemy == destroyed || mapUtils.distance(hex, enemyPosition.position()) > WEAPON_RANGE) {
+          continue;
+        }
+        int attacks = enemy.getMaxEnergy() - getRotationsToTarget(enemyPosition, hex);
+        if (attacks > 0) {
+          int side = mapUtils.getHexDirection(hex, enemyPosition.position());
+          exposure += Math.max(0, attacks * enemy.getAttackStrength() - unit.getArmor(side));
+        }
+      }
+      return exposure;
+    }
+
+    /**
+     * Scores where the unit ends its turn: the damage enemies could do to it there, and its
+     * distance from the nearest enemy plus the moves it would need to get that enemy into its
+     * firing arc, count against it. Those moves are only searched for within {@link
+     * #APPROACH_SEARCH_DISTANCE} of the enemy; further away they are estimated from the distance.
+     * Scores are cached unless an enemy was destroyed on the way.
+     */
+    private double scorePosition(MapPosition end, @Nullable Unit destroyed) {
+      if (destroyed == null) {
+        @Nullable Double cachedScore = positionScores.get(end);
+        if (cachedScore != null) {
+          return cachedScore;
+        }
+      }
+      double score = -EXPOSURE_WEIGHT * getExposure(end.position(), destroyed);
+      if (approachHex != null) {
+        int distance = mapUtils.distance(end.position(), approachHex);
+        int movesToFire = Math.max(0, distance - WEAPON_RANGE);
+        if (distance <= APPROACH_SEARCH_DISTANCE) {
+          @Nullable ImmutableList<MapPosition> path =
+              pathfinders.get().findPathToFire(end, approachHex);
+          movesToFire = path == null ? distance : path.size() - 1;
+        }
+        score -= APPROACH_WEIGHT * (distance + movesToFire);
+      }
+      if (destroyed == null) {
+        positionScores.put(end, score);
+      }
+      return score;
+    }
+
+    UnitPlanner(
+        GameState gameState,
+        List<Unit> units,
+        Map<Unit, Integer> unitIndexes,
+        int enemyCount,
+        int[] nearestEnemies,
+        Unit unit) {
+      this.gameState = gameState;
+      this.units = units;
+      this.unitIndexes = unitIndexes;
+      this.enemyCount = enemyCount;
+      this.unit = unit;
+      @Nullable Integer index = unitIndexes.get(unit);
+      assert index != null : "@AssumeAssertion(nullness)";
+      this.unitIndex = index;
+      @Nullable MapPosition startPosition = gameState.getPosition(unit);
+      this.start = startPosition;
+      if (startPosition == null) {
+        this.approachHex = null;
+        this.contextKey = 0;
+        this.localUnits = ImmutableList.of();
+        this.localState = gameState.copy(localUnits);
+        this.localCopies = ImmutableList.of();
+        return;
+      }
+      Point startHex = startPosition.position();
+      @Nullable Point nearestEnemy = getNearestEnemy(nearestEnemies, startHex);
+      this.approachHex = nearestEnemy;
+      long approach = nearestEnemy == null ? -1 : (long) nearestEnemy.x() << 32 | nearestEnemy.y();
+      this.contextKey = (approach * 2 + (enemyCount == 1 ? 1 : 0)) * GOLDEN_GAMMA;
+      // Enemies further away than this can't fire on any hex the unit can end its turn in.
+      List<Point> hexesInReach = Lists.newArrayList();
+      HexMath.forEachInRange(
+          startHex.x(),
+          startHex.y(),
+          unit.getEnergy() + WEAPON_RANGE,
+          (x, y) -> addIfInsideMap(hexesInReach, x, y));
+      for (Unit other : gameState.getUnitsIn(Sets.newHashSet(hexesInReach))) {
+        if (!other.getOwner().equals(unit.getOwner())) {
+          nearbyEnemies.add(other);
+        }
+      }
+      this.localUnits = ImmutableList.<Unit>builder().add(unit).addAll(nearbyEnemies).build();
+      this.localState = gameState.copy(localUnits);
+      this.localCopies = ImmutableList.copyOf(localState.getUnits());
+    }
+
+    private final @Nullable Point approachHex;
+    // Mixed into transposition keys: what a score depends on besides the local units.
+    private final long contextKey;
+    private final int enemyCount;
+    private final GameState gameState;
+    // The copies of the local units, in the same order.
+    private final ImmutableList<Unit> localCopies;
+    // A copy of the game holding only the local units, to play out attacks on.
+    private final GameState localState;
+    // The unit followed by the nearby enemies.
+    private final ImmutableList<Unit> localUnits;
+    private final List<Unit> nearbyEnemies = Lists.newArrayList();
+    private final Map<MapPosition, Double> positionScores = Maps.newHashMap();
+    private int scoredCount;
+    private final @Nullable MapPosition start;
+    private final Unit unit;
+    private final int unitIndex;
+    private final Map<Unit, Integer> unitIndexes;
+    private final List<Unit> units;
+  }
+}
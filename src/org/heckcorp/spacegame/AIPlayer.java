@@ -1,18 +1,29 @@
 package org.heckcorp.spacegame;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
-import org.heckcorp.spacegame.model.MapPosition;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Counter;
+import org.heckcorp.spacegame.metrics.Histogram;
+import org.heckcorp.spacegame.metrics.Metrics;
+import org.heckcorp.spacegame.model.GameSnapshot;
+import org.heckcorp.spacegame.model.GameState;
 import org.heckcorp.spacegame.model.Model;
 import org.heckcorp.spacegame.model.Player;
 import org.heckcorp.spacegame.model.Unit;
 import org.heckcorp.spacegame.ui.map.MapUtils;
-import org.heckcorp.spacegame.ui.map.MouseButton;
 
-import java.util.Optional;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class AIPlayer {
-  public void setCurrentPlayer(Player player) {
+  /** Plays the player's turn in the background if it's a computer player; see {@link #playTurn}. */
+  public void setCurrentPlayer(Model model, Player player) {
     if (player.getType().equals(Player.Type.COMPUTER)) {
       new Service<Void>() {
         @Override
@@ -20,22 +31,7 @@ public class AIPlayer {
           return new Task<>() {
             @Override
             protected Void call() {
-              Optional<Unit> optionalUnit =
-                  model.unitsProperty().stream()
-                      .filter(u -> u.getOwner().equals(player))
-                      .findFirst();
-              Optional<Unit> optionalTarget =
-                  model.unitsProperty().stream()
-                      .filter(u -> !u.getOwner().equals(player))
-                      .findFirst();
-              if (optionalUnit.isPresent() && optionalTarget.isPresent()) {
-                Unit unit = optionalUnit.get();
-                Unit target = optionalTarget.get();
-                MapPosition unitPosition = model.unitPositionsProperty().get(unit);
-                model.hexClicked(unitPosition.position(), MouseButton.PRIMARY);
-                moveAndAttack(unit, target);
-              }
-              model.endTurn();
+              playTurn(model, player);
               return null;
             }
           };
@@ -44,61 +40,123 @@ public class AIPlayer {
     }
   }
 
-  private void moveAndAttack(Unit unit, Unit target) {
-    MapPosition targetPosition = model.unitPositionsProperty().get(target);
-    while (unit.getEnergy() > 0 && model.winnerProperty().get() == null) {
-      MapPosition unitPosition = model.unitPositionsProperty().get(unit);
-      if (canAttack(unitPosition, targetPosition)) {
-        model.setSelectionMode(Model.SelectionMode.TARGET);
-        model.hexClicked(targetPosition.position(), MouseButton.PRIMARY);
-        model.processAttack();
-      } else if (!isFacing(unitPosition, targetPosition)) {
-        rotateOnceTowardTarget(model.unitPositionsProperty().get(unit), targetPosition);
-      } else if (mapUtils.distance(unitPosition.position(), targetPosition.position()) > 1) {
-        model.moveForward();
+  /**
+   * Plays one whole turn for the given player, moving all of its units, then ends the turn. Units
+   * are planned for in parallel on the common fork-join pool, within the turn budget, and their
+   * plans are carried out on the calling thread.
+   */
+  public void playTurn(GameState gameState, Player player) {
+    long startNanos = System.nanoTime();
+    for (AIPlanner.Plan plan : planTurn(gameState, player)) {
+      plan.apply(gameState);
+    }
+    gameState.endTurn();
+    turnTimer.recordSince(startNanos);
+  }
+
+  /**
+   * Plays one whole turn for the given player through the model, on the calling thread. The turn
+   * is planned on a snapshot, so nothing waits for the planning, and then the plans are carried
+   * out and the turn ended in one command. If another command ran in the meantime, the turn is
+   * planned again on a new snapshot; after {@link #MAX_PLANNING_ATTEMPTS} tries the last plans are
+   * carried out anyway, and the game state skips any moves that are no longer possible. Does
+   * nothing if it isn't the player's turn.
+   */
+  public void playTurn(Model model, Player player) {
+    long startNanos = System.nanoTime();
+    for (int attempt = 1; ; attempt++) {
+      GameSnapshot snapshot = model.getSnapshot();
+      if (!snapshot.getCurrentPlayer().equals(player) || snapshot.getWinner() != null) {
+        return;
+      }
+      GameState planningState = snapshot.copyState();
+      ImmutableList<AIPlanner.Plan> plans =
+          toGameUnits(snapshot, planningState, planTurn(planningState, player));
+      if (attempt == MAX_PLANNING_ATTEMPTS) {
+        model.submit(state -> applyAndEndTurn(state, player, plans)).join();
+        turnTimer.recordSince(startNanos);
+        return;
+      }
+      if (model.submitIfUnchanged(snapshot, state -> applyAndEndTurn(state, player, plans))
+          .join()) {
+        turnTimer.recordSince(startNanos);
+        return;
       }
+      replans.increment();
     }
   }
 
-  private boolean canAttack(MapPosition unitPosition, MapPosition targetPosition) {
-    return mapUtils.getTargetHexes(unitPosition).contains(targetPosition.position());
+  /** Gets ready to play a new game; see {@link AIPlanner#startGame}. */
+  public void startGame() {
+    planner.startGame();
   }
 
-  private boolean isFacing(MapPosition unitPosition, MapPosition targetPosition) {
-    return getHeadingDifference(unitPosition, targetPosition) == 0;
+  private List<AIPlanner.Plan> planTurn(GameState gameState, Player player) {
+    long startNanos = System.nanoTime();
+    try {
+      return planner.planTurn(gameState, player, getDeadlineNanos());
+    } finally {
+      planTimer.recordSince(startNanos);
+    }
+  }
+
+  private long getDeadlineNanos() {
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(turnBudgetMillis);
   }
 
-  private void rotateOnceTowardTarget(MapPosition unitPosition, MapPosition targetPosition) {
-    int headingDifference = getHeadingDifference(unitPosition, targetPosition);
-    if (headingDifference == 0) {
+  private static void applyAndEndTurn(
+      GameState gameState, Player player, List<AIPlanner.Plan> plans) {
+    if (!gameState.getCurrentPlayer().equals(player)) {
       return;
     }
-    if (Math.abs(headingDifference) <= 3) {
-      if (headingDifference > 0) {
-        model.rotateRight();
-      } else {
-        model.rotateLeft();
-      }
-    } else {
-      if (headingDifference > 0) {
-        model.rotateLeft();
-      } else {
-        model.rotateRight();
-      }
+    for (AIPlanner.Plan plan : plans) {
+      plan.apply(gameState);
+    }
+    gameState.endTurn();
+  }
+
+  /** Swaps the copies of the units in plans made on the snapshot's state for the game's units. */
+  private static ImmutableList<AIPlanner.Plan> toGameUnits(
+      GameSnapshot snapshot, GameState planningState, List<AIPlanner.Plan> plans) {
+    Map<Unit, Unit> units = Maps.newHashMapWithExpectedSize(snapshot.getUnits().size());
+    Iterator<Unit> snapshotUnits = snapshot.getUnits().iterator();
+    for (Unit copy : planningState.getUnits()) {
+      units.put(copy, snapshotUnits.next());
+    }
+    List<AIPlanner.Plan> result = Lists.newArrayListWithCapacity(plans.size());
+    for (AIPlanner.Plan plan : plans) {
+      @Nullable Unit target = plan.target();
+      result.add(
+          new AIPlanner.Plan(
+              getUnit(units, plan.unit()),
+              plan.actions(),
+              target == null ? null : getUnit(units, target)));
     }
+    return ImmutableList.copyOf(result);
   }
 
-  private int getHeadingDifference(MapPosition unitPosition, MapPosition targetPosition) {
-    int hexDirection = mapUtils.getHexDirection(unitPosition.position(), targetPosition.position());
-    int currentDirection = unitPosition.direction().getDirection();
-    return (hexDirection - currentDirection) % 6;
+  private static Unit getUnit(Map<Unit, Unit> units, Unit copy) {
+    @Nullable Unit unit = units.get(copy);
+    assert unit != null : "@AssumeAssertion(nullness)";
+    return unit;
   }
 
-  public AIPlayer(Model model, MapUtils mapUtils) {
-    this.model = model;
-    this.mapUtils = mapUtils;
+  public AIPlayer(MapUtils mapUtils) {
+    this(mapUtils, Constants.AI_TURN_BUDGET_MILLIS);
   }
 
-  private final MapUtils mapUtils;
-  private final Model model;
+  public AIPlayer(MapUtils mapUtils, long turnBudgetMillis) {
+    this.planner = new AIPlanner(mapUtils);
+    this.turnBudgetMillis = turnBudgetMillis;
+  }
+
+  /** How many times a turn is planned before it's carried out on whatever the game has become. */
+  private static final int MAX_PLANNING_ATTEMPTS = 3;
+
+  private static final Histogram planTimer = Metrics.timer("ai.plan");
+  private static final Counter replans = Metrics.counter("ai.replans");
+  private static final Histogram turnTimer = Metrics.timer("ai.turn");
+
+  private final AIPlanner planner;
+  private final long turnBudgetMillis;
 }
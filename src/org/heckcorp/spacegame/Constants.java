@@ -1,16 +1,71 @@
 package org.heckcorp.spacegame;
 
 import javafx.util.Duration;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.PlaybackMode;
+
+import java.nio.file.Path;
 
 public class Constants {
+  /**
+   * How many candidate plans the computer scores in each turn, at most, across all its units; units
+   * it can't spare a search for follow a path towards the nearest enemy instead. Set with
+   * -Dspacegame.aiCandidatesPerTurn.
+   */
+  public static final int AI_CANDIDATES_PER_TURN =
+      Integer.getInteger("spacegame.aiCandidatesPerTurn", 4096);
+  /**
+   * How many candidate plans the computer scores for each unit, at most, before picking the best.
+   * This bounds the search by work rather than time, so the computer plays the same on any machine.
+   * Set with -Dspacegame.aiCandidatesPerUnit.
+   */
+  public static final int AI_CANDIDATES_PER_UNIT =
+      Integer.getInteger("spacegame.aiCandidatesPerUnit", 512);
+  /**
+   * How many scores the computer's transposition table holds, rounded up to a power of 2. Each
+   * takes 16 bytes. Set with -Dspacegame.transpositionTableEntries.
+   */
+  public static final int AI_TRANSPOSITION_TABLE_ENTRIES =
+      Integer.getInteger("spacegame.transpositionTableEntries", 1 << 18);
+  /**
+   * How long the computer may think about each turn before it stops, whatever it has left to plan.
+   * A safety cap: the search is bounded by {@link #AI_CANDIDATES_PER_TURN} and {@link
+   * #AI_CANDIDATES_PER_UNIT}.
+   */
+  public static final long AI_TURN_BUDGET_MILLIS = 200;
+  public static final Path AUTOSAVE_JOURNAL = Path.of("autosave.journal");
+  public static final Path AUTOSAVE_SNAPSHOT = Path.of("autosave.sav");
   public static final Duration ANIMATION_DURATION = Duration.seconds(1);
+  /** Draws the map on a canvas rather than with scene graph nodes. */
+  public static final boolean CANVAS_MAP_RENDERER = Boolean.getBoolean("spacegame.canvasRenderer");
+  public static final PlaybackMode COMPUTER_PLAYBACK_MODE = PlaybackMode.ACCELERATED;
   public static final double COUNTER_SIZE = 64.0;
   public static final double HEX_RADIUS = 64.0;
+  /**
+   * The most memory a map's distance and direction lookup table may take; bigger maps compute them
+   * instead. Set to 0 with -Dspacegame.hexOffsetTableBudget=0 to turn the tables off.
+   */
+  public static final long HEX_OFFSET_TABLE_BUDGET_BYTES =
+      Long.getLong("spacegame.hexOffsetTableBudget", 16 << 20);
   public static final int MAP_WIDTH = 20;
   public static final int MAP_HEIGHT = 20;
+  /** How often the metrics file is rewritten. */
+  public static final long METRICS_EXPORT_PERIOD_MILLIS = 5000;
+  /** Where the game writes its metrics, if anywhere. Set with -Dspacegame.metricsFile. */
+  public static final @Nullable Path METRICS_FILE = getPath("spacegame.metricsFile");
+  /** Publishes the metrics over JMX; turn off with -Dspacegame.metricsJmx=false. */
+  public static final boolean METRICS_JMX =
+      Boolean.parseBoolean(System.getProperty("spacegame.metricsJmx", "true"));
+  /** Shows the profiler in place of the text pane from the start; set with -Dspacegame.profiler. */
+  public static final boolean PROFILER = Boolean.getBoolean("spacegame.profiler");
   public static final int UI_COMPONENT_SMALL_WIDTH = 200;
   public static final int UI_COMPONENT_SMALL_HEIGHT = 200;
   public static final int UI_COMPONENT_LARGE_WIDTH = 1200;
   public static final int UI_COMPONENT_LARGE_HEIGHT = 800;
   public static final int WEAPON_RANGE = 4;
+
+  private static @Nullable Path getPath(String property) {
+    @Nullable String value = System.getProperty(property);
+    return value == null ? null : Path.of(value);
+  }
 }
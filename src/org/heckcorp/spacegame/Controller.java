@@ -1,10 +1,13 @@
 package org.heckcorp.spacegame;
 
 import com.google.common.collect.ImmutableSet;
-import javafx.application.Platform;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import javafx.collections.MapChangeListener;
 import javafx.collections.SetChangeListener;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Histogram;
+import org.heckcorp.spacegame.metrics.Metrics;
 import org.heckcorp.spacegame.model.MapPosition;
 import org.heckcorp.spacegame.model.Model;
 import org.heckcorp.spacegame.model.Player;
@@ -12,47 +15,61 @@ import org.heckcorp.spacegame.model.Unit;
 import org.heckcorp.spacegame.ui.GameViewPane;
 import org.heckcorp.spacegame.ui.map.Point;
 
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forwards model changes to the view. Changes are collected into a batch that is delivered to the
+ * view in a single FX event once the sequential executor reaches it. Unit additions, moves and
+ * removals are applied in order; for everything else only the latest value in the batch is
+ * applied, so transient values such as the selected unit being cleared and immediately reselected
+ * never reach the view.
+ */
 public class Controller {
   public void listenForPropertyChanges() {
     model
         .currentPlayerProperty()
         .addListener(
             (u1, u2, newValue) ->
-                sequentialExecutor.submit(
-                    () ->
-                        Platform.runLater(
-                            () -> {
-                              view.setCurrentPlayer(newValue);
-                              aiPlayer.setCurrentPlayer(newValue);
-                            })));
+                queueLatest(
+                    Update.CURRENT_PLAYER,
+                    () -> {
+                      view.setCurrentPlayer(newValue);
+                      aiPlayer.setCurrentPlayer(model, newValue);
+                    }));
     model
         .selectedHexPositionProperty()
         .addListener(
             (u1, u2, newValue) ->
-                sequentialExecutor.submit(
-                    () ->
-                        Platform.runLater(
-                            () -> {
-                              view.unselectHex();
-                              if (newValue != null) {
-                                view.selectHex(newValue);
-                              }
-                            })));
+                queueLatest(
+                    Update.SELECTED_HEX,
+                    () -> {
+                      view.unselectHex();
+                      if (newValue != null) {
+                        view.selectHex(newValue);
+                      }
+                    }));
     model
         .selectedUnitProperty()
         .addListener(
             (observable, oldValue, newValue) ->
-                sequentialExecutor.submit(
-                    () -> Platform.runLater(() -> view.selectUnit(newValue))));
+                queueLatest(Update.SELECTED_UNIT, () -> view.selectUnit(newValue)));
+    model
+        .pathHexesProperty()
+        .addListener(
+            (SetChangeListener<Point>)
+                change -> {
+                  ImmutableSet<Point> pathHexes = ImmutableSet.copyOf(change.getSet());
+                  queueLatest(Update.PATH_HEXES, () -> view.setPathHexes(pathHexes));
+                });
     model
         .targetHexesProperty()
         .addListener(
             (SetChangeListener<Point>)
-                change ->
-                    sequentialExecutor.submit(
-                        () ->
-                            Platform.runLater(
-                                () -> view.setTargetHexes(ImmutableSet.copyOf(change.getSet())))));
+                change -> {
+                  ImmutableSet<Point> targetHexes = ImmutableSet.copyOf(change.getSet());
+                  queueLatest(Update.TARGET_HEXES, () -> view.setTargetHexes(targetHexes));
+                });
     model
         .targetUnitProperty()
         .addListener(
@@ -60,54 +77,111 @@ public class Controller {
               final Unit selectedUnit = model.selectedUnitProperty().get();
               final Unit targetUnit = newValue;
               if (selectedUnit != null && targetUnit != null) {
-                sequentialExecutor.submit(
-                    () -> Platform.runLater(() -> view.targetUnit(selectedUnit, targetUnit)));
+                queueLatest(Update.TARGET_UNIT, () -> view.targetUnit(selectedUnit, targetUnit));
+              } else {
+                cancelLatest(Update.TARGET_UNIT);
               }
             });
     model
         .unitsProperty()
         .addListener(
             (SetChangeListener<Unit>)
-                change ->
-                    sequentialExecutor.submit(
-                        () ->
-                            Platform.runLater(
-                                () -> {
-                                  if (change.wasAdded()) {
-                                    Unit unit = change.getElementAdded();
-                                    Player.Color color = unit.getOwner().getColor();
-                                    @Nullable MapPosition unitPosition =
-                                        model.unitPositionsProperty().get().get(unit);
-                                    if (unitPosition != null) {
-                                      view.addUnit(unit, unitPosition, color);
-                                    }
-                                  }
-                                  if (change.wasRemoved()) {
-                                    Unit unit = change.getElementRemoved();
-                                    view.removeUnit(unit);
-                                  }
-                                })));
+                change -> {
+                  if (change.wasAdded()) {
+                    Unit unit = change.getElementAdded();
+                    @Nullable MapPosition unitPosition =
+                        model.unitPositionsProperty().get().get(unit);
+                    if (unitPosition != null) {
+                      queueInOrder(() -> view.addUnit(unit, unitPosition));
+                    }
+                  }
+                  if (change.wasRemoved()) {
+                    Unit unit = change.getElementRemoved();
+                    queueInOrder(() -> view.removeUnit(unit));
+                  }
+                });
     model
         .unitPositionsProperty()
         .addListener(
             (MapChangeListener<Unit, MapPosition>)
                 change -> {
                   if (change.wasRemoved() && change.wasAdded()) {
-                    sequentialExecutor.submit(
-                        () ->
-                            Platform.runLater(
-                                () ->
-                                    view.moveUnit(
-                                        change.getKey(),
-                                        change.getValueRemoved(),
-                                        change.getValueAdded())));
+                    Unit unit = change.getKey();
+                    MapPosition from = change.getValueRemoved();
+                    MapPosition to = change.getValueAdded();
+                    queueInOrder(() -> view.moveUnit(unit, from, to));
                   }
                 });
     model
         .winnerProperty()
         .addListener(
             (observable, oldValue, newValue) ->
-                sequentialExecutor.submit(() -> Platform.runLater(() -> view.setWinner(newValue))));
+                queueLatest(Update.WINNER, () -> view.setWinner(newValue)));
+  }
+
+  /**
+   * Shows the units and current player the game already had when the controller was created, as
+   * a game recovered from an autosave does, and hands the turn to the computer if it's its turn.
+   */
+  private void showInitialState() {
+    for (Unit unit : model.unitsProperty()) {
+      @Nullable MapPosition unitPosition = model.unitPositionsProperty().get().get(unit);
+      if (unitPosition != null) {
+        queueInOrder(() -> view.addUnit(unit, unitPosition));
+      }
+    }
+    Player currentPlayer = model.currentPlayerProperty().get();
+    queueLatest(
+        Update.CURRENT_PLAYER,
+        () -> {
+          view.setCurrentPlayer(currentPlayer);
+          aiPlayer.setCurrentPlayer(model, currentPlayer);
+        });
+  }
+
+  /** Queues an update that must be applied in order with the other unit updates. */
+  private void queueInOrder(Runnable update) {
+    synchronized (pendingLock) {
+      pendingInOrder.add(update);
+      scheduleDelivery();
+    }
+  }
+
+  /** Queues an update that replaces any pending update of the same kind. */
+  private void queueLatest(Update kind, Runnable update) {
+    synchronized (pendingLock) {
+      pendingLatest.put(kind, update);
+      scheduleDelivery();
+    }
+  }
+
+  private void cancelLatest(Update kind) {
+    synchronized (pendingLock) {
+      pendingLatest.remove(kind);
+    }
+  }
+
+  private void scheduleDelivery() {
+    if (!deliveryScheduled) {
+      deliveryScheduled = true;
+      sequentialExecutor.runLaterSequentially(this::deliverPendingUpdates);
+    }
+  }
+
+  /** Applies the pending batch on the FX thread: unit updates first, then the latest values. */
+  private void deliverPendingUpdates() {
+    long startNanos = System.nanoTime();
+    List<Runnable> updates;
+    synchronized (pendingLock) {
+      updates = Lists.newArrayList(pendingInOrder);
+      updates.addAll(pendingLatest.values());
+      pendingInOrder.clear();
+      pendingLatest.clear();
+      deliveryScheduled = false;
+    }
+    updates.forEach(Runnable::run);
+    batchSizes.record(updates.size());
+    deliveryTimer.recordSince(startNanos);
   }
 
   @SuppressWarnings("UnusedReturnValue")
@@ -118,6 +192,7 @@ public class Controller {
       SequentialExecutor sequentialAnimationExecutor) {
     Controller controller = new Controller(model, view, sequentialAnimationExecutor, aiPlayer);
     controller.listenForPropertyChanges();
+    controller.showInitialState();
     return controller;
   }
 
@@ -132,9 +207,26 @@ public class Controller {
     this.aiPlayer = aiPlayer;
   }
 
+  private static final Histogram batchSizes = Metrics.histogram("controller.batch");
+  private static final Histogram deliveryTimer = Metrics.timer("controller.delivery");
 
   private final AIPlayer aiPlayer;
+  private boolean deliveryScheduled;
   private final Model model;
+  private final List<Runnable> pendingInOrder = Lists.newArrayList();
+  private final Map<Update, Runnable> pendingLatest = Maps.newEnumMap(Update.class);
+  private final Object pendingLock = new Object();
   private final SequentialExecutor sequentialExecutor;
   private final GameViewPane view;
+
+  /** The kinds of coalesced update, in the order they're applied within a batch. */
+  private enum Update {
+    CURRENT_PLAYER,
+    PATH_HEXES,
+    SELECTED_HEX,
+    SELECTED_UNIT,
+    TARGET_HEXES,
+    TARGET_UNIT,
+    WINNER
+  }
 }
@@ -1,38 +1,166 @@
 package org.heckcorp.spacegame;
 
 import javafx.animation.Animation;
+import javafx.animation.SequentialTransition;
 import javafx.application.Platform;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Gauge;
+import org.heckcorp.spacegame.metrics.Histogram;
+import org.heckcorp.spacegame.metrics.Metrics;
 
-import java.util.concurrent.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
 
+/**
+ * Runs UI tasks and animations one after another on the FX thread. Nothing blocks while an
+ * animation plays: its finish handler starts whatever was queued after it. Animations queued
+ * back to back are merged into one {@link SequentialTransition}, which plays faster the longer
+ * the backlog, so a burst of computer moves doesn't leave the player waiting a second per move.
+ * May be called from any thread.
+ */
 public class SequentialExecutor {
   public void runLaterSequentially(Runnable task) {
-    submit(() -> Platform.runLater(task));
+    enqueue(task);
   }
 
-  @SuppressWarnings("UnusedReturnValue")
-  public Future<?> submit(Runnable task) {
-    return executor.submit(task);
+  public void playSequentially(Animation animation) {
+    enqueue(new AnimationStep(() -> animation));
   }
 
-  public SequentialExecutor() {
-    this.executor = Executors.newSingleThreadExecutor();
+  /**
+   * Queues an animation that is only built when its turn comes, so it can start from the state
+   * the earlier steps left behind. If the supplier returns null the step is dropped.
+   */
+  public void playSequentially(Supplier<@Nullable Animation> animationSupplier) {
+    enqueue(new AnimationStep(animationSupplier));
   }
 
-  private final ExecutorService executor;
+  /** Returns how many steps are waiting behind the playing animation. Called on the FX thread. */
+  public int getBacklog() {
+    return queue.size();
+  }
 
-  public void playSequentially(Animation animation) {
-    submit(
+  /** Returns how many animations are merged into the one playing. Called on the FX thread. */
+  public int getPlayingCount() {
+    return playingCount;
+  }
+
+  /**
+   * Finishes the playing animation and every animation queued so far at once. The animations
+   * still run to their ends, so their finish handlers leave nodes where they would have been.
+   */
+  public void cancelAnimations() {
+    runOnFxThread(
+        () -> {
+          skipRemaining = queue.size();
+          if (playing != null) {
+            playing.setRate(SKIP_RATE);
+          }
+        });
+  }
+
+  private void enqueue(Object step) {
+    runOnFxThread(
         () -> {
-          CompletableFuture<Void> future = new CompletableFuture<>();
-          animation.setOnFinished(e -> future.completeAsync(() -> null));
-          animation.play();
-          try {
-            future.get();
-          } catch (InterruptedException | ExecutionException e) {
-            // TODO: handle.
-            throw new RuntimeException(e);
+          queue.add(step);
+          backlog.set(queue.size());
+          if (!draining && playing == null && !drainScheduled) {
+            // Run the step in its own FX event rather than in the middle of the caller's.
+            drainScheduled = true;
+            Platform.runLater(this::runQueued);
+          }
+        });
+  }
+
+  /** Runs queued steps in order until the queue is empty or an animation starts playing. */
+  private void runQueued() {
+    drainScheduled = false;
+    if (draining) {
+      return;
+    }
+    draining = true;
+    try {
+      while (playing == null && !queue.isEmpty()) {
+        Object step = queue.remove();
+        backlog.set(queue.size());
+        boolean skip = takeSkip();
+        if (step instanceof AnimationStep animationStep) {
+          @Nullable Animation animation = animationStep.supplier().get();
+          if (animation != null) {
+            play(animation, skip);
           }
+        } else {
+          long startNanos = System.nanoTime();
+          ((Runnable) step).run();
+          taskTimer.recordSince(startNanos);
+        }
+      }
+    } finally {
+      draining = false;
+    }
+  }
+
+  /** Plays the animation, merged with any animations queued right behind it. */
+  private void play(Animation animation, boolean skip) {
+    SequentialTransition transition = new SequentialTransition(animation);
+    int merged = 1;
+    while (queue.peek() instanceof AnimationStep next && (skipRemaining > 0) == skip) {
+      queue.remove();
+      backlog.set(queue.size());
+      takeSkip();
+      @Nullable Animation nextAnimation = next.supplier().get();
+      if (nextAnimation != null) {
+        transition.getChildren().add(nextAnimation);
+        merged++;
+      }
+    }
+    transition.setRate(skip ? SKIP_RATE : Math.sqrt(merged));
+    mergedAnimations.record(merged);
+    long startNanos = System.nanoTime();
+    transition.setOnFinished(
+        event -> {
+          animationTimer.recordSince(startNanos);
+          playing = null;
+          playingCount = 0;
+          runQueued();
         });
+    playing = transition;
+    playingCount = merged;
+    transition.play();
+  }
+
+  private boolean takeSkip() {
+    if (skipRemaining > 0) {
+      skipRemaining--;
+      return true;
+    }
+    return false;
   }
+
+  private static void runOnFxThread(Runnable runnable) {
+    if (Platform.isFxApplicationThread()) {
+      runnable.run();
+    } else {
+      Platform.runLater(runnable);
+    }
+  }
+
+  /** Fast enough that any animation finishes on the next pulse. */
+  private static final double SKIP_RATE = 1000.0;
+
+  private static final Histogram animationTimer = Metrics.timer("executor.animation");
+  private static final Gauge backlog = Metrics.gauge("executor.queue");
+  private static final Histogram mergedAnimations = Metrics.histogram("executor.merged");
+  private static final Histogram taskTimer = Metrics.timer("executor.task");
+
+  // Only touched on the FX thread.
+  private boolean drainScheduled;
+  private boolean draining;
+  private @Nullable Animation playing;
+  private int playingCount;
+  private final Deque<Object> queue = new ArrayDeque<>();
+  private int skipRemaining;
+
+  private record AnimationStep(Supplier<@Nullable Animation> supplier) {}
 }
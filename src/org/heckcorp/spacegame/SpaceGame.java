@@ -4,42 +4,118 @@ import com.google.common.collect.ImmutableList;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.MetricsExporter;
 import org.heckcorp.spacegame.model.*;
 import org.heckcorp.spacegame.ui.GameViewPane;
 import org.heckcorp.spacegame.ui.map.MapUtils;
 import org.heckcorp.spacegame.ui.map.Point;
 import org.heckcorp.spacegame.ui.map.ViewResources;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class SpaceGame extends Application {
 
   @Override
-  public void start(Stage stage) throws FileNotFoundException {
+  public void start(Stage stage) throws IOException {
+    metricsExporter =
+        MetricsExporter.start(
+            Constants.METRICS_FILE, Constants.METRICS_JMX, Constants.METRICS_EXPORT_PERIOD_MILLIS);
     MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS);
-    Player humanPlayer = new Player("Human Player", Player.Type.HUMAN, .25, .45, .85);
-    Player computerPlayer = new Player("Computer Player", Player.Type.COMPUTER, .75, .25, .25);
-    Model model = new Model(mapUtils, ImmutableList.of(humanPlayer, computerPlayer));
     ViewResources viewResources = new ViewResources();
+    ViewResources.Identifier spaceshipId =
+        viewResources.addImageResource(ResourceLoader.getResource("resource/spaceship.png"));
+    @Nullable GameState recovered = recoverAutosave(mapUtils, spaceshipId);
+    GameState gameState = recovered != null ? recovered : createGame(mapUtils, spaceshipId);
+    Model model = Model.create(mapUtils, gameState);
+    this.model = model;
+    // Nothing has been queued on the model's writer thread yet, so the journal can still start
+    // listening to the game state from here; it hears every command from the first on.
+    journal =
+        GameJournal.create(gameState, Constants.AUTOSAVE_SNAPSHOT, Constants.AUTOSAVE_JOURNAL);
     SequentialExecutor sequentialExecutor = new SequentialExecutor();
     GameViewPane gameViewPane =
         GameViewPane.create(model, mapUtils, viewResources, sequentialExecutor);
-    AIPlayer aiPlayer = new AIPlayer(model, mapUtils);
+    AIPlayer aiPlayer = new AIPlayer(mapUtils);
     Controller.create(model, gameViewPane, aiPlayer, sequentialExecutor);
 
-    ViewResources.Identifier spaceshipId =
-        viewResources.addImageResource(ResourceLoader.getResource("resource/spaceship.png"));
-    model.addUnit(
-        new Unit(humanPlayer, spaceshipId), new MapPosition(new Point(1, 1), Direction.NORTH));
-    model.addUnit(
-        new Unit(computerPlayer, spaceshipId), new MapPosition(new Point(5, 5), Direction.NORTH));
-
     Scene scene = new Scene(gameViewPane);
     stage.setScene(scene);
     stage.show();
   }
 
+  @Override
+  public void stop() throws IOException {
+    // Let the queued commands finish, so that nothing writes to the journal once it's closed.
+    if (model != null) {
+      model.shutdown();
+    }
+    if (journal != null) {
+      journal.close();
+    }
+    if (metricsExporter != null) {
+      metricsExporter.close();
+    }
+  }
+
+  /**
+   * Recovers the game the last session was playing from its autosave, unless there is none or
+   * that game was over. An autosave that can't be read is moved aside rather than overwritten.
+   */
+  private static @Nullable GameState recoverAutosave(
+      MapUtils mapUtils, ViewResources.Identifier imageId) {
+    if (!Files.exists(Constants.AUTOSAVE_SNAPSHOT)) {
+      return null;
+    }
+    try {
+      GameState gameState =
+          GameJournal.recover(
+              Constants.AUTOSAVE_SNAPSHOT, Constants.AUTOSAVE_JOURNAL, mapUtils, imageId);
+      return gameState.getWinner() == null ? gameState : null;
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Couldn't recover the autosaved game; starting a new one.", e);
+      moveAside(Constants.AUTOSAVE_SNAPSHOT);
+      moveAside(Constants.AUTOSAVE_JOURNAL);
+      return null;
+    }
+  }
+
+  private static GameState createGame(MapUtils mapUtils, ViewResources.Identifier spaceshipId) {
+    Player humanPlayer = new Player("Human Player", Player.Type.HUMAN, .25, .45, .85);
+    Player computerPlayer = new Player("Computer Player", Player.Type.COMPUTER, .75, .25, .25);
+    GameState gameState = new GameState(mapUtils, ImmutableList.of(humanPlayer, computerPlayer));
+    gameState.addUnit(
+        new Unit(humanPlayer, spaceshipId), new MapPosition(new Point(1, 1), Direction.NORTH));
+    gameState.addUnit(
+        new Unit(computerPlayer, spaceshipId), new MapPosition(new Point(5, 5), Direction.NORTH));
+    return gameState;
+  }
+
+  /** Renames the file, if it exists, so that the next autosave doesn't overwrite it. */
+  private static void moveAside(Path file) {
+    Path aside = file.resolveSibling(file.getFileName() + ".unreadable");
+    try {
+      Files.move(file, aside, StandardCopyOption.REPLACE_EXISTING);
+    } catch (NoSuchFileException e) {
+      // Nothing to keep.
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Couldn't move " + file + " to " + aside + ".", e);
+    }
+  }
+
   public static void main(String[] args) {
     launch();
   }
+
+  private static final Logger logger = Logger.getLogger(SpaceGame.class.getName());
+
+  private @Nullable GameJournal journal;
+  private @Nullable MetricsExporter metricsExporter;
+  private @Nullable Model model;
 }
@@ -0,0 +1,192 @@
+package org.heckcorp.spacegame;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Metrics;
+import org.heckcorp.spacegame.model.*;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.heckcorp.spacegame.Constants.MAP_HEIGHT;
+import static org.heckcorp.spacegame.Constants.MAP_WIDTH;
+
+/**
+ * Plays computer-vs-computer games on the headless game state, one game per worker across all
+ * cores, and reports win rates, average game length and throughput, then the metrics. Options
+ * are given as {@code --name=value}: games, units (per side), max-turns, seed, turn-budget (the
+ * cap on the AI's thinking time per turn, in milliseconds), and the unit stats attack, health,
+ * energy and armor. The AI's search is bounded by work, so a game plays out the same for a given
+ * seed unless the cap cuts it short.
+ */
+public class Tournament {
+  public static void main(String[] args) throws InterruptedException, ExecutionException {
+    Settings settings = Settings.parse(args);
+    Tournament tournament = new Tournament(settings);
+    System.out.println(tournament.run());
+    System.out.println();
+    System.out.print(Metrics.report());
+  }
+
+  public Report run() throws InterruptedException, ExecutionException {
+    List<Callable<GameResult>> games =
+        IntStream.range(0, settings.games())
+            .<Callable<GameResult>>mapToObj(i -> () -> playGame(settings.seed() + i))
+            .collect(Collectors.toList());
+    ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    long startTime = System.nanoTime();
+    try {
+      Map<String, Integer> wins = Maps.newTreeMap();
+      int draws = 0;
+      long totalTurns = 0;
+      for (Future<GameResult> future : pool.invokeAll(games)) {
+        GameResult result = future.get();
+        totalTurns += result.turns();
+        @Nullable String winner = result.winner();
+        if (winner == null) {
+          draws++;
+        } else {
+          wins.merge(winner, 1, Integer::sum);
+        }
+      }
+      long elapsedNanos = System.nanoTime() - startTime;
+      return new Report(settings.games(), wins, draws, totalTurns, elapsedNanos);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private GameResult playGame(long seed) {
+    SplittableRandom random = new SplittableRandom(seed);
+    Player red = new Player("Red", Player.Type.COMPUTER, .75, .25, .25);
+    Player blue = new Player("Blue", Player.Type.COMPUTER, .25, .45, .85);
+    GameState gameState = new GameState(mapUtils, ImmutableList.of(red, blue));
+    UnitStore unitStore = new UnitStore(settings.unitsPerSide() * 2);
+    Set<Point> occupied = Sets.newHashSet();
+    for (int i = 0; i < settings.unitsPerSide(); i++) {
+      gameState.addUnit(createUnit(unitStore, red), randomPosition(random, occupied));
+      gameState.addUnit(createUnit(unitStore, blue), randomPosition(random, occupied));
+    }
+
+    AIPlayer aiPlayer = aiPlayers.get();
+    aiPlayer.startGame();
+    while (gameState.getWinner() == null && gameState.getTurnCount() < settings.maxTurns()) {
+      aiPlayer.playTurn(gameState, gameState.getCurrentPlayer());
+    }
+    @Nullable Player winner = gameState.getWinner();
+    return new GameResult(winner == null ? null : winner.getName(), gameState.getTurnCount());
+  }
+
+  private Unit createUnit(UnitStore unitStore, Player owner) {
+    return unitStore.allocate(
+        owner,
+        imageId,
+        settings.attackStrength(),
+        settings.maxHealth(),
+        settings.maxEnergy(),
+        settings.maxArmor());
+  }
+
+  private static MapPosition randomPosition(SplittableRandom random, Set<Point> occupied) {
+    Point point;
+    do {
+      point = new Point(random.nextInt(MAP_WIDTH), random.nextInt(MAP_HEIGHT));
+    } while (!occupied.add(point));
+    Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+    return new MapPosition(point, direction);
+  }
+
+  public Tournament(Settings settings) {
+    this.settings = settings;
+    this.mapUtils = new MapUtils(Constants.HEX_RADIUS);
+    this.aiPlayers =
+        ThreadLocal.withInitial(() -> new AIPlayer(mapUtils, settings.turnBudgetMillis()));
+  }
+
+  // One per worker, so that the planners' transposition tables are reused from game to game.
+  private final ThreadLocal<AIPlayer> aiPlayers;
+  private final ViewResources.Identifier imageId = new ViewResources.Identifier();
+  private final MapUtils mapUtils;
+  private final Settings settings;
+
+  private record GameResult(@Nullable String winner, int turns) {}
+
+  public record Report(
+      int games, Map<String, Integer> wins, int draws, long totalTurns, long elapsedNanos) {
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder();
+      builder.append(String.format("Games played:        %d%n", games));
+      wins.forEach(
+          (player, count) ->
+              builder.append(
+                  String.format(
+                      "%-20s %d (%.1f%%)%n", player + " wins:", count, 100.0 * count / games)));
+      builder.append(
+          String.format("Draws:               %d (%.1f%%)%n", draws, 100.0 * draws / games));
+      builder.append(
+          String.format("Average game length: %.1f turns%n", (double) totalTurns / games));
+      builder.append(
+          String.format("Throughput:          %.1f games/s%n", games / (elapsedNanos / 1e9)));
+      return builder.toString();
+    }
+  }
+
+  /** Tournament options. Unit stats default to the values in the Unit constructor. */
+  public record Settings(
+      int games,
+      int unitsPerSide,
+      int maxTurns,
+      long seed,
+      long turnBudgetMillis,
+      int attackStrength,
+      int maxHealth,
+      int maxEnergy,
+      int maxArmor) {
+    public static Settings parse(String[] args) {
+      Map<String, String> options = Maps.newHashMap();
+      for (String arg : args) {
+        if (!arg.startsWith("--") || !arg.contains("=")) {
+          throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+        }
+        int split = arg.indexOf('=');
+        options.put(arg.substring(2, split), arg.substring(split + 1));
+      }
+      Settings settings =
+          new Settings(
+              Integer.parseInt(options.getOrDefault("games", "1000")),
+              Integer.parseInt(options.getOrDefault("units", "1")),
+              Integer.parseInt(options.getOrDefault("max-turns", "200")),
+              Long.parseLong(options.getOrDefault("seed", "0")),
+              Long.parseLong(
+                  options.getOrDefault(
+                      "turn-budget", String.valueOf(Constants.AI_TURN_BUDGET_MILLIS))),
+              Integer.parseInt(
+                  options.getOrDefault("attack", String.valueOf(Unit.DEFAULT_ATTACK_STRENGTH))),
+              Integer.parseInt(
+                  options.getOrDefault("health", String.valueOf(Unit.DEFAULT_MAX_HEALTH))),
+              Integer.parseInt(
+                  options.getOrDefault("energy", String.valueOf(Unit.DEFAULT_MAX_ENERGY))),
+              Integer.parseInt(
+                  options.getOrDefault("armor", String.valueOf(Unit.DEFAULT_MAX_ARMOR))));
+      if (settings.unitsPerSide() * 2 > MAP_WIDTH * MAP_HEIGHT) {
+        throw new IllegalArgumentException(
+            "Too many units for the map: " + settings.unitsPerSide());
+      }
+      return settings;
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package org.heckcorp.spacegame;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed-size table of scores by game state hash, which search threads share without locking.
+ * Each entry is two longs, the score's bits and the hash exclusive-ored with them, and a lookup
+ * only accepts an entry whose halves give back the hash it's after. So an entry that two threads
+ * wrote at once, or that a reader saw half written, reads as a miss rather than as a wrong score.
+ * A new entry replaces whatever was in its place. Hash 0 is never stored, since it would match an
+ * empty entry.
+ *
+ * <p>Lookups, hits and stores are counted, for the hit rate. A table is big, so it's kept for as
+ * long as its planner is and cleared between games rather than allocated for each.
+ */
+public final class TranspositionTable {
+  /**
+   * Forgets every score, for a new game, whose states have nothing in common with the last one's.
+   * Not to be called while the table is in use.
+   */
+  public void clear() {
+    Arrays.fill(entries, 0);
+  }
+
+  /** Returns the score stored for the hash, or NaN if there isn't one. */
+  public double get(long hash) {
+    lookups.increment();
+    int index = getIndex(hash);
+    long check = entries[index];
+    long data = entries[index + 1];
+    if (hash == 0 || (check ^ data) != hash) {
+      return Double.NaN;
+    }
+    hits.increment();
+    return Double.longBitsToDouble(data);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Returns the fraction of lookups that found a score, or 0 if there haven't been any. */
+  public double getHitRate() {
+    long lookupCount = lookups.sum();
+    return lookupCount == 0 ? 0 : (double) hits.sum() / lookupCount;
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getStores() {
+    return stores.sum();
+  }
+
+  public void put(long hash, double score) {
+    if (hash == 0) {
+      return;
+    }
+    stores.increment();
+    int index = getIndex(hash);
+    long data = Double.doubleToRawLongBits(score);
+    entries[index] = hash ^ data;
+    entries[index + 1] = data;
+  }
+
+  private int getIndex(long hash) {
+    return (int) (hash >>> (Long.SIZE - indexBits)) << 1;
+  }
+
+  /**
+   * Creates a table with at least the given number of entries, rounded up to a power of 2.
+   *
+   * @throws IllegalArgumentException if the number isn't between 1 and {@link #MAX_ENTRIES}.
+   */
+  public TranspositionTable(int minEntries) {
+    checkArgument(
+        minEntries > 0 && minEntries <= MAX_ENTRIES,
+        "minEntries must be between 1 and %s: %s",
+        MAX_ENTRIES,
+        minEntries);
+    this.indexBits = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(minEntries - 1));
+    this.entries = new long[2 << indexBits];
+  }
+
+  /** The most entries a table can have, since each takes two places in an array. */
+  public static final int MAX_ENTRIES = 1 << 29;
+
+  // The hash and score of each entry, exclusive-ored, followed by the score.
+  private final long[] entries;
+  private final LongAdder hits = new LongAdder();
+  // The entry is picked by the top bits of the hash.
+  private final int indexBits;
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder stores = new LongAdder();
+}
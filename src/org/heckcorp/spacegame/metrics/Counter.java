@@ -0,0 +1,31 @@
+package org.heckcorp.spacegame.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** A count that only goes up, e.g. of events. Thread-safe. */
+public final class Counter {
+  public void add(long amount) {
+    if (Metrics.ENABLED) {
+      count.add(amount);
+    }
+  }
+
+  public long get() {
+    return count.sum();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  Counter(String name) {
+    this.name = name;
+  }
+
+  private final LongAdder count = new LongAdder();
+  private final String name;
+}
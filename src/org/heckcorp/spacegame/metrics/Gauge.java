@@ -0,0 +1,53 @@
+package org.heckcorp.spacegame.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A value that goes up and down, e.g. the length of a queue, along with the highest it has been,
+ * both ever and during the current turn. Thread-safe.
+ */
+public final class Gauge {
+  public void add(long delta) {
+    if (Metrics.ENABLED) {
+      raiseMax(value.addAndGet(delta));
+    }
+  }
+
+  public long get() {
+    return value.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void set(long newValue) {
+    if (Metrics.ENABLED) {
+      value.set(newValue);
+      raiseMax(newValue);
+    }
+  }
+
+  /** Returns the highest value during the turn, and starts the next turn's from the current one. */
+  long endTurn() {
+    return turnMax.getAndSet(value.get());
+  }
+
+  private void raiseMax(long newValue) {
+    Metrics.raise(max, newValue);
+    Metrics.raise(turnMax, newValue);
+  }
+
+  Gauge(String name) {
+    this.name = name;
+  }
+
+  private final AtomicLong max = new AtomicLong();
+  private final String name;
+  private final AtomicLong turnMax = new AtomicLong();
+  private final AtomicLong value = new AtomicLong();
+}
@@ -0,0 +1,133 @@
+package org.heckcorp.spacegame.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distribution of some non-negative values, e.g. how long something took, for percentiles.
+ * Values are counted in log-linear buckets: each power of 2 is split into 16 buckets, so a
+ * percentile is within about 3% of the true value, and every long fits in 960 buckets. Recording a
+ * value is a few atomic adds and allocates nothing. Thread-safe; a percentile read while values
+ * are being recorded may count some of them and not others.
+ */
+public final class Histogram {
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the value that the given fraction of values are at or below, e.g. 0.99 for the 99th
+   * percentile, or 0 if there are no values.
+   */
+  public long getPercentile(double fraction) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      counts[bucket] = buckets.get(bucket);
+      total += counts[bucket];
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+    for (int bucket = 0; bucket < BUCKETS; bucket++) {
+      seen += counts[bucket];
+      if (seen >= rank) {
+        long lower = getLowerBound(bucket);
+        long upper = bucket + 1 < BUCKETS ? getLowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+        return Math.min(lower + (upper - lower) / 2, max.get());
+      }
+    }
+    return 0;
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  /** Returns whether the values are times in nanoseconds, which reports show in milliseconds. */
+  public boolean isTimer() {
+    return timer;
+  }
+
+  public void record(long value) {
+    if (!Metrics.ENABLED) {
+      return;
+    }
+    long clamped = Math.max(0, value);
+    buckets.incrementAndGet(getBucket(clamped));
+    count.increment();
+    sum.add(clamped);
+    Metrics.raise(max, clamped);
+  }
+
+  /** Records the nanoseconds since the given {@link System#nanoTime()} reading. */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Returns the number and total of the values recorded during the turn, and starts the next
+   * turn's. Only {@link Metrics#endTurn} calls this, one turn at a time.
+   */
+  Interval endTurn() {
+    long countNow = count.sum();
+    long sumNow = sum.sum();
+    Interval interval = new Interval(countNow - turnStartCount, sumNow - turnStartSum, timer);
+    turnStartCount = countNow;
+    turnStartSum = sumNow;
+    return interval;
+  }
+
+  static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long getLowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  Histogram(String name, boolean timer) {
+    this.name = name;
+    this.timer = timer;
+  }
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+  private final String name;
+  private final LongAdder sum = new LongAdder();
+  private final boolean timer;
+  // The count and sum when the turn started; see endTurn.
+  private long turnStartCount;
+  private long turnStartSum;
+
+  /** The number and total of the values recorded in some interval, and whether they're times. */
+  public record Interval(long count, long sum, boolean timer) {}
+}
@@ -0,0 +1,164 @@
+package org.heckcorp.spacegame.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The game's metrics: counters, gauges and histograms, each registered under a name the first
+ * time it's asked for and kept for as long as the program runs. Classes keep theirs in static
+ * fields, so recording a value is an atomic add or two and allocates nothing. Metrics are on
+ * unless the game is started with -Dspacegame.metrics=false, which makes recording a no-op.
+ *
+ * <p>When a turn ends, {@link #endTurn} notes how many values each histogram got during the turn
+ * and what they added up to, and how high each gauge went, which breaks down where the turn's
+ * time went without a profiler. {@link #report} formats the metrics as text, and {@link
+ * MetricsExporter} writes them to a file and publishes them over JMX. Thread-safe.
+ */
+public final class Metrics {
+  public static Counter counter(String name) {
+    return counters.computeIfAbsent(name, Counter::new);
+  }
+
+  /**
+   * Notes the breakdown of the turn that just ended, keeping the last {@link
+   * #MAX_TURN_BREAKDOWNS}, and returns it.
+   */
+  public static synchronized TurnBreakdown endTurn(int turn) {
+    ImmutableSortedMap.Builder<String, Histogram.Interval> intervals =
+        ImmutableSortedMap.naturalOrder();
+    for (Histogram histogram : histograms.values()) {
+      Histogram.Interval interval = histogram.endTurn();
+      if (interval.count() > 0) {
+        intervals.put(histogram.getName(), interval);
+      }
+    }
+    ImmutableSortedMap.Builder<String, Long> gaugeMaxima = ImmutableSortedMap.naturalOrder();
+    for (Gauge gauge : gauges.values()) {
+      gaugeMaxima.put(gauge.getName(), gauge.endTurn());
+    }
+    TurnBreakdown breakdown = new TurnBreakdown(turn, intervals.build(), gaugeMaxima.build());
+    turnBreakdowns.addLast(breakdown);
+    if (turnBreakdowns.size() > MAX_TURN_BREAKDOWNS) {
+      turnBreakdowns.removeFirst();
+    }
+    return breakdown;
+  }
+
+  public static Gauge gauge(String name) {
+    return gauges.computeIfAbsent(name, Gauge::new);
+  }
+
+  public static ImmutableSortedMap<String, Counter> getCounters() {
+    return ImmutableSortedMap.copyOf(counters);
+  }
+
+  public static ImmutableSortedMap<String, Gauge> getGauges() {
+    return ImmutableSortedMap.copyOf(gauges);
+  }
+
+  public static ImmutableSortedMap<String, Histogram> getHistograms() {
+    return ImmutableSortedMap.copyOf(histograms);
+  }
+
+  /** Returns the breakdowns of the last few turns, oldest first. */
+  public static synchronized ImmutableList<TurnBreakdown> getTurnBreakdowns() {
+    return ImmutableList.copyOf(turnBreakdowns);
+  }
+
+  /** Returns a histogram of values that aren't times; see {@link #timer}. */
+  public static Histogram histogram(String name) {
+    return histograms.computeIfAbsent(name, key -> new Histogram(key, false));
+  }
+
+  /** Returns a table of every metric's current values. */
+  public static String report() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%-32s %10s%n", "Counter", "Count"));
+    for (Counter counter : getCounters().values()) {
+      builder.append(String.format("%-32s %10d%n", counter.getName(), counter.get()));
+    }
+    builder.append(String.format("%n%-32s %10s %10s%n", "Gauge", "Now", "Max"));
+    for (Gauge gauge : getGauges().values()) {
+      builder.append(
+          String.format("%-32s %10d %10d%n", gauge.getName(), gauge.get(), gauge.getMax()));
+    }
+    builder.append(
+        String.format(
+            "%n%-32s %10s %10s %10s %10s %10s %10s%n",
+            "Histogram", "Count", "Mean", "p50", "p90", "p99", "Max"));
+    for (Histogram histogram : getHistograms().values()) {
+      double scale = histogram.isTimer() ? NANOS_PER_MILLI : 1;
+      builder.append(
+          String.format(
+              "%-32s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+              histogram.getName() + (histogram.isTimer() ? " (ms)" : ""),
+              histogram.getCount(),
+              histogram.getMean() / scale,
+              histogram.getPercentile(0.5) / scale,
+              histogram.getPercentile(0.9) / scale,
+              histogram.getPercentile(0.99) / scale,
+              histogram.getMax() / scale));
+    }
+    return builder.toString();
+  }
+
+  /** Returns a histogram of times in nanoseconds, which reports show in milliseconds. */
+  public static Histogram timer(String name) {
+    return histograms.computeIfAbsent(name, key -> new Histogram(key, true));
+  }
+
+  /** Raises the maximum to the value if it's lower, however many threads are raising it. */
+  static void raise(AtomicLong maximum, long value) {
+    long current;
+    while (value > (current = maximum.get()) && !maximum.compareAndSet(current, value)) {
+      // Another thread changed it first; compare against its value instead.
+    }
+  }
+
+  private Metrics() {}
+
+  static final boolean ENABLED =
+      Boolean.parseBoolean(System.getProperty("spacegame.metrics", "true"));
+  public static final int MAX_TURN_BREAKDOWNS = 100;
+  static final double NANOS_PER_MILLI = 1e6;
+
+  private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  // Guarded by the class's lock.
+  private static final Deque<TurnBreakdown> turnBreakdowns = new ArrayDeque<>();
+
+  /**
+   * Where a turn's time went: the number and total of each histogram's values during the turn,
+   * for those that got any, and the highest each gauge went.
+   */
+  public record TurnBreakdown(
+      int turn,
+      ImmutableSortedMap<String, Histogram.Interval> histograms,
+      ImmutableSortedMap<String, Long> gaugeMaxima) {
+    /** Returns the breakdown on one line, with times in milliseconds. */
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder("Turn ").append(turn).append(':');
+      for (Map.Entry<String, Histogram.Interval> entry : histograms.entrySet()) {
+        Histogram.Interval interval = entry.getValue();
+        builder.append(
+            interval.timer()
+                ? String.format(
+                    " %s %d in %.2f ms;",
+                    entry.getKey(), interval.count(), interval.sum() / NANOS_PER_MILLI)
+                : String.format(
+                    " %s %d totalling %d;", entry.getKey(), interval.count(), interval.sum()));
+      }
+      gaugeMaxima.forEach((name, max) -> builder.append(String.format(" %s max %d;", name, max)));
+      return builder.toString();
+    }
+  }
+}
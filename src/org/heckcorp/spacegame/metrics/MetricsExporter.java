@@ -0,0 +1,234 @@
+package org.heckcorp.spacegame.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Publishes the {@link Metrics} while the game runs. If given a file, it rewrites the file with
+ * the report and the recent turn breakdowns every so often, and once more when closed; each
+ * version replaces the last whole, so the file can be watched without catching it half written.
+ * If asked to, it also registers an MBean under {@link #OBJECT_NAME}, for JConsole or VisualVM,
+ * with an attribute for each counter and gauge and each histogram's count, mean, percentiles and
+ * maximum, times in milliseconds.
+ */
+public final class MetricsExporter implements Closeable {
+  /** Stops writing the file, writes it one last time and unregisters the MBean. */
+  @Override
+  public void close() throws IOException {
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (mBeanServer != null) {
+      try {
+        mBeanServer.unregisterMBean(OBJECT_NAME);
+      } catch (JMException e) {
+        throw new IllegalStateException("Couldn't unregister the metrics MBean", e);
+      }
+    }
+    if (file != null) {
+      writeFile(file);
+    }
+  }
+
+  /** Writes the report and turn breakdowns to a temporary file, then moves it over the file. */
+  private static void writeFile(Path file) throws IOException {
+    StringBuilder builder = new StringBuilder(Metrics.report());
+    builder.append(System.lineSeparator());
+    for (Metrics.TurnBreakdown breakdown : Metrics.getTurnBreakdowns()) {
+      builder.append(breakdown).append(System.lineSeparator());
+    }
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.writeString(temp, builder, StandardCharsets.UTF_8);
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Starts publishing the metrics: to the file, if there is one, every period, and over JMX if
+   * asked to.
+   */
+  public static MetricsExporter start(@Nullable Path file, boolean jmx, long periodMillis) {
+    MetricsExporter exporter =
+        new MetricsExporter(file, jmx ? ManagementFactory.getPlatformMBeanServer() : null);
+    if (exporter.mBeanServer != null) {
+      try {
+        exporter.mBeanServer.registerMBean(new MetricsMBean(), OBJECT_NAME);
+      } catch (JMException e) {
+        throw new IllegalStateException("Couldn't register the metrics MBean", e);
+      }
+    }
+    if (file != null) {
+      exporter.scheduler.scheduleAtFixedRate(
+          () -> {
+            try {
+              writeFile(file);
+            } catch (IOException e) {
+              // Thrown out of the task, this would silently stop the schedule; this way the
+              // writes carry on once, say, the disk has room again.
+              logger.log(Level.WARNING, "Couldn't write the metrics to " + file, e);
+            }
+          },
+          periodMillis,
+          periodMillis,
+          TimeUnit.MILLISECONDS);
+    }
+    return exporter;
+  }
+
+  private MetricsExporter(@Nullable Path file, @Nullable MBeanServer mBeanServer) {
+    this.file = file;
+    this.mBeanServer = mBeanServer;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("metrics-exporter").setDaemon(true).build());
+  }
+
+  public static final ObjectName OBJECT_NAME = createObjectName();
+
+  private static final Logger logger = Logger.getLogger(MetricsExporter.class.getName());
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private static ObjectName createObjectName() {
+    try {
+      return new ObjectName("org.heckcorp.spacegame:type=Metrics");
+    } catch (JMException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private final @Nullable Path file;
+  private final @Nullable MBeanServer mBeanServer;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * The metrics as read-only attributes. Metrics registered after a client has read the MBean's
+   * info show up the next time it reads it.
+   */
+  private static final class MetricsMBean implements DynamicMBean {
+    @Override
+    public Object getAttribute(String name) throws AttributeNotFoundException {
+      @Nullable Supplier<Object> attribute = getAttributes().get(name);
+      if (attribute == null) {
+        throw new AttributeNotFoundException(name);
+      }
+      return attribute.get();
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+      ImmutableMap<String, Supplier<Object>> attributes = getAttributes();
+      AttributeList list = new AttributeList();
+      for (String name : names) {
+        @Nullable Supplier<Object> attribute = attributes.get(name);
+        if (attribute != null) {
+          list.add(new Attribute(name, attribute.get()));
+        }
+      }
+      return list;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+      ImmutableList.Builder<MBeanAttributeInfo> infos = ImmutableList.builder();
+      getAttributes()
+          .forEach(
+              (name, attribute) ->
+                  infos.add(
+                      new MBeanAttributeInfo(
+                          name,
+                          attribute.get().getClass().getName(),
+                          name,
+                          true,
+                          false,
+                          false)));
+      return new MBeanInfo(
+          Metrics.class.getName(),
+          "Space game metrics",
+          infos.build().toArray(new MBeanAttributeInfo[0]),
+          null,
+          null,
+          null);
+    }
+
+    /** Throws: the MBean has no operations. */
+    @Override
+    public @Nullable Object invoke(String actionName, Object[] params, String[] signature)
+        throws ReflectionException {
+      throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /** Throws: every attribute is read-only. */
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+      throw new AttributeNotFoundException("No writable attribute " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+      return new AttributeList();
+    }
+
+    /** Returns each attribute's name and a way to read it, in name order. */
+    private static ImmutableMap<String, Supplier<Object>> getAttributes() {
+      ImmutableMap.Builder<String, Supplier<Object>> attributes = ImmutableMap.builder();
+      for (Counter counter : Metrics.getCounters().values()) {
+        attributes.put(counter.getName(), counter::get);
+      }
+      for (Gauge gauge : Metrics.getGauges().values()) {
+        attributes.put(gauge.getName(), gauge::get);
+        attributes.put(gauge.getName() + ".max", gauge::getMax);
+      }
+      for (Histogram histogram : Metrics.getHistograms().values()) {
+        double scale = histogram.isTimer() ? Metrics.NANOS_PER_MILLI : 1;
+        String prefix = histogram.getName() + (histogram.isTimer() ? ".ms" : "");
+        attributes.put(prefix + ".count", histogram::getCount);
+        attributes.put(prefix + ".mean", () -> histogram.getMean() / scale);
+        for (Map.Entry<String, Double> percentile : PERCENTILES.entrySet()) {
+          attributes.put(
+              prefix + "." + percentile.getKey(),
+              () -> histogram.getPercentile(percentile.getValue()) / scale);
+        }
+        attributes.put(prefix + ".max", () -> histogram.getMax() / scale);
+      }
+      attributes.put(
+          "lastTurn",
+          () -> {
+            ImmutableList<Metrics.TurnBreakdown> breakdowns = Metrics.getTurnBreakdowns();
+            return breakdowns.isEmpty() ? "" : breakdowns.get(breakdowns.size() - 1).toString();
+          });
+      return attributes.build();
+    }
+
+    private static final ImmutableMap<String, Double> PERCENTILES =
+        ImmutableMap.of("p50", 0.5, "p90", 0.9, "p99", 0.99);
+  }
+}
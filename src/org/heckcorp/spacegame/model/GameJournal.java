@@ -0,0 +1,311 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Autosaves a game as a snapshot plus an append-only journal of the commands applied since. Each
+ * move, rotation, attack, new unit and end of turn is appended as a few bytes, so the cost of
+ * saving is proportional to what changed. Once the journal holds {@link #COMPACTION_THRESHOLD}
+ * commands it is folded into a new snapshot at the end of the turn.
+ *
+ * <p>Commands are buffered, then written out and forced to the disk at the end of every turn, so
+ * a crash loses at most the turn in progress. {@link #recover} loads the snapshot and replays the
+ * journal; the journal on its own is also a replay of the game from the snapshot onwards. Units
+ * are identified in the journal by the order they were added to the game, counting from the
+ * snapshot.
+ *
+ * <p>Journal format, big-endian: int magic "SGJL", short version, long CRC-32 of the snapshot the
+ * journal follows, then commands, each an opcode byte and its operands.
+ */
+public final class GameJournal implements GameState.Listener, Closeable {
+  @Override
+  public void unitAdded(Unit unit, MapPosition position) {
+    unitIds.put(unit, nextUnitId++);
+    ensureCapacity(1 + GameStateCodec.UNIT_BYTES);
+    buffer.put(ADD_UNIT);
+    GameStateCodec.putUnit(buffer, gameState.getPlayers(), unit, position);
+    commandCount++;
+  }
+
+  @Override
+  public void unitMoved(Unit unit, MapPosition from, MapPosition to) {
+    byte opcode;
+    if (!from.position().equals(to.position())) {
+      opcode = MOVE_FORWARD;
+    } else if (to.direction() == from.direction().left()) {
+      opcode = ROTATE_LEFT;
+    } else {
+      opcode = ROTATE_RIGHT;
+    }
+    ensureCapacity(1 + Integer.BYTES);
+    buffer.put(opcode);
+    buffer.putInt(getUnitId(unit));
+    commandCount++;
+  }
+
+  @Override
+  public void unitAttacked(Unit attacker, Unit defender) {
+    ensureCapacity(1 + 2 * Integer.BYTES);
+    buffer.put(ATTACK);
+    buffer.putInt(getUnitId(attacker));
+    buffer.putInt(getUnitId(defender));
+    commandCount++;
+  }
+
+  @Override
+  public void unitRemoved(Unit unit, MapPosition lastPosition) {
+    // Removals follow from the attacks that caused them, so they aren't journaled.
+    unitIds.remove(unit);
+  }
+
+  @Override
+  public void turnEnded(Player nextPlayer) {
+    ensureCapacity(1);
+    buffer.put(END_TURN);
+    commandCount++;
+    try {
+      if (commandCount >= COMPACTION_THRESHOLD) {
+        compact();
+      } else {
+        flush();
+        journalChannel.force(false);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Writes out any buffered commands, stops journaling and closes the journal file. */
+  @Override
+  public void close() throws IOException {
+    gameState.removeListener(this);
+    flush();
+    journalChannel.close();
+  }
+
+  /** Replaces the snapshot with the current game state and starts a new, empty journal. */
+  public void compact() throws IOException {
+    buffer.clear();
+    writeSnapshot(gameState, snapshotFile, journalFile);
+    journalChannel.close();
+    journalChannel = openForAppending(journalFile);
+    assignUnitIds();
+    commandCount = 0;
+  }
+
+  /** Returns the number of commands journaled since the last snapshot. */
+  public int getCommandCount() {
+    return commandCount;
+  }
+
+  /**
+   * Loads the snapshot and replays the journal on top of it. A journal written after a different
+   * snapshot is ignored, and a command cut off by a crash ends the replay.
+   *
+   * @throws IOException if the files can't be read or aren't an autosave in a known format.
+   */
+  public static GameState recover(
+      Path snapshotFile, Path journalFile, MapUtils mapUtils, ViewResources.Identifier imageId)
+      throws IOException {
+    GameState gameState = GameStateCodec.read(snapshotFile, mapUtils, imageId);
+    if (!Files.exists(journalFile)) {
+      return gameState;
+    }
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+      MappedByteBuffer journal = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (journal.remaining() < HEADER_BYTES
+          || journal.getInt() != MAGIC
+          || journal.getShort() != VERSION) {
+        throw new IOException("Not a game journal.");
+      }
+      if (journal.getLong() == checksum(snapshotFile)) {
+        replay(journal, gameState, imageId);
+      }
+    }
+    return gameState;
+  }
+
+  /**
+   * Applies the journaled commands in the buffer, from its current position, to a game in the
+   * state the journal started from. Listeners on the game see every command as it is replayed.
+   */
+  public static void replay(
+      ByteBuffer journal, GameState gameState, ViewResources.Identifier imageId)
+      throws IOException {
+    List<Unit> units = Lists.newArrayList(gameState.getUnits());
+    UnitStore unitStore = new UnitStore(INITIAL_STORE_CAPACITY);
+    try {
+      while (journal.hasRemaining()) {
+        int start = journal.position();
+        try {
+          switch (journal.get()) {
+            case ADD_UNIT ->
+                units.add(GameStateCodec.getUnit(journal, gameState, unitStore, imageId));
+            case MOVE_FORWARD -> gameState.moveForward(units.get(journal.getInt()));
+            case ROTATE_LEFT -> gameState.rotateLeft(units.get(journal.getInt()));
+            case ROTATE_RIGHT -> gameState.rotateRight(units.get(journal.getInt()));
+            case ATTACK -> {
+              Unit attacker = units.get(journal.getInt());
+              gameState.attack(attacker, units.get(journal.getInt()));
+            }
+            case END_TURN -> gameState.endTurn();
+            default -> throw new IOException("Unknown journal command at byte " + start);
+          }
+        } catch (BufferUnderflowException e) {
+          // The last command was only partly written.
+          return;
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Corrupt game journal.", e);
+    }
+  }
+
+  /** Numbers the units in the order they were added, as they will be read from the snapshot. */
+  private void assignUnitIds() {
+    unitIds.clear();
+    nextUnitId = 0;
+    for (Unit unit : gameState.getUnits()) {
+      unitIds.put(unit, nextUnitId++);
+    }
+  }
+
+  private int getUnitId(Unit unit) {
+    @Nullable Integer id = unitIds.get(unit);
+    assert id != null : "@AssumeAssertion(nullness)";
+    return id;
+  }
+
+  private void ensureCapacity(int bytes) {
+    if (buffer.remaining() < bytes) {
+      try {
+        flush();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      journalChannel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static long checksum(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      CRC32 crc = new CRC32();
+      crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      return crc.getValue();
+    }
+  }
+
+  private static FileChannel openForAppending(Path file) throws IOException {
+    return FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private static FileChannel openForWriting(Path file) throws IOException {
+    return FileChannel.open(
+        file,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  /**
+   * Writes a snapshot of the game and a new, empty journal that follows it. Both are forced to the
+   * disk, and the new snapshot is moved into place before the new journal, and the journal records
+   * which snapshot it follows, so a crash part way through never pairs a journal with the wrong
+   * snapshot.
+   */
+  private static void writeSnapshot(GameState gameState, Path snapshotFile, Path journalFile)
+      throws IOException {
+    Path snapshotTemp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+    try (FileChannel channel = openForWriting(snapshotTemp)) {
+      GameStateCodec.write(gameState, channel);
+      channel.force(false);
+    }
+    Path journalTemp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(MAGIC);
+    header.putShort(VERSION);
+    header.putLong(checksum(snapshotTemp));
+    header.flip();
+    try (FileChannel channel = openForWriting(journalTemp)) {
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+      channel.force(false);
+    }
+    Files.move(snapshotTemp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+    Files.move(journalTemp, journalFile, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Starts autosaving the game: writes a snapshot of its current state and an empty journal,
+   * replacing any earlier autosave in those files, then journals every change to the game. To carry
+   * on an autosaved game, {@link #recover} it and start a new journal on the recovered game.
+   */
+  public static GameJournal create(GameState gameState, Path snapshotFile, Path journalFile)
+      throws IOException {
+    writeSnapshot(gameState, snapshotFile, journalFile);
+    GameJournal journal =
+        new GameJournal(gameState, snapshotFile, journalFile, openForAppending(journalFile));
+    gameState.addListener(journal);
+    return journal;
+  }
+
+  private GameJournal(
+      GameState gameState, Path snapshotFile, Path journalFile, FileChannel journalChannel) {
+    this.gameState = gameState;
+    this.snapshotFile = snapshotFile;
+    this.journalFile = journalFile;
+    this.journalChannel = journalChannel;
+    for (Unit unit : gameState.getUnits()) {
+      unitIds.put(unit, nextUnitId++);
+    }
+  }
+
+  public static final int COMPACTION_THRESHOLD = 10_000;
+
+  private static final byte ADD_UNIT = 0;
+  private static final byte ATTACK = 1;
+  private static final byte END_TURN = 2;
+  private static final int HEADER_BYTES = Integer.BYTES + Short.BYTES + Long.BYTES;
+  private static final int INITIAL_STORE_CAPACITY = 16;
+  private static final int MAGIC = 0x53474a4c;
+  private static final byte MOVE_FORWARD = 3;
+  private static final byte ROTATE_LEFT = 4;
+  private static final byte ROTATE_RIGHT = 5;
+  private static final short VERSION = 1;
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+  private int commandCount;
+  private final GameState gameState;
+  private FileChannel journalChannel;
+  private final Path journalFile;
+  private int nextUnitId;
+  private final Path snapshotFile;
+  private final Map<Unit, Integer> unitIds = Maps.newHashMap();
+}
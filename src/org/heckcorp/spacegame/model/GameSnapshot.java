@@ -0,0 +1,286 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Sets;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+
+import java.util.Set;
+
+/**
+ * An immutable view of a game as it was after one of the {@link Model}'s commands, which any
+ * thread may read without locking. Snapshots are numbered in the order the commands ran, so a
+ * reader can tell whether the game has changed since.
+ *
+ * <p>The units are the game's own, as keys; their positions and stats as they were are read from
+ * the snapshot, with {@link #getPosition} and {@link #getStats}, since the units' own getters give
+ * their stats as they are now. Each snapshot shares most of its structure with the one before, so
+ * taking one only costs in proportion to what the command changed; see {@link Builder}.
+ */
+public final class GameSnapshot {
+  /**
+   * Returns a new game state, as the game was when the snapshot was taken, whose units are copies
+   * listed in the same order as {@link #getUnits()}.
+   */
+  public GameState copyState() {
+    GameState copy = new GameState(mapUtils, players);
+    copy.restoreTurn(currentPlayer, turnCount, winner);
+    ImmutableList<Unit> unitList = getUnits();
+    UnitStore unitStore = new UnitStore(Math.max(1, unitList.size()));
+    for (Unit unit : unitList) {
+      UnitEntry entry = getEntry(unit);
+      copy.addUnit(unit.copyInto(unitStore, entry.stats()), entry.position());
+    }
+    return copy;
+  }
+
+  public Player getCurrentPlayer() {
+    return currentPlayer;
+  }
+
+  /** Returns the game's hash; see {@link GameState#getHash}. */
+  public long getHash() {
+    return hash;
+  }
+
+  public ImmutableList<Player> getPlayers() {
+    return players;
+  }
+
+  public @Nullable MapPosition getPosition(Unit unit) {
+    @Nullable UnitEntry entry = findEntry(unit);
+    return entry == null ? null : entry.position();
+  }
+
+  /** Returns the unit's health, energy and armor as they were, or null if it wasn't in the game. */
+  public @Nullable UnitStats getStats(Unit unit) {
+    @Nullable UnitEntry entry = findEntry(unit);
+    return entry == null ? null : entry.stats();
+  }
+
+  public int getTurnCount() {
+    return turnCount;
+  }
+
+  /** Returns the units in the order they were added to the game. */
+  public ImmutableList<Unit> getUnits() {
+    // Racing threads may each build the list, but they build the same one.
+    @Nullable ImmutableList<Unit> list = unitList;
+    if (list == null) {
+      ImmutableList.Builder<Unit> builder = ImmutableList.builderWithExpectedSize(unitCount);
+      for (int slot = 0; slot < slotCount; slot++) {
+        @Nullable Unit unit = slots.get(slot);
+        if (unit != null) {
+          builder.add(unit);
+        }
+      }
+      list = builder.build();
+      unitList = list;
+    }
+    return list;
+  }
+
+  public ImmutableList<Unit> getUnitsAt(Point hex) {
+    @Nullable ImmutableListMultimap<Point, Unit> bucket = hexes.get(getBucket(hex));
+    return bucket == null ? ImmutableList.of() : bucket.get(hex);
+  }
+
+  public ImmutableList<Unit> getUnitsIn(Set<Point> hexes) {
+    ImmutableList.Builder<Unit> result = ImmutableList.builder();
+    for (Point hex : hexes) {
+      result.addAll(getUnitsAt(hex));
+    }
+    return result.build();
+  }
+
+  /** Returns the number of commands that had run when the snapshot was taken. */
+  public long getVersion() {
+    return version;
+  }
+
+  public @Nullable Player getWinner() {
+    return winner;
+  }
+
+  private @Nullable UnitEntry findEntry(Unit unit) {
+    @Nullable UnitEntry entry = entries.get(unit.getId());
+    // A copy of a unit has its id, but isn't in the game.
+    return entry != null && entry.unit() == unit ? entry : null;
+  }
+
+  private UnitEntry getEntry(Unit unit) {
+    @Nullable UnitEntry entry = findEntry(unit);
+    assert entry != null : "@AssumeAssertion(nullness)";
+    return entry;
+  }
+
+  /**
+   * Returns the index of the bucket holding the hex's units. Units can stray off the map, so any
+   * hex has a bucket; hexes near each other get nearby buckets, which share most of their trie.
+   */
+  private static int getBucket(Point hex) {
+    return hex.hashCode() & Integer.MAX_VALUE;
+  }
+
+  private GameSnapshot(
+      Builder builder,
+      PersistentArray<UnitEntry> entries,
+      PersistentArray<Unit> slots,
+      PersistentArray<ImmutableListMultimap<Point, Unit>> hexes,
+      long version) {
+    GameState gameState = builder.gameState;
+    this.mapUtils = builder.mapUtils;
+    this.players = gameState.getPlayers();
+    this.currentPlayer = gameState.getCurrentPlayer();
+    this.turnCount = gameState.getTurnCount();
+    this.winner = gameState.getWinner();
+    this.hash = gameState.getHash();
+    this.entries = entries;
+    this.slots = slots;
+    this.slotCount = builder.slotCount;
+    this.unitCount = builder.unitCount;
+    this.hexes = hexes;
+    this.version = version;
+  }
+
+  private final Player currentPlayer;
+  // Each unit's entry, by the unit's id.
+  private final PersistentArray<UnitEntry> entries;
+  private final long hash;
+  // The units in each hex, in buckets by the hex's hash code; see getBucket.
+  private final PersistentArray<ImmutableListMultimap<Point, Unit>> hexes;
+  private final MapUtils mapUtils;
+  private final ImmutableList<Player> players;
+  // The units in the order they were added; removed units leave their slots empty.
+  private final int slotCount;
+  private final PersistentArray<Unit> slots;
+  private final int turnCount;
+  private final int unitCount;
+  private @Nullable ImmutableList<Unit> unitList;
+  private final long version;
+  private final @Nullable Player winner;
+
+  /** Where a unit was and what its stats were, and its slot in the order units were added. */
+  private record UnitEntry(Unit unit, int slot, MapPosition position, UnitStats stats) {}
+
+  /**
+   * Takes snapshots of a game state, sharing structure between them. It listens to the game state
+   * for the units that change, and each snapshot copies only their entries and the parts of the
+   * tries that lead to them. Every change to the game state must reach its listeners, so it mustn't
+   * be changed by {@link GameState#undo} or through its units' setters. Only used on the thread
+   * that changes the game state.
+   */
+  static final class Builder implements GameState.Listener {
+    @Override
+    public void unitAdded(Unit unit, MapPosition position) {
+      changedUnits.add(unit);
+    }
+
+    @Override
+    public void unitMoved(Unit unit, MapPosition from, MapPosition to) {
+      changedUnits.add(unit);
+    }
+
+    @Override
+    public void unitAttacked(Unit attacker, Unit defender) {
+      changedUnits.add(attacker);
+      changedUnits.add(defender);
+    }
+
+    @Override
+    public void unitRemoved(Unit unit, MapPosition lastPosition) {
+      changedUnits.add(unit);
+    }
+
+    @Override
+    public void turnEnded(Player nextPlayer) {
+      // Every unit's energy is restored.
+      changedUnits.addAll(gameState.getUnits());
+    }
+
+    /** Takes a snapshot of the game state as it is now, numbered with the given version. */
+    GameSnapshot build(long version) {
+      for (Unit unit : changedUnits) {
+        @Nullable UnitEntry entry = entries.get(unit.getId());
+        assert entry == null || entry.unit() == unit : "Two of the game's units share an id";
+        @Nullable MapPosition position = gameState.getPosition(unit);
+        if (position == null) {
+          if (entry != null) {
+            entries.set(unit.getId(), null);
+            slots.set(entry.slot(), null);
+            removeFromHex(unit, entry.position().position());
+            unitCount--;
+          }
+          continue;
+        }
+        int slot;
+        if (entry == null) {
+          slot = slotCount++;
+          slots.set(slot, unit);
+          addToHex(unit, position.position());
+          unitCount++;
+        } else {
+          slot = entry.slot();
+          if (!entry.position().position().equals(position.position())) {
+            removeFromHex(unit, entry.position().position());
+            addToHex(unit, position.position());
+          }
+        }
+        entries.set(unit.getId(), new UnitEntry(unit, slot, position, UnitStats.of(unit)));
+      }
+      changedUnits.clear();
+      return new GameSnapshot(this, entries.build(), slots.build(), hexes.build(), version);
+    }
+
+    private void addToHex(Unit unit, Point hex) {
+      int bucket = getBucket(hex);
+      @Nullable ImmutableListMultimap<Point, Unit> units = hexes.get(bucket);
+      ImmutableListMultimap.Builder<Point, Unit> builder = ImmutableListMultimap.builder();
+      if (units != null) {
+        builder.putAll(units);
+      }
+      hexes.set(bucket, builder.put(hex, unit).build());
+    }
+
+    private void removeFromHex(Unit unit, Point hex) {
+      int bucket = getBucket(hex);
+      @Nullable ImmutableListMultimap<Point, Unit> units = hexes.get(bucket);
+      assert units != null : "@AssumeAssertion(nullness)";
+      ImmutableListMultimap.Builder<Point, Unit> remaining = ImmutableListMultimap.builder();
+      units.forEach(
+          (otherHex, other) -> {
+            if (other != unit) {
+              remaining.put(otherHex, other);
+            }
+          });
+      ImmutableListMultimap<Point, Unit> remainingUnits = remaining.build();
+      hexes.set(bucket, remainingUnits.isEmpty() ? null : remainingUnits);
+    }
+
+    /**
+     * Creates a builder for snapshots of the game state, which starts listening to it; the first
+     * snapshot holds the units already in the game.
+     */
+    Builder(GameState gameState, MapUtils mapUtils) {
+      this.gameState = gameState;
+      this.mapUtils = mapUtils;
+      changedUnits.addAll(gameState.getUnits());
+      gameState.addListener(this);
+    }
+
+    // The units changed since the last snapshot, in the order they first changed, so new units
+    // get their slots in the order they were added.
+    private final Set<Unit> changedUnits = Sets.newLinkedHashSet();
+    private final PersistentArray.Editor<UnitEntry> entries =
+        PersistentArray.<UnitEntry>empty().edit();
+    private final GameState gameState;
+    private final PersistentArray.Editor<ImmutableListMultimap<Point, Unit>> hexes =
+        PersistentArray.<ImmutableListMultimap<Point, Unit>>empty().edit();
+    private final MapUtils mapUtils;
+    private int slotCount;
+    private final PersistentArray.Editor<Unit> slots = PersistentArray.<Unit>empty().edit();
+    private int unitCount;
+  }
+}
@@ -0,0 +1,431 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Streams;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * The headless game core: units, their positions and the turn order. It has no JavaFX
+ * dependencies and fires no events except to its listeners, so it can run AI-vs-AI games at full
+ * speed. Not thread-safe.
+ */
+public final class GameState {
+
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  public void addUnit(Unit unit, MapPosition mapPosition) {
+    unitPositions.put(unit, mapPosition);
+    hexIndex.add(unit, mapPosition.position());
+    unitSlots.put(unit, slots.size());
+    slots.add(unit);
+    countUnit(unit, 1);
+    if (recording) {
+      undoLog.recordAddition(unit, hash);
+    }
+    hash ^= ZobristKeys.forUnit(unit, mapPosition);
+    listeners.forEach(l -> l.unitAdded(unit, mapPosition));
+  }
+
+  /**
+   * Resolves one attack. The damage first wears down the defender's armor on the side facing the
+   * attacker; whatever the armor doesn't absorb comes off the defender's health.
+   */
+  public boolean attack(Unit attacker, Unit defender) {
+    @Nullable MapPosition attackerPosition = unitPositions.get(attacker);
+    @Nullable MapPosition defenderPosition = unitPositions.get(defender);
+    if (attackerPosition == null || defenderPosition == null || attacker.getEnergy() <= 0) {
+      return false;
+    }
+    setEnergy(attacker, attacker.getEnergy() - 1);
+
+    int damage = attacker.getAttackStrength();
+    int attackedSide =
+        mapUtils.getHexDirection(defenderPosition.position(), attackerPosition.position());
+    int armor = defender.getArmor(attackedSide);
+    setArmor(defender, attackedSide, armor - damage);
+    damage = Math.max(damage - armor, 0);
+    setHealth(defender, defender.getHealth() - damage);
+    listeners.forEach(l -> l.unitAttacked(attacker, defender));
+
+    if (defender.getHealth() <= 0) {
+      removeUnit(defender);
+    }
+    return true;
+  }
+
+  /**
+   * Returns an independent copy of this state without its listeners, for trying out moves. The
+   * copy's units are new units in a store of their own, and {@link #getUnits()} lists them in the
+   * same order as this state's units.
+   */
+  public GameState copy() {
+    return copy(units);
+  }
+
+  /**
+   * Returns a copy of this state, as {@link #copy()} does, holding only the given units, in the
+   * given order. Whether the game has been won is taken from this state rather than worked out
+   * from the units held.
+   */
+  public GameState copy(Collection<Unit> unitsToCopy) {
+    GameState copy = new GameState(mapUtils, players);
+    copy.restoreTurn(currentPlayer, turnCount, winner);
+    UnitStore unitStore = new UnitStore(Math.max(1, unitsToCopy.size()));
+    for (Unit unit : unitsToCopy) {
+      @Nullable MapPosition position = unitPositions.get(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      copy.addUnit(unit.copyInto(unitStore), position);
+    }
+    return copy;
+  }
+
+  public void endTurn() {
+    if (recording) {
+      undoLog.recordTurn(currentPlayer, turnCount, hash);
+    }
+    for (Unit unit : units) {
+      setEnergy(unit, unit.getMaxEnergy());
+    }
+    Optional<Player> optionalNextPlayer =
+        Streams.stream(Iterables.cycle(players))
+            .dropWhile(p -> !p.equals(currentPlayer))
+            .skip(1)
+            .findFirst();
+    assert optionalNextPlayer.isPresent() : "@AssumeAssertion(nullness)";
+    hash ^= getPlayerKey(currentPlayer);
+    currentPlayer = optionalNextPlayer.get();
+    hash ^= getPlayerKey(currentPlayer);
+    turnCount++;
+    listeners.forEach(l -> l.turnEnded(currentPlayer));
+  }
+
+  public Player getCurrentPlayer() {
+    return currentPlayer;
+  }
+
+  /**
+   * Returns the game's Zobrist hash, which is kept up to date as the game changes. It covers each
+   * unit's hex, facing, energy, health and armor, and whose turn it is, and it's the same for a
+   * copy of the game with the same units as for the game itself.
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  public ImmutableList<Player> getPlayers() {
+    return players;
+  }
+
+  public @Nullable MapPosition getPosition(Unit unit) {
+    return unitPositions.get(unit);
+  }
+
+  /** Returns the units in the game, in the order they were added; a view, not a copy. */
+  public Set<Unit> getUnits() {
+    return units;
+  }
+
+  /** Returns the number of turns that have ended so far. */
+  public int getTurnCount() {
+    return turnCount;
+  }
+
+  public List<Unit> getUnitsAt(Point point) {
+    return hexIndex.getUnitsAt(point);
+  }
+
+  public List<Unit> getUnitsIn(Set<Point> hexes) {
+    return hexIndex.getUnitsIn(hexes);
+  }
+
+  public @Nullable Player getWinner() {
+    return winner;
+  }
+
+  /**
+   * Returns a mark that {@link #undo} can take the game back to. This is the make/unmake
+   * alternative to {@link #copy} for trying out moves: from the first mark on, every change is
+   * recorded until it is undone. Undoing doesn't tell the listeners, so it's meant for states
+   * without any, such as copies.
+   */
+  public int mark() {
+    recording = true;
+    return undoLog.size();
+  }
+
+  public boolean moveForward(Unit unit) {
+    return move(unit, p -> new MapPosition(mapUtils.getAdjacentHex(p), p.direction()));
+  }
+
+  public void removeListener(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  public boolean rotateLeft(Unit unit) {
+    return move(unit, p -> new MapPosition(p.position(), p.direction().left()));
+  }
+
+  public boolean rotateRight(Unit unit) {
+    return move(unit, p -> new MapPosition(p.position(), p.direction().right()));
+  }
+
+  /**
+   * Undoes every change made since the mark was taken, newest first, in time proportional to the
+   * number of changes. Destroyed units come back in their old places in {@link #getUnits()},
+   * though units sharing a hex may come back in a different order in {@link #getUnitsAt}.
+   */
+  public void undo(int mark) {
+    assert mark <= undoLog.size();
+    for (int entry = undoLog.size() - 1; entry >= mark; entry--) {
+      switch (undoLog.getKind(entry)) {
+        case ADDITION -> {
+          Unit unit = undoLog.getUnit(entry);
+          @Nullable MapPosition position = unitPositions.remove(unit);
+          assert position != null : "@AssumeAssertion(nullness)";
+          hexIndex.remove(unit, position.position());
+          // Every later change has been undone, so the unit is in the last slot.
+          unitSlots.remove(unit);
+          slots.remove(slots.size() - 1);
+          countUnit(unit, -1);
+        }
+        case ARMOR ->
+            undoLog.getUnit(entry).setArmor(undoLog.getIndex(entry), undoLog.getValue(entry));
+        case ENERGY -> undoLog.getUnit(entry).setEnergy(undoLog.getValue(entry));
+        case HEALTH -> undoLog.getUnit(entry).setHealth(undoLog.getValue(entry));
+        case POSITION -> {
+          Unit unit = undoLog.getUnit(entry);
+          MapPosition position = undoLog.getPosition(entry);
+          @Nullable MapPosition current = unitPositions.put(unit, position);
+          assert current != null : "@AssumeAssertion(nullness)";
+          hexIndex.move(unit, current.position(), position.position());
+        }
+        case REMOVAL ->
+            restoreUnit(
+                undoLog.getUnit(entry), undoLog.getPosition(entry), undoLog.getIndex(entry));
+        case TURN -> {
+          @Nullable Player player = undoLog.getPlayer(entry);
+          assert player != null : "@AssumeAssertion(nullness)";
+          currentPlayer = player;
+          turnCount = undoLog.getValue(entry);
+        }
+        case WINNER -> winner = undoLog.getPlayer(entry);
+      }
+    }
+    if (mark < undoLog.size()) {
+      hash = undoLog.getHash(mark);
+    }
+    undoLog.truncate(mark);
+  }
+
+  /** Restores the turn state of a loaded game. */
+  void restoreTurn(Player currentPlayer, int turnCount, @Nullable Player winner) {
+    hash ^= getPlayerKey(this.currentPlayer) ^ getPlayerKey(currentPlayer);
+    this.currentPlayer = currentPlayer;
+    this.turnCount = turnCount;
+    this.winner = winner;
+  }
+
+  private boolean move(Unit unit, UnaryOperator<MapPosition> moveOp) {
+    @Nullable MapPosition optionalPosition = unitPositions.get(unit);
+    if (optionalPosition == null || unit.getEnergy() <= 0) {
+      return false;
+    }
+    MapPosition currentPosition = optionalPosition;
+    setEnergy(unit, unit.getEnergy() - 1);
+    MapPosition newPosition = moveOp.apply(currentPosition);
+    if (recording) {
+      undoLog.recordPosition(unit, currentPosition, hash);
+    }
+    hash ^=
+        ZobristKeys.forPosition(unit, currentPosition) ^ ZobristKeys.forPosition(unit, newPosition);
+    hexIndex.move(unit, currentPosition.position(), newPosition.position());
+    unitPositions.put(unit, newPosition);
+    listeners.forEach(l -> l.unitMoved(unit, currentPosition, newPosition));
+    return true;
+  }
+
+  private void removeUnit(Unit unit) {
+    @Nullable MapPosition optionalPosition = unitPositions.remove(unit);
+    if (optionalPosition == null) {
+      return;
+    }
+    MapPosition position = optionalPosition;
+    @Nullable Integer slot = unitSlots.remove(unit);
+    assert slot != null : "@AssumeAssertion(nullness)";
+    if (recording) {
+      undoLog.recordRemoval(unit, position, slot, hash);
+    }
+    hash ^= ZobristKeys.forUnit(unit, position);
+    hexIndex.remove(unit, position.position());
+    slots.set(slot, null);
+    countUnit(unit, -1);
+    // Nothing in the undo log refers to a slot any more, so they can be renumbered.
+    if (undoLog.size() == 0 && slots.size() > 2 * unitSlots.size() + MIN_SLOTS_TO_COMPACT) {
+      compactSlots();
+    }
+    listeners.forEach(l -> l.unitRemoved(unit, position));
+
+    @Nullable Player lastPlayer = getLastPlayer();
+    if (lastPlayer != null) {
+      if (recording) {
+        undoLog.recordWinner(winner, hash);
+      }
+      winner = lastPlayer;
+      listeners.forEach(l -> l.gameWon(lastPlayer));
+    }
+  }
+
+  /** Puts a removed unit back in the slot it was removed from. */
+  private void restoreUnit(Unit unit, MapPosition position, int slot) {
+    unitPositions.put(unit, position);
+    hexIndex.add(unit, position.position());
+    unitSlots.put(unit, slot);
+    slots.set(slot, unit);
+    countUnit(unit, 1);
+  }
+
+  /** Drops the empty slots, keeping the units in order. */
+  private void compactSlots() {
+    int live = 0;
+    for (int slot = 0; slot < slots.size(); slot++) {
+      @Nullable Unit unit = slots.get(slot);
+      if (unit != null) {
+        slots.set(live, unit);
+        unitSlots.put(unit, live);
+        live++;
+      }
+    }
+    slots.subList(live, slots.size()).clear();
+  }
+
+  private void countUnit(Unit unit, int delta) {
+    unitCounts[players.indexOf(unit.getOwner())] += delta;
+  }
+
+  /** Returns the only player with units left, or null if there are more or none. */
+  private @Nullable Player getLastPlayer() {
+    @Nullable Player lastPlayer = null;
+    for (int i = 0; i < players.size(); i++) {
+      if (unitCounts[i] > 0) {
+        if (lastPlayer != null) {
+          return null;
+        }
+        lastPlayer = players.get(i);
+      }
+    }
+    return lastPlayer;
+  }
+
+  private long getPlayerKey(Player player) {
+    return ZobristKeys.forPlayer(players.indexOf(player));
+  }
+
+  private void setArmor(Unit unit, int side, int armor) {
+    if (recording) {
+      undoLog.recordArmor(unit, side, unit.getArmor(side), hash);
+    }
+    hash ^=
+        ZobristKeys.forArmor(unit, side, unit.getArmor(side))
+            ^ ZobristKeys.forArmor(unit, side, armor);
+    unit.setArmor(side, armor);
+  }
+
+  private void setEnergy(Unit unit, int energy) {
+    if (recording) {
+      undoLog.recordEnergy(unit, unit.getEnergy(), hash);
+    }
+    hash ^= ZobristKeys.forEnergy(unit, unit.getEnergy()) ^ ZobristKeys.forEnergy(unit, energy);
+    unit.setEnergy(energy);
+  }
+
+  private void setHealth(Unit unit, int health) {
+    if (recording) {
+      undoLog.recordHealth(unit, unit.getHealth(), hash);
+    }
+    hash ^= ZobristKeys.forHealth(unit, unit.getHealth()) ^ ZobristKeys.forHealth(unit, health);
+    unit.setHealth(health);
+  }
+
+  public GameState(MapUtils mapUtils, ImmutableList<Player> players) {
+    assert players.size() >= 2;
+    this.mapUtils = mapUtils;
+    this.players = players;
+    this.currentPlayer = players.get(0);
+    this.hash = getPlayerKey(currentPlayer);
+    this.unitCounts = new int[players.size()];
+  }
+
+  /** Below this many slots, empty ones aren't worth compacting away. */
+  private static final int MIN_SLOTS_TO_COMPACT = 64;
+
+  private Player currentPlayer;
+  private long hash;
+  private final HexIndex hexIndex = new HexIndex();
+  private final List<Listener> listeners = Lists.newArrayList();
+  private final MapUtils mapUtils;
+  private final ImmutableList<Player> players;
+  // Whether changes are being recorded in the undo log; see mark().
+  private boolean recording;
+  // The units in the order they were added. A removed unit leaves its slot empty, so that undoing
+  // the removal puts it back in its place without moving any other unit.
+  private final List<@Nullable Unit> slots = Lists.newArrayList();
+  private int turnCount;
+  private final UndoLog undoLog = new UndoLog();
+  // How many units each player has, by index in players.
+  private final int[] unitCounts;
+  private final Map<Unit, MapPosition> unitPositions = Maps.newHashMap();
+  // Each unit's index in slots.
+  private final Map<Unit, Integer> unitSlots = Maps.newHashMap();
+  private final Set<Unit> units = new UnitSet();
+  private @Nullable Player winner;
+
+  /** A read-only view of the units in their slots, skipping the empty ones. */
+  private final class UnitSet extends AbstractSet<Unit> {
+    @Override
+    public boolean contains(@Nullable Object object) {
+      return unitSlots.containsKey(object);
+    }
+
+    @Override
+    public Iterator<Unit> iterator() {
+      return Iterators.filter(slots.iterator(), Unit.class);
+    }
+
+    @Override
+    public int size() {
+      return unitSlots.size();
+    }
+  }
+
+  /** Receives every change to the game state, after it has been applied. */
+  public interface Listener {
+    default void unitAdded(Unit unit, MapPosition position) {}
+
+    default void unitMoved(Unit unit, MapPosition from, MapPosition to) {}
+
+    default void unitAttacked(Unit attacker, Unit defender) {}
+
+    default void unitRemoved(Unit unit, MapPosition lastPosition) {}
+
+    default void turnEnded(Player nextPlayer) {}
+
+    default void gameWon(Player winner) {}
+  }
+}
@@ -0,0 +1,223 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes complete game states in a compact binary format. Saves are written through a
+ * file channel and loaded from a memory-mapped file, so even games with 100k units take
+ * milliseconds.
+ *
+ * <p>Format version 1, big-endian:
+ *
+ * <pre>
+ * int    magic "SGSV"
+ * short  version
+ * int    player count, then for each player:
+ *          short name length, UTF-8 name bytes, byte type, double r, double g, double b
+ * int    current player index
+ * int    turn count
+ * int    winner index, or -1
+ * int    unit count, then for each unit, in the order they were added:
+ *          int owner index, int attack strength, int health, int max health, int energy,
+ *          int max energy, int[6] armor, int[6] max armor, int x, int y, byte direction
+ * </pre>
+ */
+public final class GameStateCodec {
+  public static void write(GameState gameState, Path path) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      write(gameState, channel);
+    }
+  }
+
+  /** Writes the state at the channel's current position. */
+  public static void write(GameState gameState, FileChannel channel) throws IOException {
+    ImmutableList<Player> players = gameState.getPlayers();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.putInt(MAGIC);
+    buffer.putShort(VERSION);
+    buffer.putInt(players.size());
+    for (Player player : players) {
+      byte[] name = player.getName().getBytes(StandardCharsets.UTF_8);
+      flushIfFull(channel, buffer, Short.BYTES + name.length + 1 + 3 * Double.BYTES);
+      buffer.putShort((short) name.length);
+      buffer.put(name);
+      buffer.put((byte) player.getType().ordinal());
+      buffer.putDouble(player.getColor().r());
+      buffer.putDouble(player.getColor().g());
+      buffer.putDouble(player.getColor().b());
+    }
+    flushIfFull(channel, buffer, 4 * Integer.BYTES);
+    buffer.putInt(players.indexOf(gameState.getCurrentPlayer()));
+    buffer.putInt(gameState.getTurnCount());
+    @Nullable Player winner = gameState.getWinner();
+    buffer.putInt(winner == null ? -1 : players.indexOf(winner));
+    buffer.putInt(gameState.getUnits().size());
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      flushIfFull(channel, buffer, UNIT_BYTES);
+      putUnit(buffer, players, unit, position);
+    }
+    flush(channel, buffer);
+  }
+
+  /**
+   * Loads a saved game. Units don't have types yet, so they are all given the same image.
+   *
+   * @throws IOException if the file can't be read or isn't a saved game in a known format.
+   */
+  public static GameState read(Path path, MapUtils mapUtils, ViewResources.Identifier imageId)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return read(buffer, mapUtils, imageId);
+    }
+  }
+
+  /** Reads a state from the buffer's current position, leaving the position just after it. */
+  public static GameState read(
+      ByteBuffer buffer, MapUtils mapUtils, ViewResources.Identifier imageId) throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a saved game.");
+      }
+      short version = buffer.getShort();
+      if (version != VERSION) {
+        throw new IOException("Unsupported saved game version: " + version);
+      }
+      int playerCount = buffer.getInt();
+      checkCount(buffer, playerCount, MIN_PLAYER_BYTES, "player count");
+      ImmutableList.Builder<Player> playersBuilder = ImmutableList.builder();
+      for (int i = 0; i < playerCount; i++) {
+        short nameLength = buffer.getShort();
+        checkCount(buffer, nameLength, 1, "player name length");
+        byte[] name = new byte[nameLength];
+        buffer.get(name);
+        Player.Type type = Player.Type.values()[buffer.get()];
+        double r = buffer.getDouble();
+        double g = buffer.getDouble();
+        double b = buffer.getDouble();
+        playersBuilder.add(new Player(new String(name, StandardCharsets.UTF_8), type, r, g, b));
+      }
+      ImmutableList<Player> players = playersBuilder.build();
+      Player currentPlayer = players.get(buffer.getInt());
+      int turnCount = buffer.getInt();
+      int winnerIndex = buffer.getInt();
+
+      GameState gameState = new GameState(mapUtils, players);
+      int unitCount = buffer.getInt();
+      checkCount(buffer, unitCount, UNIT_BYTES, "unit count");
+      UnitStore unitStore = new UnitStore(unitCount);
+      for (int i = 0; i < unitCount; i++) {
+        getUnit(buffer, gameState, unitStore, imageId);
+      }
+      gameState.restoreTurn(
+          currentPlayer, turnCount, winnerIndex < 0 ? null : players.get(winnerIndex));
+      return gameState;
+    } catch (RuntimeException e) {
+      // Truncated files and out-of-range indexes surface as buffer or index exceptions.
+      throw new IOException("Corrupt saved game.", e);
+    }
+  }
+
+  /** Writes one unit's stats and position in the format described above. */
+  static void putUnit(
+      ByteBuffer buffer, ImmutableList<Player> players, Unit unit, MapPosition position) {
+    buffer.putInt(players.indexOf(unit.getOwner()));
+    buffer.putInt(unit.getAttackStrength());
+    buffer.putInt(unit.getHealth());
+    buffer.putInt(unit.getMaxHealth());
+    buffer.putInt(unit.getEnergy());
+    buffer.putInt(unit.getMaxEnergy());
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      buffer.putInt(unit.getArmor(side));
+    }
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      buffer.putInt(unit.getMaxArmor(side));
+    }
+    buffer.putInt(position.position().x());
+    buffer.putInt(position.position().y());
+    buffer.put((byte) position.direction().ordinal());
+  }
+
+  /** Reads one unit written by {@link #putUnit} and adds it to the game. */
+  static Unit getUnit(
+      ByteBuffer buffer,
+      GameState gameState,
+      UnitStore unitStore,
+      ViewResources.Identifier imageId) {
+    ImmutableList<Player> players = gameState.getPlayers();
+    Player owner = players.get(buffer.getInt());
+    int attackStrength = buffer.getInt();
+    int health = buffer.getInt();
+    int maxHealth = buffer.getInt();
+    int energy = buffer.getInt();
+    int maxEnergy = buffer.getInt();
+    Unit unit = unitStore.allocate(owner, imageId, attackStrength, maxHealth, maxEnergy, 0);
+    unit.setHealth(health);
+    unit.setEnergy(energy);
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      unit.setArmor(side, buffer.getInt());
+    }
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      unit.setMaxArmor(side, buffer.getInt());
+    }
+    Point point = new Point(buffer.getInt(), buffer.getInt());
+    Direction direction = Direction.values()[buffer.get()];
+    gameState.addUnit(unit, new MapPosition(point, direction));
+    return unit;
+  }
+
+  /**
+   * Checks a count read from a save before anything is allocated for it: it can't be negative, or
+   * more than the rest of the buffer could hold at {@code bytesEach} bytes per item.
+   */
+  private static void checkCount(ByteBuffer buffer, int count, int bytesEach, String what)
+      throws IOException {
+    if (count < 0 || count > buffer.remaining() / bytesEach) {
+      throw new IOException("Corrupt saved game: " + what + " " + count + " is out of range.");
+    }
+  }
+
+  private static void flushIfFull(FileChannel channel, ByteBuffer buffer, int bytesNeeded)
+      throws IOException {
+    if (buffer.remaining() < bytesNeeded) {
+      flush(channel, buffer);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private GameStateCodec() {}
+
+  static final int UNIT_BYTES = (8 + 2 * UnitStore.SIDES) * Integer.BYTES + 1;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MAGIC = 0x53475356;
+  /** The bytes a player takes with an empty name. */
+  private static final int MIN_PLAYER_BYTES = Short.BYTES + 1 + 3 * Double.BYTES;
+  private static final short VERSION = 1;
+}
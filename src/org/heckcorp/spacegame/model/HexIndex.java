@@ -0,0 +1,48 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
+import org.heckcorp.spacegame.ui.map.Point;
+
+/** Maps each occupied hex to the units in it, so per-hex lookups don't scan every unit. */
+public final class HexIndex {
+  public void add(Unit unit, Point hex) {
+    unitsByHex.put(hex, unit);
+  }
+
+  public void move(Unit unit, Point from, Point to) {
+    if (!from.equals(to)) {
+      unitsByHex.remove(from, unit);
+      unitsByHex.put(to, unit);
+    }
+  }
+
+  public void remove(Unit unit, Point hex) {
+    unitsByHex.remove(hex, unit);
+  }
+
+  public ImmutableList<Unit> getUnitsAt(Point hex) {
+    return ImmutableList.copyOf(unitsByHex.get(hex));
+  }
+
+  /** Returns the units in any of the given hexes, e.g. the result of MapUtils.getTargetHexes. */
+  public ImmutableList<Unit> getUnitsIn(Iterable<Point> hexes) {
+    ImmutableList.Builder<Unit> result = ImmutableList.builder();
+    for (Point hex : hexes) {
+      result.addAll(unitsByHex.get(hex));
+    }
+    return result.build();
+  }
+
+  public boolean isOccupied(Point hex) {
+    return unitsByHex.containsKey(hex);
+  }
+
+  public int size() {
+    return unitsByHex.size();
+  }
+
+  private final SetMultimap<Point, Unit> unitsByHex =
+      MultimapBuilder.hashKeys().linkedHashSetValues().build();
+}
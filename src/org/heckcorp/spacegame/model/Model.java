@@ -1,42 +1,103 @@
 package org.heckcorp.spacegame.model;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.metrics.Gauge;
+import org.heckcorp.spacegame.metrics.Histogram;
+import org.heckcorp.spacegame.metrics.Metrics;
 import org.heckcorp.spacegame.ui.map.MapModel;
 import org.heckcorp.spacegame.ui.map.MapUtils;
 import org.heckcorp.spacegame.ui.map.MouseButton;
 import org.heckcorp.spacegame.ui.map.Point;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
-import java.util.function.UnaryOperator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Observable adapter over a {@link GameState}. It mirrors the game state into JavaFX properties for
+ * the UI to bind to and keeps track of the UI-only selection state.
+ *
+ * <p>The game state has a single writer. Every change to it is a command, queued from any thread
+ * and run in order on the model's own writer thread, and after each command the writer publishes
+ * a new {@link GameSnapshot}, which copies only what the command changed. Commands must change
+ * the game through the game state's own methods, which the snapshots hear about, rather than
+ * through units' setters or {@link GameState#undo}. Readers, such as the UI and the computer
+ * player, read the latest snapshot without locking. The game's changes reach the JavaFX
+ * properties on the UI executor, the FX thread unless another is given, in the order they
+ * happened; the selection state is only touched there.
+ */
 public final class Model implements MapModel {
 
   public void addUnit(Unit unit, MapPosition mapPosition) {
-    unitPositions.get().put(unit, mapPosition);
-    units.add(unit);
+    queue(state -> state.addUnit(unit, mapPosition));
   }
 
+  /** Ends the turn, if it's a human player's; players can't end the computer's turn. */
   public void endTurn() {
-    units.forEach(Unit::resetForTurn);
-    selectedUnit.setValue(null);
-    selectedHexPosition.setValue(null);
-    targetUnit.setValue(null);
-    Optional<Player> optionalNextPlayer =
-        Streams.stream(Iterables.cycle(players))
-            .dropWhile(p -> !p.equals(currentPlayer.get()))
-            .skip(1)
-            .findFirst();
-    assert optionalNextPlayer.isPresent() : "@AssumeAssertion(nullness)";
-    currentPlayerProperty().set(optionalNextPlayer.get());
+    queueForHuman(GameState::endTurn);
+  }
+
+  /** Returns the game as of the last command to run. */
+  public GameSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  public List<Unit> getUnitsAt(Point point) {
+    return snapshot.getUnitsAt(point);
+  }
+
+  public List<Unit> getUnitsIn(Set<Point> hexes) {
+    return snapshot.getUnitsIn(hexes);
+  }
+
+  /**
+   * Stops taking commands and waits for the queued ones to run, so that nothing touches the game
+   * state afterwards.
+   */
+  public void shutdown() {
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        writer.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Queues a command to run on the writer thread, whatever state the game is in by then. */
+  public CompletableFuture<Void> submit(Consumer<GameState> command) {
+    return CompletableFuture.runAsync(() -> run(command), this::execute);
+  }
+
+  /**
+   * Queues a command that only runs if no other command has run since the snapshot was taken,
+   * e.g. to carry out moves planned on the snapshot. Completes with whether the command ran.
+   */
+  public CompletableFuture<Boolean> submitIfUnchanged(
+      GameSnapshot basis, Consumer<GameState> command) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          if (basis.getVersion() != snapshot.getVersion()) {
+            return false;
+          }
+          run(command);
+          return true;
+        },
+        this::execute);
   }
 
   @Override
@@ -57,87 +118,130 @@ public final class Model implements MapModel {
       }
     } else if (mouseButton == MouseButton.SECONDARY) {
       selectionMode = SelectionMode.SELECT;
+      pathHexes.clear();
       selectedUnit.setValue(null);
       selectedHexPosition.setValue(null);
       targetHexes.clear();
     }
   }
 
+  /**
+   * Shows the cheapest path for the selected unit to the hovered hex, or, if an enemy is there, to
+   * the nearest position from which it can fire on it. Only shown on human players' turns.
+   */
+  @Override
+  public void hexHovered(Point hexCoordinates) {
+    pathHexes.clear();
+    @Nullable Unit unit = selectedUnit.get();
+    if (unit == null
+        || !selectionMode.equals(SelectionMode.SELECT)
+        || currentPlayer.get().getType().equals(Player.Type.COMPUTER)) {
+      return;
+    }
+    @Nullable MapPosition position = snapshot.getPosition(unit);
+    if (position == null) {
+      return;
+    }
+    boolean enemyInHex =
+        getUnitsAt(hexCoordinates).stream().anyMatch(u -> !u.getOwner().equals(unit.getOwner()));
+    @Nullable ImmutableList<MapPosition> path =
+        enemyInHex
+            ? pathfinder.findPathToFire(position, hexCoordinates)
+            : pathfinder.findPath(position, hexCoordinates);
+    if (path != null) {
+      path.stream()
+          .map(MapPosition::position)
+          .filter(hex -> !hex.equals(position.position()))
+          .forEach(pathHexes::add);
+    }
+  }
+
   public void moveForward() {
-    doMove(p -> new MapPosition(mapUtils.getAdjacentHex(p), p.direction()));
+    @Nullable Unit unit = selectedUnit.get();
+    if (unit != null) {
+      queueForHuman(state -> state.moveForward(unit));
+    }
   }
 
   public void processAttack() {
-    Unit attacker = selectedUnit.getValue();
-    Unit defender = targetUnit.getValue();
-    if (attacker != null && defender != null && attacker.getEnergy() > 0) {
-      targetHexes.clear();
-      attacker.setEnergy(attacker.getEnergy() - 1);
-      selectUnit(attacker);
-
-      int damage = attacker.getAttackStrength();
-      int attackedSide =
-          mapUtils.getHexDirection(
-              unitPositions.get(defender).position(), unitPositions.get(attacker).position());
-      int armor = defender.getArmor()[attackedSide];
-      defender.getArmor()[attackedSide] = armor - damage;
-      damage = Math.max(damage - armor, 0);
-      defender.setHealth(defender.getHealth() - damage);
-
-      targetUnit.setValue(null);
-      if (defender.getHealth() > 0) {
-        targetUnit.setValue(defender);
-      } else {
-        removeUnit(defender);
-      }
+    @Nullable Unit attacker = selectedUnit.getValue();
+    @Nullable Unit defender = targetUnit.getValue();
+    if (attacker != null && defender != null) {
+      queueForHuman(state -> state.attack(attacker, defender));
     }
   }
 
   public void rotateLeft() {
-    doMove(p -> new MapPosition(p.position(), p.direction().left()));
+    @Nullable Unit unit = selectedUnit.get();
+    if (unit != null) {
+      queueForHuman(state -> state.rotateLeft(unit));
+    }
   }
 
   public void rotateRight() {
-    doMove(p -> new MapPosition(p.position(), p.direction().right()));
+    @Nullable Unit unit = selectedUnit.get();
+    if (unit != null) {
+      queueForHuman(state -> state.rotateRight(unit));
+    }
   }
 
   public void setSelectionMode(SelectionMode mode) {
     this.selectionMode = mode;
+    pathHexes.clear();
     targetHexes.clear();
     if (selectionMode.equals(SelectionMode.TARGET)) {
       if (selectedUnit.get() != null) {
-        MapPosition selectedUnitPosition = unitPositions.get(selectedUnit.get());
-        targetHexes.addAll(mapUtils.getTargetHexes(selectedUnitPosition));
+        @Nullable MapPosition selectedUnitPosition = snapshot.getPosition(selectedUnit.get());
+        if (selectedUnitPosition != null) {
+          targetHexes.addAll(mapUtils.getTargetHexes(selectedUnitPosition));
+        }
       }
     }
   }
 
-  private void doMove(UnaryOperator<MapPosition> moveOp) {
-    Unit selectedUnit = this.selectedUnit.get();
-    if (selectedUnit.getEnergy() > 0) {
-      targetHexes.clear();
-      selectedUnit.setEnergy(selectedUnit.getEnergy() - 1);
-      selectUnit(selectedUnit);
-      MapPosition currentPosition = unitPositions.get(selectedUnit);
-      unitPositions.put(selectedUnit, moveOp.apply(currentPosition));
-      selectHex(unitPositions.get(selectedUnit).position());
-    }
+  /**
+   * Queues a command without waiting for it. Anything it throws goes to the writer thread's
+   * uncaught exception handler rather than into a future nobody looks at.
+   */
+  private void queue(Consumer<GameState> command) {
+    execute(() -> run(command));
   }
 
-  private List<Unit> getUnitsAt(Point point) {
-    return unitPositions.getValue().entrySet().stream()
-        .filter(e -> e.getValue().position().equals(point))
-        .map(Map.Entry::getKey)
-        .collect(Collectors.toList());
+  /** Hands a task to the writer thread, counting it in the queue gauge until it starts. */
+  private void execute(Runnable task) {
+    queueLength.add(1);
+    try {
+      writer.execute(
+          () -> {
+            queueLength.add(-1);
+            task.run();
+          });
+    } catch (RejectedExecutionException e) {
+      queueLength.add(-1);
+      throw e;
+    }
   }
 
-  private void removeUnit(Unit unit) {
-    unitPositions.get().remove(unit);
-    units.remove(unit);
+  /** Queues a command from the player's input, which only runs if it's a human player's turn. */
+  private void queueForHuman(Consumer<GameState> command) {
+    queue(
+        state -> {
+          if (state.getCurrentPlayer().getType().equals(Player.Type.HUMAN)) {
+            command.accept(state);
+          }
+        });
+  }
 
-    Set<Player> remainingPlayers = units.stream().map(Unit::getOwner).collect(Collectors.toSet());
-    if (remainingPlayers.size() == 1) {
-      winner.setValue(remainingPlayers.iterator().next().getName());
+  /** Runs a command on the writer thread and publishes the snapshot it leaves. */
+  private void run(Consumer<GameState> command) {
+    long startNanos = System.nanoTime();
+    try {
+      command.accept(gameState);
+    } finally {
+      long snapshotStartNanos = System.nanoTime();
+      commandTimer.record(snapshotStartNanos - startNanos);
+      snapshot = snapshotBuilder.build(snapshot.getVersion() + 1);
+      snapshotTimer.recordSince(snapshotStartNanos);
     }
   }
 
@@ -153,6 +257,7 @@ public final class Model implements MapModel {
   }
 
   private void selectHex(Point hexCoordinates) {
+    pathHexes.clear();
     selectedHexPosition.setValue(hexCoordinates);
     selectedUnit.setValue(null);
     targetUnit.setValue(null);
@@ -166,6 +271,10 @@ public final class Model implements MapModel {
     return currentPlayer;
   }
 
+  public SetProperty<Point> pathHexesProperty() {
+    return pathHexes;
+  }
+
   public ObjectProperty<Point> selectedHexPositionProperty() {
     return selectedHexPosition;
   }
@@ -194,14 +303,58 @@ public final class Model implements MapModel {
     return winner;
   }
 
-  public Model(MapUtils mapUtils, ImmutableList<Player> players) {
+  /** Creates a model whose properties change on the FX thread. */
+  public static Model create(MapUtils mapUtils, GameState gameState) {
+    return create(mapUtils, gameState, Platform::runLater);
+  }
+
+  /**
+   * Creates a model over the game state, which from now on must only be changed through the
+   * model's commands. The properties change on the UI executor, which must run tasks one at a
+   * time in the order they're given.
+   */
+  public static Model create(MapUtils mapUtils, GameState gameState, Executor uiExecutor) {
+    Model model = new Model(mapUtils, gameState, uiExecutor);
+    gameState
+        .getUnits()
+        .forEach(
+            unit -> {
+              @Nullable MapPosition position = gameState.getPosition(unit);
+              if (position != null) {
+                model.unitPositions.put(unit, position);
+                model.units.add(unit);
+              }
+            });
+    @Nullable Player gameWinner = gameState.getWinner();
+    if (gameWinner != null) {
+      model.winner.set(gameWinner.getName());
+    }
+    gameState.addListener(model.new GameStateListener());
+    return model;
+  }
+
+  private Model(MapUtils mapUtils, GameState gameState, Executor uiExecutor) {
     this.mapUtils = mapUtils;
-    this.players = players;
-    assert players.size() >= 2;
-    currentPlayer.set(players.get(0));
+    this.gameState = gameState;
+    this.uiExecutor = uiExecutor;
+    this.pathfinder = new Pathfinder(mapUtils);
+    this.snapshotBuilder = new GameSnapshot.Builder(gameState, mapUtils);
+    this.snapshot = snapshotBuilder.build(0);
+    this.writer =
+        Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("model-writer").setDaemon(true).build());
+    currentPlayer.set(gameState.getCurrentPlayer());
   }
 
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private static final Histogram commandTimer = Metrics.timer("model.command");
+  private static final Gauge queueLength = Metrics.gauge("model.queue");
+  private static final Histogram snapshotTimer = Metrics.timer("model.snapshot");
+
   private final ObjectProperty<Player> currentPlayer = new SimpleObjectProperty<>();
+  private final SetProperty<Point> pathHexes =
+      new SimpleSetProperty<>(FXCollections.observableSet());
   private final ObjectProperty<Point> selectedHexPosition = new SimpleObjectProperty<>();
   private final ObjectProperty<Unit> selectedUnit = new SimpleObjectProperty<>();
   private final SetProperty<Point> targetHexes =
@@ -212,12 +365,87 @@ public final class Model implements MapModel {
       new SimpleMapProperty<>(FXCollections.observableMap(Maps.newHashMap()));
   private final ObjectProperty<String> winner = new SimpleObjectProperty<>();
 
+  // Only touched on the writer thread.
+  private final GameState gameState;
   private final MapUtils mapUtils;
-  private final ImmutableList<Player> players;
+  // Only used on the UI executor.
+  private final Pathfinder pathfinder;
   private SelectionMode selectionMode = SelectionMode.SELECT;
+  private volatile GameSnapshot snapshot;
+  // Only used on the writer thread, once the model has been created.
+  private final GameSnapshot.Builder snapshotBuilder;
+  private final Executor uiExecutor;
+  private final ExecutorService writer;
 
   public enum SelectionMode {
     SELECT,
     TARGET
   }
+
+  /**
+   * Mirrors game state changes into the observable properties. The changes are heard on the
+   * writer thread and passed on to the UI executor.
+   */
+  private class GameStateListener implements GameState.Listener {
+    @Override
+    public void unitAdded(Unit unit, MapPosition position) {
+      uiExecutor.execute(
+          () -> {
+            unitPositions.put(unit, position);
+            units.add(unit);
+          });
+    }
+
+    @Override
+    public void unitMoved(Unit unit, MapPosition from, MapPosition to) {
+      uiExecutor.execute(
+          () -> {
+            targetHexes.clear();
+            selectUnit(unit);
+            unitPositions.put(unit, to);
+            selectHex(to.position());
+          });
+    }
+
+    @Override
+    public void unitAttacked(Unit attacker, Unit defender) {
+      boolean defenderSurvived = defender.getHealth() > 0;
+      uiExecutor.execute(
+          () -> {
+            targetHexes.clear();
+            selectUnit(attacker);
+            targetUnit.setValue(null);
+            if (defenderSurvived) {
+              targetUnit.setValue(defender);
+            }
+          });
+    }
+
+    @Override
+    public void unitRemoved(Unit unit, MapPosition lastPosition) {
+      uiExecutor.execute(
+          () -> {
+            unitPositions.remove(unit);
+            units.remove(unit);
+          });
+    }
+
+    @Override
+    public void turnEnded(Player nextPlayer) {
+      Metrics.endTurn(gameState.getTurnCount());
+      uiExecutor.execute(
+          () -> {
+            pathHexes.clear();
+            selectedUnit.setValue(null);
+            selectedHexPosition.setValue(null);
+            targetUnit.setValue(null);
+            currentPlayer.set(nextPlayer);
+          });
+    }
+
+    @Override
+    public void gameWon(Player gameWinner) {
+      uiExecutor.execute(() -> winner.setValue(gameWinner.getName()));
+    }
+  }
 }
@@ -0,0 +1,216 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.ui.map.HexMath;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the cheapest way for a unit to get somewhere. Moving forward and turning each cost one
+ * energy, so the search runs A* over (hex, facing) states rather than over hexes, with the hex
+ * distance as its heuristic.
+ *
+ * <p>The search state lives in primitive arrays, one entry per (hex, facing), which are allocated
+ * once and reused by every query; entries are marked with the query's generation rather than
+ * cleared. Not thread-safe: give each thread a pathfinder of its own.
+ */
+public final class Pathfinder {
+  /** Returns the cheapest path to the hex, in any facing, from the start to the end position. */
+  public @Nullable ImmutableList<MapPosition> findPath(MapPosition start, Point destination) {
+    if (!mapUtils.isInsideMap(destination)) {
+      return null;
+    }
+    int destinationX = destination.x();
+    int destinationY = destination.y();
+    return search(
+        start,
+        (x, y, direction) -> x == destinationX && y == destinationY,
+        (x, y) -> mapUtils.distance(x, y, destinationX, destinationY));
+  }
+
+  /**
+   * Returns the cheapest path to a position from which the target hex is in the firing arc, from
+   * the start to the end position.
+   */
+  public @Nullable ImmutableList<MapPosition> findPathToFire(MapPosition start, Point target) {
+    int targetX = target.x();
+    int targetY = target.y();
+    return search(
+        start,
+        (x, y, direction) ->
+            mapUtils.distance(x, y, targetX, targetY) <= Constants.WEAPON_RANGE
+                && mapUtils
+                    .getTargetHexes(new MapPosition(new Point(x, y), DIRECTIONS[direction]))
+                    .contains(target),
+        (x, y) -> Math.max(0, mapUtils.distance(x, y, targetX, targetY) - Constants.WEAPON_RANGE));
+  }
+
+  private @Nullable ImmutableList<MapPosition> search(
+      MapPosition start, Goal goal, Heuristic heuristic) {
+    Point startHex = start.position();
+    if (!mapUtils.isInsideMap(startHex)) {
+      return null;
+    }
+    nextGeneration();
+    heapSize = 0;
+    int startState = toState(startHex.x(), startHex.y(), start.direction().getDirection());
+    relax(startState, 0, NO_PARENT, heuristic.estimate(startHex.x(), startHex.y()));
+    while (heapSize > 0) {
+      int state = pop();
+      if (closed[state] == generation) {
+        continue;
+      }
+      closed[state] = generation;
+      int direction = state % DIRECTION_COUNT;
+      int hex = state / DIRECTION_COUNT;
+      int x = hex % mapWidth;
+      int y = hex / mapWidth;
+      if (goal.isGoal(x, y, direction)) {
+        return buildPath(state);
+      }
+      int nextCost = costs[state] + 1;
+      int forwardX = HexMath.neighborX(x, direction);
+      int forwardY = HexMath.neighborY(x, y, direction);
+      if (forwardX >= 0 && forwardX < mapWidth && forwardY >= 0 && forwardY < mapHeight) {
+        relax(
+            toState(forwardX, forwardY, direction),
+            nextCost,
+            state,
+            heuristic.estimate(forwardX, forwardY));
+      }
+      int estimate = heuristic.estimate(x, y);
+      relax(toState(x, y, (direction + 1) % DIRECTION_COUNT), nextCost, state, estimate);
+      relax(
+          toState(x, y, (direction + DIRECTION_COUNT - 1) % DIRECTION_COUNT),
+          nextCost,
+          state,
+          estimate);
+    }
+    return null;
+  }
+
+  private ImmutableList<MapPosition> buildPath(int endState) {
+    List<MapPosition> path = Lists.newArrayList();
+    for (int state = endState; state != NO_PARENT; state = parents[state]) {
+      int hex = state / DIRECTION_COUNT;
+      path.add(
+          new MapPosition(
+              new Point(hex % mapWidth, hex / mapWidth), DIRECTIONS[state % DIRECTION_COUNT]));
+    }
+    return ImmutableList.copyOf(Lists.reverse(path));
+  }
+
+  private void nextGeneration() {
+    generation++;
+    if (generation == 0) {
+      Arrays.fill(seen, 0);
+      Arrays.fill(closed, 0);
+      generation = 1;
+    }
+  }
+
+  /** Records the cost of reaching the state if it's the cheapest so far, and queues it. */
+  private void relax(int state, int cost, int parent, int estimate) {
+    if (seen[state] != generation || cost < costs[state]) {
+      seen[state] = generation;
+      costs[state] = cost;
+      parents[state] = parent;
+      push(state, cost + estimate);
+    }
+  }
+
+  private void push(int state, int priority) {
+    if (heapSize == heapStates.length) {
+      heapStates = Arrays.copyOf(heapStates, heapSize * 2);
+      heapPriorities = Arrays.copyOf(heapPriorities, heapSize * 2);
+    }
+    int index = heapSize++;
+    while (index > 0) {
+      int parentIndex = (index - 1) / 2;
+      if (heapPriorities[parentIndex] <= priority) {
+        break;
+      }
+      heapStates[index] = heapStates[parentIndex];
+      heapPriorities[index] = heapPriorities[parentIndex];
+      index = parentIndex;
+    }
+    heapStates[index] = state;
+    heapPriorities[index] = priority;
+  }
+
+  private int pop() {
+    int result = heapStates[0];
+    heapSize--;
+    int state = heapStates[heapSize];
+    int priority = heapPriorities[heapSize];
+    int index = 0;
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heapPriorities[child + 1] < heapPriorities[child]) {
+        child++;
+      }
+      if (heapPriorities[child] >= priority) {
+        break;
+      }
+      heapStates[index] = heapStates[child];
+      heapPriorities[index] = heapPriorities[child];
+      index = child;
+    }
+    heapStates[index] = state;
+    heapPriorities[index] = priority;
+    return result;
+  }
+
+  private int toState(int x, int y, int direction) {
+    return (y * mapWidth + x) * DIRECTION_COUNT + direction;
+  }
+
+  public Pathfinder(MapUtils mapUtils) {
+    this.mapUtils = mapUtils;
+    this.mapWidth = mapUtils.getMapWidth();
+    this.mapHeight = mapUtils.getMapHeight();
+    int states = mapWidth * mapHeight * DIRECTION_COUNT;
+    this.closed = new int[states];
+    this.costs = new int[states];
+    this.parents = new int[states];
+    this.seen = new int[states];
+    this.heapStates = new int[INITIAL_HEAP_SIZE];
+    this.heapPriorities = new int[INITIAL_HEAP_SIZE];
+  }
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private static final int DIRECTION_COUNT = DIRECTIONS.length;
+  private static final int INITIAL_HEAP_SIZE = 64;
+  private static final int NO_PARENT = -1;
+
+  // The generation in which each state was expanded.
+  private final int[] closed;
+  private final int[] costs;
+  private int generation;
+  private int[] heapPriorities;
+  private int heapSize;
+  private int[] heapStates;
+  private final int mapHeight;
+  private final MapUtils mapUtils;
+  private final int mapWidth;
+  private final int[] parents;
+  // The generation in which each state's cost and parent were last set.
+  private final int[] seen;
+
+  private interface Goal {
+    boolean isGoal(int x, int y, int direction);
+  }
+
+  private interface Heuristic {
+    int estimate(int x, int y);
+  }
+}
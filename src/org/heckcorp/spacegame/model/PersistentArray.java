@@ -0,0 +1,125 @@
+package org.heckcorp.spacegame.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable array whose changed copies share structure with it. The elements sit at the
+ * leaves of a 32-way trie, so a copy with one element changed copies only the few nodes on the
+ * path to it, a few dozen references each, and shares the rest. Indexes that were never set hold
+ * null, and unused parts of the trie aren't allocated, so sparse indexes cost little. Never
+ * changes once built, so thread-safe.
+ */
+final class PersistentArray<E> {
+  @SuppressWarnings("unchecked")
+  @Nullable E get(int index) {
+    return (E) get(root, shift, index);
+  }
+
+  /** Returns an editor that builds changed copies of this array. */
+  Editor<E> edit() {
+    return new Editor<>(root, shift);
+  }
+
+  private static @Nullable Object get(Object[] root, int shift, int index) {
+    assert index >= 0;
+    if (!fits(index, shift)) {
+      return null;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      @Nullable Object child = node[(index >>> level) & MASK];
+      if (child == null) {
+        return null;
+      }
+      node = (Object[]) child;
+    }
+    return node[index & MASK];
+  }
+
+  /** Returns whether a trie whose root has the given shift has room for the index. */
+  private static boolean fits(int index, int shift) {
+    return shift + BITS >= Integer.SIZE - 1 || index >>> (shift + BITS) == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <E> PersistentArray<E> empty() {
+    return (PersistentArray<E>) EMPTY;
+  }
+
+  private PersistentArray(Object[] root, int shift) {
+    this.root = root;
+    this.shift = shift;
+  }
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+  private static final PersistentArray<?> EMPTY = new PersistentArray<>(new Object[WIDTH + 1], 0);
+
+  // Each node holds WIDTH children or elements, then the editor that may change it in place.
+  private final Object[] root;
+  // How far an index is shifted right to find its child of the root; 0 if the root is a leaf.
+  private final int shift;
+
+  /**
+   * Changes a copy of an array. The first change under a node copies it, and later ones change the
+   * copy in place, so a batch of changes copies each node at most once. Each {@link #build}
+   * returns an array that later changes leave alone. Not thread-safe.
+   */
+  static final class Editor<E> {
+    @SuppressWarnings("unchecked")
+    @Nullable E get(int index) {
+      return (E) PersistentArray.get(root, shift, index);
+    }
+
+    void set(int index, @Nullable E element) {
+      assert index >= 0;
+      while (!fits(index, shift)) {
+        Object[] newRoot = newNode();
+        newRoot[0] = root;
+        root = newRoot;
+        shift += BITS;
+      }
+      root = own(root);
+      Object[] node = root;
+      for (int level = shift; level > 0; level -= BITS) {
+        int child = (index >>> level) & MASK;
+        @Nullable Object childNode = node[child];
+        Object[] ownedChild = childNode == null ? newNode() : own((Object[]) childNode);
+        node[child] = ownedChild;
+        node = ownedChild;
+      }
+      node[index & MASK] = element;
+    }
+
+    PersistentArray<E> build() {
+      // The built array shares this editor's nodes, so later changes must copy them again.
+      owner = new Object();
+      return new PersistentArray<>(root, shift);
+    }
+
+    private Object[] newNode() {
+      Object[] node = new Object[WIDTH + 1];
+      node[WIDTH] = owner;
+      return node;
+    }
+
+    private Object[] own(Object[] node) {
+      if (node[WIDTH] == owner) {
+        return node;
+      }
+      Object[] copy = node.clone();
+      copy[WIDTH] = owner;
+      return copy;
+    }
+
+    private Editor(Object[] root, int shift) {
+      this.root = root;
+      this.shift = shift;
+    }
+
+    private Object owner = new Object();
+    private Object[] root;
+    private int shift;
+  }
+}
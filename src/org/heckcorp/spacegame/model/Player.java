@@ -25,7 +25,7 @@ public class Player implements Serializable {
   private final String name;
   private final Type type;
 
-  public record Color(double r, double g, double b) {}
+  public record Color(double r, double g, double b) implements Serializable {}
 
   public enum Type {
     COMPUTER,
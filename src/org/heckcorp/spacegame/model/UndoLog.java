@@ -0,0 +1,145 @@
+package org.heckcorp.spacegame.model;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The changes made to a {@link GameState}, oldest first, each with whatever it replaced and the
+ * game's hash before it, so they can be undone. The entries live in parallel arrays that are kept
+ * when the log is truncated, so once the log has grown to the size a search needs, recording
+ * allocates nothing. Not thread-safe.
+ */
+final class UndoLog {
+  void recordAddition(Unit unit, long hash) {
+    add(Kind.ADDITION, unit, null, null, 0, 0, hash);
+  }
+
+  void recordArmor(Unit unit, int side, int armor, long hash) {
+    add(Kind.ARMOR, unit, null, null, side, armor, hash);
+  }
+
+  void recordEnergy(Unit unit, int energy, long hash) {
+    add(Kind.ENERGY, unit, null, null, 0, energy, hash);
+  }
+
+  void recordHealth(Unit unit, int health, long hash) {
+    add(Kind.HEALTH, unit, null, null, 0, health, hash);
+  }
+
+  void recordPosition(Unit unit, MapPosition position, long hash) {
+    add(Kind.POSITION, unit, position, null, 0, 0, hash);
+  }
+
+  /** Records the removal of a unit that was in the given slot of the game's list of units. */
+  void recordRemoval(Unit unit, MapPosition position, int index, long hash) {
+    add(Kind.REMOVAL, unit, position, null, index, 0, hash);
+  }
+
+  void recordTurn(Player currentPlayer, int turnCount, long hash) {
+    add(Kind.TURN, null, null, currentPlayer, 0, turnCount, hash);
+  }
+
+  void recordWinner(@Nullable Player winner, long hash) {
+    add(Kind.WINNER, null, null, winner, 0, 0, hash);
+  }
+
+  /** Returns the game's hash from before the change. */
+  long getHash(int entry) {
+    return hashes[entry];
+  }
+
+  /** Returns the side of an armor change, or the slot of a removed unit. */
+  int getIndex(int entry) {
+    return indexes[entry];
+  }
+
+  Kind getKind(int entry) {
+    @Nullable Kind kind = kinds[entry];
+    assert kind != null : "@AssumeAssertion(nullness)";
+    return kind;
+  }
+
+  @Nullable Player getPlayer(int entry) {
+    return players[entry];
+  }
+
+  MapPosition getPosition(int entry) {
+    @Nullable MapPosition position = positions[entry];
+    assert position != null : "@AssumeAssertion(nullness)";
+    return position;
+  }
+
+  Unit getUnit(int entry) {
+    @Nullable Unit unit = units[entry];
+    assert unit != null : "@AssumeAssertion(nullness)";
+    return unit;
+  }
+
+  /** Returns the energy, health, armor or turn count that was replaced. */
+  int getValue(int entry) {
+    return values[entry];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Drops the entries from the given one on, letting go of the objects they refer to. */
+  void truncate(int newSize) {
+    Arrays.fill(units, newSize, size, null);
+    Arrays.fill(positions, newSize, size, null);
+    Arrays.fill(players, newSize, size, null);
+    size = newSize;
+  }
+
+  private void add(
+      Kind kind,
+      @Nullable Unit unit,
+      @Nullable MapPosition position,
+      @Nullable Player player,
+      int index,
+      int value,
+      long hash) {
+    if (size == kinds.length) {
+      int capacity = Math.max(INITIAL_CAPACITY, size * 2);
+      kinds = Arrays.copyOf(kinds, capacity);
+      units = Arrays.copyOf(units, capacity);
+      positions = Arrays.copyOf(positions, capacity);
+      players = Arrays.copyOf(players, capacity);
+      indexes = Arrays.copyOf(indexes, capacity);
+      values = Arrays.copyOf(values, capacity);
+      hashes = Arrays.copyOf(hashes, capacity);
+    }
+    kinds[size] = kind;
+    units[size] = unit;
+    positions[size] = position;
+    players[size] = player;
+    indexes[size] = index;
+    values[size] = value;
+    hashes[size] = hash;
+    size++;
+  }
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private long[] hashes = new long[0];
+  private int[] indexes = new int[0];
+  private @Nullable Kind[] kinds = new Kind[0];
+  private @Nullable Player[] players = new Player[0];
+  private @Nullable MapPosition[] positions = new MapPosition[0];
+  private int size;
+  private @Nullable Unit[] units = new Unit[0];
+  private int[] values = new int[0];
+
+  enum Kind {
+    ADDITION,
+    ARMOR,
+    ENERGY,
+    HEALTH,
+    POSITION,
+    REMOVAL,
+    TURN,
+    WINNER
+  }
+}
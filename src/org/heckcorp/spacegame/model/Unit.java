@@ -4,38 +4,42 @@ import org.heckcorp.spacegame.ui.map.ViewResources;
 
 import java.io.Serializable;
 
-/** Stores all the game-level information about a unit. */
+/**
+ * Stores all the game-level information about a unit. The stats live in a {@link UnitStore}; a
+ * unit created with a constructor gets a store of its own, while units allocated from a shared
+ * store are just handles into its arrays.
+ */
 public class Unit implements Serializable {
-  public int[] getArmor() {
-    return armor;
+  public int getArmor(int side) {
+    return store.getArmor(slot, side);
   }
 
   public int getAttackStrength() {
-    return attackStrength;
+    return store.getAttackStrength(slot);
   }
 
   public int getEnergy() {
-    return energy;
+    return store.getEnergy(slot);
   }
 
   public int getHealth() {
-    return health;
+    return store.getHealth(slot);
   }
 
   public ViewResources.Identifier getImageId() {
     return imageId;
   }
 
-  public int[] getMaxArmor() {
-    return maxArmor;
+  public int getMaxArmor(int side) {
+    return store.getMaxArmor(slot, side);
   }
 
   public int getMaxEnergy() {
-    return maxEnergy;
+    return store.getMaxEnergy(slot);
   }
 
   public int getMaxHealth() {
-    return maxHealth;
+    return store.getMaxHealth(slot);
   }
 
   public Player getOwner() {
@@ -43,37 +47,92 @@ public class Unit implements Serializable {
   }
 
   public void resetForTurn() {
-    energy = maxEnergy;
+    setEnergy(getMaxEnergy());
+  }
+
+  public void setArmor(int side, int armor) {
+    store.setArmor(slot, side, armor);
   }
 
   public void setEnergy(int energy) {
-    this.energy = energy;
+    store.setEnergy(slot, energy);
   }
 
   public void setHealth(int health) {
-    this.health = health;
+    store.setHealth(slot, health);
+  }
+
+  /** Allocates a unit in the given store with this unit's id, owner, image and current stats. */
+  Unit copyInto(UnitStore unitStore) {
+    Unit copy =
+        unitStore.allocate(
+            getId(), owner, imageId, getAttackStrength(), getMaxHealth(), getMaxEnergy(), 0);
+    copy.setHealth(getHealth());
+    copy.setEnergy(getEnergy());
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      copy.setArmor(side, getArmor(side));
+      copy.setMaxArmor(side, getMaxArmor(side));
+    }
+    return copy;
+  }
+
+  /** Allocates a copy of this unit in the given store, as the other does, with the given stats. */
+  Unit copyInto(UnitStore unitStore, UnitStats stats) {
+    Unit copy = copyInto(unitStore);
+    copy.setHealth(stats.health());
+    copy.setEnergy(stats.energy());
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      copy.setArmor(side, stats.getArmor(side));
+    }
+    return copy;
+  }
+
+  /** Returns an id that no other unit has, apart from copies of this one. */
+  int getId() {
+    return store.getId(slot);
+  }
+
+  void setMaxArmor(int side, int maxArmor) {
+    store.setMaxArmor(slot, side, maxArmor);
   }
 
   public Unit(Player owner, ViewResources.Identifier imageId) {
+    this(
+        owner,
+        imageId,
+        DEFAULT_ATTACK_STRENGTH,
+        DEFAULT_MAX_HEALTH,
+        DEFAULT_MAX_ENERGY,
+        DEFAULT_MAX_ARMOR);
+  }
+
+  public Unit(
+      Player owner,
+      ViewResources.Identifier imageId,
+      int attackStrength,
+      int maxHealth,
+      int maxEnergy,
+      int maxArmor) {
     this.owner = owner;
     this.imageId = imageId;
-    attackStrength = 3;
-    health = 10;
-    maxHealth = 10;
-    energy = 5;
-    maxEnergy = 5;
-    armor = new int[] {10, 10, 10, 10, 10, 10};
-    maxArmor = new int[] {10, 10, 10, 10, 10, 10};
-  }
-
-  private final int[] armor;
-  private final int attackStrength;
-  private int energy;
-  private int health;
-  private final int[] maxArmor;
-  private final int maxEnergy;
-  private final int maxHealth;
-  private final ViewResources.Identifier imageId;
+    this.store = new UnitStore(1);
+    this.slot = store.allocateSlot(attackStrength, maxHealth, maxEnergy, maxArmor);
+  }
+
+  Unit(Player owner, ViewResources.Identifier imageId, UnitStore store, int slot) {
+    this.owner = owner;
+    this.imageId = imageId;
+    this.store = store;
+    this.slot = slot;
+  }
 
+  public static final int DEFAULT_ATTACK_STRENGTH = 3;
+  public static final int DEFAULT_MAX_ARMOR = 10;
+  public static final int DEFAULT_MAX_ENERGY = 5;
+  public static final int DEFAULT_MAX_HEALTH = 10;
+
+  private final ViewResources.Identifier imageId;
   private final Player owner;
+  private final int slot;
+  private final UnitStore store;
 }
@@ -0,0 +1,18 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.primitives.ImmutableIntArray;
+
+/** The stats of a unit that change during a game, as they were at some moment. */
+public record UnitStats(int health, int energy, ImmutableIntArray armor) {
+  public int getArmor(int side) {
+    return armor.get(side);
+  }
+
+  public static UnitStats of(Unit unit) {
+    ImmutableIntArray.Builder armor = ImmutableIntArray.builder(UnitStore.SIDES);
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      armor.add(unit.getArmor(side));
+    }
+    return new UnitStats(unit.getHealth(), unit.getEnergy(), armor.build());
+  }
+}
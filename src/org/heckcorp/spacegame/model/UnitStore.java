@@ -0,0 +1,166 @@
+package org.heckcorp.spacegame.model;
+
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Struct-of-arrays storage for unit stats. Each stat is a column of ints, one entry per unit, and
+ * all the columns sit one after another in a single array; {@link Unit} is a small handle holding
+ * the unit's slot. Storing many units in one store saves the per-object and per-array overhead of
+ * keeping every unit's stats in objects of its own, which matters for battles with hundreds of
+ * thousands of units. Not thread-safe.
+ */
+public final class UnitStore implements Serializable {
+  public Unit allocate(Player owner, ViewResources.Identifier imageId) {
+    return allocate(
+        owner,
+        imageId,
+        Unit.DEFAULT_ATTACK_STRENGTH,
+        Unit.DEFAULT_MAX_HEALTH,
+        Unit.DEFAULT_MAX_ENERGY,
+        Unit.DEFAULT_MAX_ARMOR);
+  }
+
+  public Unit allocate(
+      Player owner,
+      ViewResources.Identifier imageId,
+      int attackStrength,
+      int maxHealth,
+      int maxEnergy,
+      int maxArmor) {
+    int slot = allocateSlot(attackStrength, maxHealth, maxEnergy, maxArmor);
+    return new Unit(owner, imageId, this, slot);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Allocates a unit with the given id, which should be that of the unit it's a copy of. */
+  Unit allocate(
+      int id,
+      Player owner,
+      ViewResources.Identifier imageId,
+      int attackStrength,
+      int maxHealth,
+      int maxEnergy,
+      int maxArmor) {
+    int slot = allocateSlot(id, attackStrength, maxHealth, maxEnergy, maxArmor);
+    return new Unit(owner, imageId, this, slot);
+  }
+
+  int allocateSlot(int attackStrength, int maxHealth, int maxEnergy, int maxArmor) {
+    return allocateSlot(nextId.getAndIncrement(), attackStrength, maxHealth, maxEnergy, maxArmor);
+  }
+
+  int allocateSlot(int id, int attackStrength, int maxHealth, int maxEnergy, int maxArmor) {
+    if (size == capacity) {
+      grow();
+    }
+    int slot = size++;
+    set(ID, slot, id);
+    set(ATTACK_STRENGTH, slot, attackStrength);
+    set(HEALTH, slot, maxHealth);
+    set(MAX_HEALTH, slot, maxHealth);
+    set(ENERGY, slot, maxEnergy);
+    set(MAX_ENERGY, slot, maxEnergy);
+    for (int side = 0; side < SIDES; side++) {
+      set(ARMOR + side, slot, maxArmor);
+      set(MAX_ARMOR + side, slot, maxArmor);
+    }
+    return slot;
+  }
+
+  int getArmor(int slot, int side) {
+    return get(ARMOR + side, slot);
+  }
+
+  int getAttackStrength(int slot) {
+    return get(ATTACK_STRENGTH, slot);
+  }
+
+  int getEnergy(int slot) {
+    return get(ENERGY, slot);
+  }
+
+  int getHealth(int slot) {
+    return get(HEALTH, slot);
+  }
+
+  int getId(int slot) {
+    return get(ID, slot);
+  }
+
+  int getMaxArmor(int slot, int side) {
+    return get(MAX_ARMOR + side, slot);
+  }
+
+  int getMaxEnergy(int slot) {
+    return get(MAX_ENERGY, slot);
+  }
+
+  int getMaxHealth(int slot) {
+    return get(MAX_HEALTH, slot);
+  }
+
+  void setArmor(int slot, int side, int value) {
+    set(ARMOR + side, slot, value);
+  }
+
+  void setEnergy(int slot, int value) {
+    set(ENERGY, slot, value);
+  }
+
+  void setHealth(int slot, int value) {
+    set(HEALTH, slot, value);
+  }
+
+  void setMaxArmor(int slot, int side, int value) {
+    set(MAX_ARMOR + side, slot, value);
+  }
+
+  private int get(int column, int slot) {
+    return data[column * capacity + slot];
+  }
+
+  private void set(int column, int slot, int value) {
+    data[column * capacity + slot] = value;
+  }
+
+  private void grow() {
+    int newCapacity = Math.max(1, capacity * 2);
+    int[] newData = new int[COLUMNS * newCapacity];
+    for (int column = 0; column < COLUMNS; column++) {
+      System.arraycopy(data, column * capacity, newData, column * newCapacity, size);
+    }
+    data = newData;
+    capacity = newCapacity;
+  }
+
+  public UnitStore(int initialCapacity) {
+    capacity = initialCapacity;
+    data = new int[COLUMNS * initialCapacity];
+  }
+
+  public static final int SIDES = 6;
+
+  private static final int ATTACK_STRENGTH = 0;
+  private static final int HEALTH = 1;
+  private static final int MAX_HEALTH = 2;
+  private static final int ENERGY = 3;
+  private static final int MAX_ENERGY = 4;
+  private static final int ARMOR = 5;
+  private static final int MAX_ARMOR = ARMOR + SIDES;
+  private static final int ID = MAX_ARMOR + SIDES;
+  private static final int COLUMNS = ID + 1;
+
+  // Ids are unique across stores, and copies of a unit keep its id.
+  private static final AtomicInteger nextId = new AtomicInteger();
+
+  private int capacity;
+  private int[] data;
+  private int size;
+}
@@ -0,0 +1,66 @@
+package org.heckcorp.spacegame.model;
+
+/**
+ * Zobrist keys for {@link GameState#getHash}. A game's hash is the exclusive or of a key for each
+ * unit's hex, facing, energy, health and armor on each side, and one for the player whose turn it
+ * is, so a change updates the hash by taking out the key for the old value and putting in the one
+ * for the new. Units and their stats have no fixed bounds, so rather than drawing tables of random
+ * keys up front, each key is a mix of the unit's id, the feature and the value, which spreads
+ * them as well as random keys would. Stateless, so thread-safe.
+ */
+final class ZobristKeys {
+  static long forArmor(Unit unit, int side, int armor) {
+    return forFeature(unit.getId(), ARMOR + side, armor);
+  }
+
+  static long forEnergy(Unit unit, int energy) {
+    return forFeature(unit.getId(), ENERGY, energy);
+  }
+
+  static long forHealth(Unit unit, int health) {
+    return forFeature(unit.getId(), HEALTH, health);
+  }
+
+  static long forPlayer(int playerIndex) {
+    return forFeature(-1, PLAYER, playerIndex);
+  }
+
+  static long forPosition(Unit unit, MapPosition position) {
+    int id = unit.getId();
+    return forFeature(id, X, position.position().x())
+        ^ forFeature(id, Y, position.position().y())
+        ^ forFeature(id, DIRECTION, position.direction().ordinal());
+  }
+
+  /** Returns the exclusive or of the keys for all of the unit's features. */
+  static long forUnit(Unit unit, MapPosition position) {
+    long key =
+        forPosition(unit, position)
+            ^ forEnergy(unit, unit.getEnergy())
+            ^ forHealth(unit, unit.getHealth());
+    for (int side = 0; side < UnitStore.SIDES; side++) {
+      key ^= forArmor(unit, side, unit.getArmor(side));
+    }
+    return key;
+  }
+
+  /** Mixes the id, feature and value with the SplitMix64 finalizer. */
+  private static long forFeature(int id, int feature, int value) {
+    long z = ((long) id << 32 | feature) * GOLDEN_GAMMA + value;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private ZobristKeys() {}
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private static final int X = 0;
+  private static final int Y = 1;
+  private static final int DIRECTION = 2;
+  private static final int ENERGY = 3;
+  private static final int HEALTH = 4;
+  private static final int PLAYER = 5;
+  private static final int ARMOR = 6;
+}
@@ -7,10 +7,13 @@ import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.heckcorp.spacegame.ResourceLoader;
+import org.heckcorp.spacegame.model.GameSnapshot;
 import org.heckcorp.spacegame.model.Model;
 import org.heckcorp.spacegame.model.Player;
 import org.heckcorp.spacegame.model.Unit;
+import org.heckcorp.spacegame.model.UnitStats;
 import org.heckcorp.spacegame.ui.map.MapUtils;
 import org.heckcorp.spacegame.ui.map.ViewResources;
 
@@ -19,9 +22,15 @@ import java.io.FileNotFoundException;
 public class DescriptionPane extends GridPane {
   final Text currentPlayerText;
 
+  /** Shows the unit as of the model's latest snapshot, or nothing if it's no longer in the game. */
   public void setSelectedUnitData(Unit unit) {
-    selectedUnitDescriptionPane.setUnitData(unit);
-    boolean zeroEnergy = unit.getEnergy() == 0;
+    @Nullable UnitStats stats = model.getSnapshot().getStats(unit);
+    if (stats == null) {
+      clear();
+      return;
+    }
+    selectedUnitDescriptionPane.setUnitData(unit, stats);
+    boolean zeroEnergy = stats.energy() == 0;
     targetButton.setDisable(zeroEnergy);
     attackButton.setDisable(true);
     turnLeftButton.setDisable(zeroEnergy);
@@ -29,10 +38,17 @@ public class DescriptionPane extends GridPane {
     turnRightButton.setDisable(zeroEnergy);
   }
 
+  /** Shows the target as of the model's latest snapshot, if both units are still in the game. */
   public void setTargetUnitData(Unit selectedUnit, Unit unit) {
-    targetUnitDescriptionPane.setUnitData(unit);
+    GameSnapshot snapshot = model.getSnapshot();
+    @Nullable UnitStats selectedStats = snapshot.getStats(selectedUnit);
+    @Nullable UnitStats stats = snapshot.getStats(unit);
+    if (selectedStats == null || stats == null) {
+      return;
+    }
+    targetUnitDescriptionPane.setUnitData(unit, stats);
     targetButton.setDisable(true);
-    attackButton.setDisable(selectedUnit.getEnergy() == 0);
+    attackButton.setDisable(selectedStats.energy() == 0);
   }
 
   public void clear() {
@@ -44,10 +60,12 @@ public class DescriptionPane extends GridPane {
     forwardButton.setDisable(true);
     turnRightButton.setDisable(true);
   }
+  private final Model model;
   private final UnitDescriptionPane selectedUnitDescriptionPane;
   private final UnitDescriptionPane targetUnitDescriptionPane;
 
   public DescriptionPane(
+      Model model,
       Text currentPlayerText,
       UnitDescriptionPane selectedUnitDescriptionPane,
       UnitDescriptionPane targetUnitDescriptionPane,
@@ -56,6 +74,7 @@ public class DescriptionPane extends GridPane {
       Button turnLeftButton,
       Button forwardButton,
       Button turnRightButton) {
+    this.model = model;
     this.currentPlayerText = currentPlayerText;
     this.selectedUnitDescriptionPane = selectedUnitDescriptionPane;
     this.targetUnitDescriptionPane = targetUnitDescriptionPane;
@@ -88,6 +107,7 @@ public class DescriptionPane extends GridPane {
     UnitDescriptionPane targetUnitDescriptionPane =
         new UnitDescriptionPane(mapUtils, viewResources);
     return new DescriptionPane(
+            model,
             new Text(getCurrentPlayerText(model.currentPlayerProperty().get())),
             selectedUnitDescriptionPane,
             targetUnitDescriptionPane,
@@ -96,7 +116,7 @@ public class DescriptionPane extends GridPane {
             turnLeftButton,
             forwardButton,
             turnRightButton)
-        .initialize(model);
+        .initialize();
   }
   final Button forwardButton;
 
@@ -105,7 +125,7 @@ public class DescriptionPane extends GridPane {
   }
   private final Button targetButton;
 
-  private DescriptionPane initialize(Model model) {
+  private DescriptionPane initialize() {
     targetButton.setOnAction(event -> model.setSelectionMode(Model.SelectionMode.TARGET));
     attackButton.setOnAction(event -> model.processAttack());
     turnLeftButton.setOnAction(event -> model.rotateLeft());
@@ -1,9 +1,10 @@
 package org.heckcorp.spacegame.ui;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Maps;
-import javafx.scene.canvas.Canvas;
+import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
@@ -18,32 +19,26 @@ import org.heckcorp.spacegame.model.Unit;
 import org.heckcorp.spacegame.ui.map.*;
 
 import java.io.FileNotFoundException;
-import java.util.Map;
 
 import static org.heckcorp.spacegame.Constants.*;
 
 @DefaultQualifier(NonNull.class)
 public class GameViewPane extends VBox {
 
-  public void addUnit(Unit unit, MapPosition position, Player.Color color) {
-    Counter counter =
-        Counter.build(viewResources, unit.getImageId(), color.r(), color.g(), color.b());
-    unitCounters.put(unit, counter);
-    mapPane.addCounter(counter, position);
+  public void addUnit(Unit unit, MapPosition position) {
+    mapView.addUnit(unit, position);
   }
 
   public void moveUnit(Unit unit, MapPosition startPos, MapPosition endHexPos) {
-    @Nullable Counter counter = unitCounters.get(unit);
-    assert counter != null : "@AssumeAssertion(nullness)";
-    mapPane.moveCounter(counter, startPos, endHexPos);
+    mapView.moveUnit(unit, startPos, endHexPos);
   }
 
   public void removeUnit(Unit unit) {
-    mapPane.removeCounter(unitCounters.remove(unit));
+    mapView.removeUnit(unit);
   }
 
   public void selectHex(Point hexCoordinates) {
-    mapPane.selectHexes(hexCoordinates);
+    mapView.selectHex(hexCoordinates);
   }
 
   public void selectUnit(@Nullable Unit unit) {
@@ -56,17 +51,22 @@ public class GameViewPane extends VBox {
 
   public void setCurrentPlayer(Player player) {
     descriptionPane.setCurrentPlayer(player);
+    mapView.setComputerTurn(player.getType() == Player.Type.COMPUTER);
+  }
+
+  public void setPathHexes(ImmutableSet<? extends Point> hexes) {
+    mapView.setPathHexes(hexes);
   }
 
   public void setTargetHexes(ImmutableSet<? extends Point> hexes) {
-    mapPane.setTargetHexes(hexes);
+    mapView.setTargetHexes(hexes);
   }
 
   public void setWinner(String winner) {
     Alert winAlert = new Alert(Alert.AlertType.INFORMATION);
     winAlert.setTitle("Game Over");
     winAlert.setContentText("Game over. " + winner + " wins.");
-    sequentialExecutor.submit(winAlert::show);
+    sequentialExecutor.runLaterSequentially(winAlert::show);
   }
 
   public void targetUnit(Unit selectedUnit, @Nullable Unit unit) {
@@ -76,15 +76,40 @@ public class GameViewPane extends VBox {
   }
 
   public void unselectHex() {
-    mapPane.unselectHex();
-    mapPane.setTargetHexes(ImmutableSet.of());
+    mapView.unselectHex();
+    mapView.setTargetHexes(ImmutableSet.of());
     descriptionPane.clear();
   }
 
-  private static @NonNull MenuBar createMenuBar(Model model) {
+  private static @NonNull MenuBar createMenuBar(
+      Model model, MapView mapView, ScrollPane textScrollPane, ProfilerPane profilerPane) {
     MenuItem endTurn = new MenuItem("End Turn");
     endTurn.setOnAction(event -> model.endTurn());
-    return new MenuBar(new Menu("File"), new Menu("Game", null, endTurn), new Menu("Unit"));
+    Menu computerMoves = new Menu("Computer Moves");
+    ToggleGroup playbackModes = new ToggleGroup();
+    for (PlaybackMode playbackMode : PlaybackMode.values()) {
+      RadioMenuItem item = new RadioMenuItem(playbackMode.getLabel());
+      item.setToggleGroup(playbackModes);
+      item.setSelected(playbackMode == COMPUTER_PLAYBACK_MODE);
+      item.setOnAction(event -> mapView.setComputerPlaybackMode(playbackMode));
+      computerMoves.getItems().add(item);
+    }
+    CheckMenuItem profiler = new CheckMenuItem("Profiler");
+    profiler.setAccelerator(new KeyCodeCombination(KeyCode.F3));
+    Node textPaneContent = textScrollPane.getContent();
+    profiler
+        .selectedProperty()
+        .addListener(
+            (observable, oldValue, selected) -> {
+              textScrollPane.setContent(selected ? profilerPane : textPaneContent);
+              profilerPane.setRunning(selected);
+            });
+    profiler.setSelected(PROFILER);
+    return new MenuBar(
+        new Menu("File"),
+        new Menu("Game", null, endTurn, computerMoves),
+        new Menu("Unit"),
+        new Menu("View", null, profiler));
   }
 
   public static GameViewPane create(
@@ -93,46 +118,56 @@ public class GameViewPane extends VBox {
       ViewResources viewResources,
       SequentialExecutor sequentialExecutor)
       throws FileNotFoundException {
-    MapPane mapPane = MapPane.create(mapUtils, model, sequentialExecutor);
-    mapPane.setBorder(
+    MapView mapView =
+        CANVAS_MAP_RENDERER
+            ? CanvasMapPane.create(mapUtils, model, viewResources, sequentialExecutor)
+            : MapPane.create(mapUtils, model, viewResources, sequentialExecutor);
+    Region mapRegion = mapView.asRegion();
+    mapRegion.setBorder(
         new Border(
             new BorderStroke(
                 Color.BLACK, BorderStrokeStyle.SOLID, CornerRadii.EMPTY, new BorderWidths(10))));
-    ScrollPane mapScrollPane = new ScrollPane(mapPane);
+    ScrollPane mapScrollPane = new ScrollPane(mapRegion);
+    MapView.trackViewport(mapScrollPane, mapView);
     mapScrollPane.setPrefSize(UI_COMPONENT_LARGE_WIDTH, UI_COMPONENT_LARGE_HEIGHT);
     DescriptionPane descriptionPane = DescriptionPane.create(model, mapUtils, viewResources);
     descriptionPane.setPrefSize(UI_COMPONENT_SMALL_WIDTH, UI_COMPONENT_LARGE_HEIGHT);
     ScrollPane textScrollPane = new ScrollPane(new Text("Text pane!"));
     textScrollPane.setPrefSize(UI_COMPONENT_LARGE_WIDTH, UI_COMPONENT_SMALL_HEIGHT);
-    Canvas miniMapPane = new Canvas(UI_COMPONENT_SMALL_WIDTH, UI_COMPONENT_SMALL_HEIGHT);
+    MiniMapPane miniMapPane =
+        MiniMapPane.create(
+            mapUtils,
+            model.getSnapshot().getPlayers(),
+            mapScrollPane,
+            mapRegion,
+            UI_COMPONENT_SMALL_WIDTH,
+            UI_COMPONENT_SMALL_HEIGHT);
+    mapView.setUnitListener(miniMapPane);
     GridPane gridPane = new GridPane();
     GridPane.setConstraints(mapScrollPane, 0, 1);
     GridPane.setConstraints(descriptionPane, 1, 1);
     GridPane.setConstraints(textScrollPane, 0, 2);
     GridPane.setConstraints(miniMapPane, 1, 2);
-    gridPane.getChildren().addAll(mapScrollPane, descriptionPane, textScrollPane);
-    MenuBar menuBar = createMenuBar(model);
+    gridPane.getChildren().addAll(mapScrollPane, descriptionPane, textScrollPane, miniMapPane);
+    MenuBar menuBar =
+        createMenuBar(
+            model, mapView, textScrollPane, ProfilerPane.create(mapView, sequentialExecutor));
     GameViewPane gameViewPane =
-        new GameViewPane(mapPane, descriptionPane, sequentialExecutor, viewResources);
+        new GameViewPane(mapView, descriptionPane, sequentialExecutor);
     gameViewPane.getChildren().addAll(menuBar, gridPane);
     return gameViewPane;
   }
 
   private GameViewPane(
-      MapPane mapPane,
+      MapView mapView,
       DescriptionPane descriptionPane,
-      SequentialExecutor sequentialExecutor,
-      ViewResources viewResources) {
-    this.mapPane = mapPane;
+      SequentialExecutor sequentialExecutor) {
+    this.mapView = mapView;
     this.descriptionPane = descriptionPane;
     this.sequentialExecutor = sequentialExecutor;
-    this.viewResources = viewResources;
   }
 
-
-  private final MapPane mapPane;
   private final DescriptionPane descriptionPane;
+  private final MapView mapView;
   private final SequentialExecutor sequentialExecutor;
-  private final Map<Unit, Counter> unitCounters = Maps.newHashMap();
-  private final ViewResources viewResources;
 }
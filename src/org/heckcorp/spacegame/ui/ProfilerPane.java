@@ -0,0 +1,153 @@
+package org.heckcorp.spacegame.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import org.heckcorp.spacegame.SequentialExecutor;
+import org.heckcorp.spacegame.metrics.Histogram;
+import org.heckcorp.spacegame.metrics.Metrics;
+import org.heckcorp.spacegame.ui.map.MapView;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows how the FX thread is keeping up: pulses a second, the longest time between pulses, the
+ * time each pulse spends on CSS and layout, the nodes drawing the map's counters, the animations
+ * running and the sequential executor's backlog. An animation timer notes the time of each pulse,
+ * and the scene's pre- and post-layout pulse listeners time its CSS and layout passes, which
+ * costs a few subtractions and comparisons; the text is only rewritten every {@link
+ * #SAMPLE_PERIOD_MILLIS}. Frame times and layout times also go to the "fx.frame" and "fx.layout"
+ * timers, for percentiles in the metrics report.
+ *
+ * <p>A running animation timer keeps JavaFX pulsing at its full rate, so while the profiler runs,
+ * pulses a second shows how close the FX thread comes to that rate, and the longest frame shows
+ * where it falls behind. It only runs while shown.
+ */
+public final class ProfilerPane extends VBox {
+  /** Starts or stops sampling. Called on the FX thread. */
+  public void setRunning(boolean running) {
+    if (running) {
+      // The pulses and frame times since the profiler was hidden don't belong to the next sample.
+      sampling = false;
+      pulses = 0;
+      maxFrameNanos = 0;
+      layoutPasses = 0;
+      layoutNanos = 0;
+      maxLayoutNanos = 0;
+      pulseTimer.start();
+    } else {
+      pulseTimer.stop();
+    }
+  }
+
+  private void handlePulse(long now) {
+    if (!sampling) {
+      sampling = true;
+      sampleStartNanos = now;
+      lastPulseNanos = now;
+      return;
+    }
+    long frameNanos = now - lastPulseNanos;
+    frameTimer.record(frameNanos);
+    maxFrameNanos = Math.max(maxFrameNanos, frameNanos);
+    lastPulseNanos = now;
+    pulses++;
+    if (now - sampleStartNanos >= TimeUnit.MILLISECONDS.toNanos(SAMPLE_PERIOD_MILLIS)) {
+      showSample(now);
+    }
+  }
+
+  private void handlePostLayoutPulse() {
+    long passNanos = System.nanoTime() - layoutStartNanos;
+    layoutTimer.record(passNanos);
+    layoutNanos += passNanos;
+    maxLayoutNanos = Math.max(maxLayoutNanos, passNanos);
+    layoutPasses++;
+  }
+
+  private void handlePreLayoutPulse() {
+    layoutStartNanos = System.nanoTime();
+  }
+
+  /** Shows the pulses since the sample started, and starts the next sample. */
+  private void showSample(long now) {
+    double sampleNanos = now - sampleStartNanos;
+    text.setText(
+        String.format(
+            "Pulses: %.0f/s%n"
+                + "Frame time: %.1f ms max%n"
+                + "CSS and layout: %.1f ms mean, %.1f ms max%n"
+                + "Counter nodes: %d%n"
+                + "Animations: %d%n"
+                + "Executor backlog: %d",
+            pulses * NANOS_PER_SECOND / sampleNanos,
+            maxFrameNanos / NANOS_PER_MILLI,
+            layoutPasses == 0 ? 0.0 : (double) layoutNanos / layoutPasses / NANOS_PER_MILLI,
+            maxLayoutNanos / NANOS_PER_MILLI,
+            mapView.getNodeCount(),
+            mapView.getAnimationCount() + sequentialExecutor.getPlayingCount(),
+            sequentialExecutor.getBacklog()));
+    sampleStartNanos = now;
+    pulses = 0;
+    maxFrameNanos = 0;
+    layoutPasses = 0;
+    layoutNanos = 0;
+    maxLayoutNanos = 0;
+  }
+
+  public static ProfilerPane create(MapView mapView, SequentialExecutor sequentialExecutor) {
+    ProfilerPane profilerPane = new ProfilerPane(mapView, sequentialExecutor);
+    profilerPane.getChildren().add(profilerPane.text);
+    // The pane is only in a scene while it's shown, so the layout passes are only timed then.
+    profilerPane
+        .sceneProperty()
+        .addListener(
+            (observable, oldScene, newScene) -> {
+              if (oldScene != null) {
+                oldScene.removePreLayoutPulseListener(profilerPane.preLayoutPulseListener);
+                oldScene.removePostLayoutPulseListener(profilerPane.postLayoutPulseListener);
+              }
+              if (newScene != null) {
+                newScene.addPreLayoutPulseListener(profilerPane.preLayoutPulseListener);
+                newScene.addPostLayoutPulseListener(profilerPane.postLayoutPulseListener);
+              }
+            });
+    return profilerPane;
+  }
+
+  private ProfilerPane(MapView mapView, SequentialExecutor sequentialExecutor) {
+    this.mapView = mapView;
+    this.sequentialExecutor = sequentialExecutor;
+  }
+
+  /** How often the text is rewritten. */
+  public static final long SAMPLE_PERIOD_MILLIS = 500;
+
+  private static final Histogram frameTimer = Metrics.timer("fx.frame");
+  private static final Histogram layoutTimer = Metrics.timer("fx.layout");
+  private static final double NANOS_PER_MILLI = 1e6;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  // Only touched on the FX thread.
+  private long lastPulseNanos;
+  private long layoutNanos;
+  private int layoutPasses;
+  private long layoutStartNanos;
+  private final MapView mapView;
+  private long maxFrameNanos;
+  private long maxLayoutNanos;
+  private final Runnable postLayoutPulseListener = this::handlePostLayoutPulse;
+  private final Runnable preLayoutPulseListener = this::handlePreLayoutPulse;
+  private int pulses;
+  private final AnimationTimer pulseTimer =
+      new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+          handlePulse(now);
+        }
+      };
+  private long sampleStartNanos;
+  private boolean sampling;
+  private final SequentialExecutor sequentialExecutor;
+  private final Text text = new Text("Sampling...");
+}
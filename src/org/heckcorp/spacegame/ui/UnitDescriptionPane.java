@@ -10,6 +10,7 @@ import javafx.scene.text.Text;
 import org.heckcorp.spacegame.Constants;
 import org.heckcorp.spacegame.model.Player;
 import org.heckcorp.spacegame.model.Unit;
+import org.heckcorp.spacegame.model.UnitStats;
 import org.heckcorp.spacegame.ui.map.Counter;
 import org.heckcorp.spacegame.ui.map.MapUtils;
 import org.heckcorp.spacegame.ui.map.Point;
@@ -23,13 +24,14 @@ public class UnitDescriptionPane extends GridPane {
     getChildren().clear();
   }
 
-  public void setUnitData(Unit unit) {
-    add(getUnitDiagram(unit), 0, 0);
+  /** Shows the unit with the given stats, e.g. as of a snapshot, rather than its live ones. */
+  public void setUnitData(Unit unit, UnitStats stats) {
+    add(getUnitDiagram(unit, stats), 0, 0);
     add(new Text("Health: "), 0, 1);
     HBox unitHealth = new HBox();
     for (int i = 0; i < unit.getMaxHealth(); i++) {
       Rectangle rectangle = new Rectangle(20, 20);
-      if (i < unit.getHealth()) {
+      if (i < stats.health()) {
         rectangle.setFill(Color.GREEN);
       }
       unitHealth.getChildren().add(rectangle);
@@ -39,7 +41,7 @@ public class UnitDescriptionPane extends GridPane {
     HBox unitEnergy = new HBox();
     for (int i = 0; i < unit.getMaxEnergy(); i++) {
       Rectangle rectangle = new Rectangle(20, 20);
-      if (i < unit.getEnergy()) {
+      if (i < stats.energy()) {
         rectangle.setFill(Color.LIGHTBLUE);
       }
       unitEnergy.getChildren().add(rectangle);
@@ -47,12 +49,12 @@ public class UnitDescriptionPane extends GridPane {
     add(unitEnergy, 1, 2);
     String armorDescription =
         IntStream.range(0, 6)
-            .mapToObj(n -> unit.getArmor()[n] + "/" + unit.getMaxArmor()[n])
+            .mapToObj(n -> stats.getArmor(n) + "/" + unit.getMaxArmor(n))
             .collect(Collectors.joining(" "));
     add(new Text(armorDescription), 0, 3, 2, 1);
   }
 
-  private StackPane getUnitDiagram(Unit unit) {
+  private StackPane getUnitDiagram(Unit unit, UnitStats stats) {
     Counter counter = getCounter(unit);
     Shape hexagon = mapUtils.getHexagon(new Point(0, 0));
     hexagon.setFill(Color.TRANSPARENT);
@@ -60,7 +62,7 @@ public class UnitDescriptionPane extends GridPane {
     hexagon.setStrokeWidth(3.0);
     hexagon.getStrokeDashArray().clear();
     for (int i = 0; i < 6; i++) {
-      double armorFraction = (double) unit.getArmor()[i] / (double) unit.getMaxArmor()[i];
+      double armorFraction = (double) stats.getArmor(i) / (double) unit.getMaxArmor(i);
       hexagon.getStrokeDashArray().add(Math.max(Constants.HEX_RADIUS * armorFraction, 0.0));
       hexagon.getStrokeDashArray().add(Math.max(Constants.HEX_RADIUS * (1 - armorFraction), 0.0));
     }
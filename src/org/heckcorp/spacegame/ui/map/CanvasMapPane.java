@@ -0,0 +1,510 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.SetMultimap;
+import javafx.animation.Animation;
+import javafx.animation.AnimationTimer;
+import javafx.animation.Transition;
+import javafx.geometry.Insets;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.SequentialExecutor;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.heckcorp.spacegame.Constants.COUNTER_SIZE;
+import static org.heckcorp.spacegame.Constants.UI_COMPONENT_LARGE_HEIGHT;
+import static org.heckcorp.spacegame.Constants.UI_COMPONENT_LARGE_WIDTH;
+
+/**
+ * Draws the map straight onto one {@link Canvas}: hexes, labels, counters and highlighted hexes
+ * are painted with a GraphicsContext rather than being scene graph nodes, so the map costs no
+ * nodes however big it is. The canvas only covers the viewport and moves with it. A change marks
+ * the rectangles it touches as dirty, and the next pulse repaints only the parts of those
+ * rectangles in the viewport, clipped, with the hexes and counters that overlap them. Counters are
+ * indexed by the hex their centre is in, so a repaint only looks at the counters near it. Frames
+ * are only drawn while something is dirty or highlighted.
+ *
+ * <p>Used instead of {@link MapPane} when {@code -Dspacegame.canvasRenderer=true} is set.
+ */
+public class CanvasMapPane extends StackPane implements MapView {
+  @Override
+  public void addUnit(Unit unit, MapPosition position) {
+    Player.Color color = unit.getOwner().getColor();
+    @Nullable Image image = viewResources.getImages().get(unit.getImageId());
+    assert image != null : "@AssumeAssertion(nullness)";
+    Sprite sprite = new Sprite(image, new Color(color.r(), color.g(), color.b(), 1.0));
+    unitSprites.put(unit, sprite);
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          movePlayback.place(sprite, position);
+          unitListener.unitShown(unit, position);
+        });
+  }
+
+  @Override
+  public Region asRegion() {
+    return this;
+  }
+
+  /** Counts the frame timer, which runs while the canvas has anything to redraw. */
+  @Override
+  public int getAnimationCount() {
+    return framesRunning ? 1 : 0;
+  }
+
+  /** Returns 1: the counters and highlights are all drawn on the one canvas. */
+  @Override
+  public int getNodeCount() {
+    return 1;
+  }
+
+  @Override
+  public void moveUnit(Unit unit, MapPosition startMapPos, MapPosition endMapPos) {
+    @Nullable Sprite sprite = unitSprites.get(unit);
+    assert sprite != null : "@AssumeAssertion(nullness)";
+    movePlayback.move(
+        sprite,
+        startMapPos,
+        endMapPos,
+        () -> unitListener.unitMoved(unit, startMapPos, endMapPos));
+  }
+
+  @Override
+  public void removeUnit(Unit unit) {
+    @Nullable Sprite sprite = unitSprites.remove(unit);
+    if (sprite != null) {
+      sequentialExecutor.runLaterSequentially(
+          () -> {
+            spritesByHex.remove(sprite.hex, sprite);
+            markDirty(getBounds(sprite));
+            movePlayback.remove(sprite);
+            unitListener.unitHidden(unit);
+          });
+    }
+  }
+
+  @Override
+  public void selectHex(Point hexCoordinates) {
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          markDirty(selectedHexes);
+          selectedHexes = ImmutableSet.of(hexCoordinates);
+          markDirty(selectedHexes);
+        });
+  }
+
+  @Override
+  public void setComputerPlaybackMode(PlaybackMode computerPlaybackMode) {
+    movePlayback.setComputerPlaybackMode(computerPlaybackMode);
+  }
+
+  @Override
+  public void setComputerTurn(boolean computerTurn) {
+    movePlayback.setComputerTurn(computerTurn);
+  }
+
+  @Override
+  public void setPathHexes(ImmutableSet<? extends Point> hexes) {
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          markDirty(pathHexes);
+          pathHexes = hexes;
+          markDirty(pathHexes);
+        });
+  }
+
+  @Override
+  public void setTargetHexes(ImmutableSet<? extends Point> hexes) {
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          markDirty(targetHexes);
+          targetHexes = hexes;
+          markDirty(targetHexes);
+        });
+  }
+
+  @Override
+  public void setUnitListener(UnitListener unitListener) {
+    this.unitListener = unitListener;
+  }
+
+  @Override
+  public void setViewport(Rectangle2D viewport) {
+    Insets insets = getInsets();
+    this.viewport =
+        new Rectangle2D(
+            viewport.getMinX() - insets.getLeft(),
+            viewport.getMinY() - insets.getTop(),
+            viewport.getWidth(),
+            viewport.getHeight());
+    placeCanvas();
+    markDirty(this.viewport);
+  }
+
+  @Override
+  public void unselectHex() {
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          markDirty(selectedHexes);
+          selectedHexes = ImmutableSet.of();
+        });
+  }
+
+  /** Draws the dirty regions. Called every pulse while frames are running. */
+  private void drawFrame(long now) {
+    boolean highlighting =
+        !pathHexes.isEmpty() || !selectedHexes.isEmpty() || !targetHexes.isEmpty();
+    if (highlighting) {
+      // The dashes march from an offset of 20 to 0 every two seconds, as in MapPane.
+      dashOffset = 20.0 * (1.0 - (double) (now % DASH_PERIOD_NANOS) / DASH_PERIOD_NANOS);
+      markDirty(pathHexes);
+      markDirty(selectedHexes);
+      markDirty(targetHexes);
+    }
+    if (dirtyRegions.size() > MAX_DIRTY_REGIONS) {
+      Rectangle2D union = dirtyRegions.get(0);
+      for (Rectangle2D region : dirtyRegions) {
+        union = union(union, region);
+      }
+      dirtyRegions.clear();
+      dirtyRegions.add(union);
+    }
+    for (Rectangle2D region : dirtyRegions) {
+      if (region.intersects(viewport)) {
+        redraw(intersection(region, viewport));
+      }
+    }
+    dirtyRegions.clear();
+    if (!highlighting) {
+      frameTimer.stop();
+      framesRunning = false;
+    }
+  }
+
+  private void drawHighlights(
+      GraphicsContext gc, Rectangle2D region, Set<? extends Point> hexes, Color color) {
+    if (hexes.isEmpty()) {
+      return;
+    }
+    gc.setStroke(color);
+    gc.setLineWidth(2);
+    gc.setLineDashes(10, 10);
+    gc.setLineDashOffset(dashOffset);
+    for (Point hex : hexes) {
+      if (getHexBounds(hex).intersects(region)) {
+        strokeHexagon(gc, hex);
+      }
+    }
+    gc.setLineDashes();
+    gc.setLineWidth(1);
+  }
+
+  private Rectangle2D getBounds(Sprite sprite) {
+    return new Rectangle2D(
+        sprite.x - SPRITE_EXTENT, sprite.y - SPRITE_EXTENT, 2 * SPRITE_EXTENT, 2 * SPRITE_EXTENT);
+  }
+
+  /** Returns the area a hex's outline, label and highlight can touch. */
+  private Rectangle2D getHexBounds(Point hex) {
+    Point2D center = mapUtils.getHexCenter(hex);
+    double halfWidth = mapUtils.getHexRadius() + HIGHLIGHT_MARGIN;
+    double halfHeight = mapUtils.getMinorRadius() + HIGHLIGHT_MARGIN;
+    return new Rectangle2D(
+        center.getX() - halfWidth, center.getY() - halfHeight, 2 * halfWidth, 2 * halfHeight);
+  }
+
+  private void markDirty(Rectangle2D region) {
+    dirtyRegions.add(region);
+    if (!framesRunning) {
+      framesRunning = true;
+      frameTimer.start();
+    }
+  }
+
+  private void markDirty(Set<? extends Point> hexes) {
+    for (Point hex : hexes) {
+      markDirty(getHexBounds(hex));
+    }
+  }
+
+  private void placeCanvas() {
+    canvas.setWidth(viewport.getWidth());
+    canvas.setHeight(viewport.getHeight());
+    canvas.relocate(viewport.getMinX(), viewport.getMinY());
+  }
+
+  /**
+   * Repaints everything in the region, which must be inside the viewport. The region is snapped
+   * out to whole pixels so no seams are left.
+   */
+  private void redraw(Rectangle2D region) {
+    double minX = Math.floor(region.getMinX());
+    double minY = Math.floor(region.getMinY());
+    double maxX = Math.ceil(region.getMaxX());
+    double maxY = Math.ceil(region.getMaxY());
+    Rectangle2D clip = new Rectangle2D(minX, minY, maxX - minX, maxY - minY);
+    GraphicsContext gc = canvas.getGraphicsContext2D();
+    gc.save();
+    gc.translate(-viewport.getMinX(), -viewport.getMinY());
+    gc.beginPath();
+    gc.rect(minX, minY, maxX - minX, maxY - minY);
+    gc.clip();
+    gc.setFill(Color.BLACK);
+    gc.fillRect(minX, minY, maxX - minX, maxY - minY);
+
+    gc.setStroke(Color.WHITE);
+    gc.setLineWidth(1);
+    gc.setTextBaseline(VPos.TOP);
+    for (Point hex : mapUtils.getHexesOverlapping(clip)) {
+      strokeHexagon(gc, hex);
+      Point2D labelPos = mapUtils.getHexLabelPosition(hex);
+      gc.strokeText(hex.x() + "," + hex.y(), labelPos.getX(), labelPos.getY());
+    }
+
+    // A counter overlapping the clip has its centre, and so its hex, within its extent of it.
+    Rectangle2D spriteCenters =
+        new Rectangle2D(
+            minX - SPRITE_EXTENT,
+            minY - SPRITE_EXTENT,
+            maxX - minX + 2 * SPRITE_EXTENT,
+            maxY - minY + 2 * SPRITE_EXTENT);
+    for (Point hex : mapUtils.getHexesOverlapping(spriteCenters)) {
+      for (Sprite sprite : spritesByHex.get(hex)) {
+        if (getBounds(sprite).intersects(clip)) {
+          gc.save();
+          gc.translate(sprite.x, sprite.y);
+          gc.rotate(sprite.angle);
+          gc.setFill(sprite.color);
+          gc.fillRect(-COUNTER_SIZE / 2, -COUNTER_SIZE / 2, COUNTER_SIZE, COUNTER_SIZE);
+          gc.drawImage(
+              sprite.image, -COUNTER_SIZE / 2, -COUNTER_SIZE / 2, COUNTER_SIZE, COUNTER_SIZE);
+          gc.restore();
+        }
+      }
+    }
+
+    drawHighlights(gc, clip, pathHexes, Color.LIGHTGREEN);
+    drawHighlights(gc, clip, targetHexes, Color.RED);
+    drawHighlights(gc, clip, selectedHexes, Color.YELLOW);
+    gc.restore();
+  }
+
+  /** Moves the sprite to the hex its centre is in now, if that has changed. */
+  private void reindex(Sprite sprite) {
+    Point hex = mapUtils.getHexCoordinates(new Point2D(sprite.x, sprite.y));
+    if (!hex.equals(sprite.hex)) {
+      spritesByHex.remove(sprite.hex, sprite);
+      spritesByHex.put(hex, sprite);
+      sprite.hex = hex;
+    }
+  }
+
+  private void strokeHexagon(GraphicsContext gc, Point hex) {
+    Point2D center = mapUtils.getHexCenter(hex);
+    for (int i = 0; i < 6; i++) {
+      hexagonXs[i] = center.getX() + hexagonXOffsets[i];
+      hexagonYs[i] = center.getY() + hexagonYOffsets[i];
+    }
+    gc.strokePolygon(hexagonXs, hexagonYs, 6);
+  }
+
+  private static Rectangle2D intersection(Rectangle2D a, Rectangle2D b) {
+    double minX = Math.max(a.getMinX(), b.getMinX());
+    double minY = Math.max(a.getMinY(), b.getMinY());
+    return new Rectangle2D(
+        minX,
+        minY,
+        Math.min(a.getMaxX(), b.getMaxX()) - minX,
+        Math.min(a.getMaxY(), b.getMaxY()) - minY);
+  }
+
+  private static Rectangle2D union(Rectangle2D a, Rectangle2D b) {
+    double minX = Math.min(a.getMinX(), b.getMinX());
+    double minY = Math.min(a.getMinY(), b.getMinY());
+    return new Rectangle2D(
+        minX,
+        minY,
+        Math.max(a.getMaxX(), b.getMaxX()) - minX,
+        Math.max(a.getMaxY(), b.getMaxY()) - minY);
+  }
+
+  public static CanvasMapPane create(
+      MapUtils mapUtils,
+      MapModel model,
+      ViewResources viewResources,
+      SequentialExecutor sequentialAnimationExecutor) {
+    double width =
+        mapUtils.getMapWidth() * mapUtils.getColumnWidth()
+            + (2.0 * mapUtils.getHexRadius() - mapUtils.getColumnWidth());
+    double height = (mapUtils.getMapHeight() + .5) * 2.0 * mapUtils.getMinorRadius();
+    // Until a scroll pane reports its viewport, assume one of the usual size in the top left.
+    Rectangle2D viewport =
+        new Rectangle2D(
+            0,
+            0,
+            Math.min(width, UI_COMPONENT_LARGE_WIDTH),
+            Math.min(height, UI_COMPONENT_LARGE_HEIGHT));
+    CanvasMapPane mapPane =
+        new CanvasMapPane(
+            mapUtils, viewResources, sequentialAnimationExecutor, new Canvas(), viewport);
+    mapPane.setBackground(
+        new Background(new BackgroundFill(Color.BLACK, CornerRadii.EMPTY, Insets.EMPTY)));
+
+    // The canvas moves about on a map-sized layer, so the scroll pane scrolls the whole map.
+    Pane canvasLayer = new Pane(mapPane.canvas);
+    canvasLayer.setMinSize(width, height);
+    canvasLayer.setPrefSize(width, height);
+    mapPane.placeCanvas();
+    ControllerPane controllerPane = new ControllerPane(model, mapUtils);
+    mapPane.getChildren().addAll(canvasLayer, controllerPane);
+
+    // A click on the map skips any animations still queued, so the selection shows at once.
+    controllerPane.setOnMouseClicked(
+        event -> {
+          sequentialAnimationExecutor.cancelAnimations();
+          controllerPane.onMouseClicked(event);
+        });
+    controllerPane.setOnMouseMoved(controllerPane::onMouseMoved);
+
+    mapPane.markDirty(viewport);
+    return mapPane;
+  }
+
+  private CanvasMapPane(
+      MapUtils mapUtils,
+      ViewResources viewResources,
+      SequentialExecutor sequentialExecutor,
+      Canvas canvas,
+      Rectangle2D viewport) {
+    this.mapUtils = mapUtils;
+    this.viewResources = viewResources;
+    this.sequentialExecutor = sequentialExecutor;
+    this.canvas = canvas;
+    this.viewport = viewport;
+    this.movePlayback = new MovePlayback<>(sequentialExecutor, new SpriteAnimator());
+    double hexRadius = mapUtils.getHexRadius();
+    double minorRadius = mapUtils.getMinorRadius();
+    this.hexagonXOffsets =
+        new double[] {
+          -hexRadius / 2, hexRadius / 2, hexRadius, hexRadius / 2, -hexRadius / 2, -hexRadius
+        };
+    this.hexagonYOffsets =
+        new double[] {-minorRadius, -minorRadius, 0, minorRadius, minorRadius, 0};
+  }
+
+  private static final long DASH_PERIOD_NANOS = 2_000_000_000L;
+  private static final double HIGHLIGHT_MARGIN = 2.0;
+  /** Past this many dirty regions a frame repaints their bounding box instead. */
+  private static final int MAX_DIRTY_REGIONS = 64;
+  /** Half the side of a square that holds a counter at any rotation. */
+  private static final double SPRITE_EXTENT = COUNTER_SIZE * Math.sqrt(2) / 2 + 1;
+
+  private final Canvas canvas;
+  private double dashOffset;
+  private final List<Rectangle2D> dirtyRegions = Lists.newArrayList();
+  private final AnimationTimer frameTimer =
+      new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+          drawFrame(now);
+        }
+      };
+  private boolean framesRunning;
+  private final double[] hexagonXOffsets;
+  private final double[] hexagonXs = new double[6];
+  private final double[] hexagonYOffsets;
+  private final double[] hexagonYs = new double[6];
+  private final MapUtils mapUtils;
+  private final MovePlayback<Sprite> movePlayback;
+  private ImmutableSet<? extends Point> pathHexes = ImmutableSet.of();
+  private ImmutableSet<? extends Point> selectedHexes = ImmutableSet.of();
+  private final SequentialExecutor sequentialExecutor;
+  // Keyed by the hex each sprite's centre is in; only touched on the FX thread.
+  private final SetMultimap<Point, Sprite> spritesByHex =
+      MultimapBuilder.hashKeys().linkedHashSetValues().build();
+  private ImmutableSet<? extends Point> targetHexes = ImmutableSet.of();
+  private UnitListener unitListener = new UnitListener() {};
+  private final Map<Unit, Sprite> unitSprites = Maps.newHashMap();
+  private final ViewResources viewResources;
+  private Rectangle2D viewport;
+
+  /** A counter drawn on the canvas, centred on (x, y) and rotated clockwise by angle degrees. */
+  private static final class Sprite {
+    Sprite(Image image, Color color) {
+      this.image = image;
+      this.color = color;
+    }
+
+    double angle;
+    final Color color;
+    // Where the sprite is filed in spritesByHex; null until it is first placed.
+    @Nullable Point hex;
+    final Image image;
+    double x;
+    double y;
+  }
+
+  /** Moves sprites, marking where they were and where they are dirty at every step. */
+  private final class SpriteAnimator implements MovePlayback.Animator<Sprite> {
+    @Override
+    public Animation buildMoveAnimation(
+        Sprite sprite, MapPosition startMapPos, MapPosition endMapPos, Duration duration) {
+      Point2D startPos = mapUtils.getHexCenter(startMapPos.position());
+      Point2D endPos = mapUtils.getHexCenter(endMapPos.position());
+      double startAngle = 60.0 * startMapPos.direction().getDirection();
+      double endAngle =
+          MovePlayback.getClosestAngle(startMapPos.direction(), endMapPos.direction());
+      Transition transition =
+          new Transition() {
+            {
+              setCycleDuration(duration);
+            }
+
+            @Override
+            protected void interpolate(double frac) {
+              markDirty(getBounds(sprite));
+              sprite.x = startPos.getX() + frac * (endPos.getX() - startPos.getX());
+              sprite.y = startPos.getY() + frac * (endPos.getY() - startPos.getY());
+              sprite.angle = startAngle + frac * (endAngle - startAngle);
+              reindex(sprite);
+              markDirty(getBounds(sprite));
+            }
+          };
+      transition.setOnFinished(event -> place(sprite, endMapPos));
+      return transition;
+    }
+
+    @Override
+    public void place(Sprite sprite, MapPosition position) {
+      markDirty(getBounds(sprite));
+      Point2D center = mapUtils.getHexCenter(position.position());
+      sprite.x = center.getX();
+      sprite.y = center.getY();
+      sprite.angle = 60.0 * position.direction().getDirection();
+      reindex(sprite);
+      markDirty(getBounds(sprite));
+    }
+  }
+}
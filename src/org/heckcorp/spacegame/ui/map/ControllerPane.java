@@ -3,6 +3,7 @@ package org.heckcorp.spacegame.ui.map;
 import javafx.geometry.Point2D;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Pane;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class ControllerPane extends Pane {
     public void onMouseClicked(MouseEvent mouseEvent) {
@@ -11,6 +12,15 @@ public class ControllerPane extends Pane {
         model.hexClicked(hexCoordinates, getMouseButton(mouseEvent));
     }
 
+    public void onMouseMoved(MouseEvent mouseEvent) {
+        Point2D position = new Point2D(mouseEvent.getX(), mouseEvent.getY());
+        Point hexCoordinates = mapUtils.getHexCoordinates(position);
+        if (!hexCoordinates.equals(hoveredHex)) {
+            hoveredHex = hexCoordinates;
+            model.hexHovered(hexCoordinates);
+        }
+    }
+
     private MouseButton getMouseButton(MouseEvent mouseEvent) {
         return switch (mouseEvent.getButton()) {
             case PRIMARY -> MouseButton.PRIMARY;
@@ -24,6 +34,7 @@ public class ControllerPane extends Pane {
         this.mapUtils = mapUtils;
     }
 
+    private @Nullable Point hoveredHex;
     private final MapModel model;
     private final MapUtils mapUtils;
 }
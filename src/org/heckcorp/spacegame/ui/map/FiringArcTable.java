@@ -0,0 +1,64 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.Sets;
+import org.heckcorp.spacegame.model.Direction;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Firing arcs as offsets relative to the firing unit's hex. Hex offsets only depend on the parity
+ * of the unit's column, so an arc computed once for each (column parity, direction, range) can be
+ * moved anywhere on the map by adding the unit's coordinates. Thread-safe.
+ */
+final class FiringArcTable {
+  /**
+   * Returns the arc as x and y offsets, interleaved. The offsets apply to a unit whose column has
+   * the given parity (0 or 1).
+   */
+  int[] getOffsets(int columnParity, Direction direction, int range) {
+    int key = (range * 2 + columnParity) * DIRECTIONS + direction.ordinal();
+    return offsets.computeIfAbsent(key, k -> computeOffsets(columnParity, direction, range));
+  }
+
+  /**
+   * Floods outwards from the hex in front of the unit, stepping forward, forward-left and
+   * forward-right, for {@code range} steps.
+   */
+  private static int[] computeOffsets(int columnParity, Direction direction, int range) {
+    int[] steps = {
+      direction.left().getDirection(), direction.getDirection(), direction.right().getDirection()
+    };
+    Set<Point> arc = Sets.newHashSet();
+    Set<Point> hexes =
+        Sets.newHashSet(
+            new Point(
+                HexMath.neighborX(columnParity, direction.getDirection()),
+                HexMath.neighborY(columnParity, 0, direction.getDirection())));
+    for (int i = 0; i < range; i++) {
+      arc.addAll(hexes);
+      Set<Point> newHexes = Sets.newHashSet();
+      for (Point hex : hexes) {
+        for (int step : steps) {
+          newHexes.add(
+              new Point(
+                  HexMath.neighborX(hex.x(), step), HexMath.neighborY(hex.x(), hex.y(), step)));
+        }
+      }
+      hexes = newHexes;
+    }
+
+    int[] result = new int[arc.size() * 2];
+    int i = 0;
+    for (Point hex : arc) {
+      result[i++] = hex.x() - columnParity;
+      result[i++] = hex.y();
+    }
+    return result;
+  }
+
+  private static final int DIRECTIONS = Direction.values().length;
+
+  private final ConcurrentMap<Integer, int[]> offsets = new ConcurrentHashMap<>();
+}
@@ -0,0 +1,91 @@
+package org.heckcorp.spacegame.ui.map;
+
+/**
+ * Integer hex-grid math. Map positions use offset coordinates, with odd columns shifted half a hex
+ * down; internally everything is converted to cube coordinates (q, r, s = -q - r), where distance
+ * and direction need no branching on column parity. None of these methods allocate.
+ *
+ * <p>Directions are numbered as in {@link org.heckcorp.spacegame.model.Direction}: 0 is north and
+ * they go clockwise.
+ */
+public final class HexMath {
+  /** Receives hex coordinates from {@link #forEachInRange}. */
+  @FunctionalInterface
+  public interface HexConsumer {
+    void accept(int x, int y);
+  }
+
+  /** Returns the cube r coordinate of a hex. The q coordinate is the same as x. */
+  public static int toCubeR(int x, int y) {
+    return y - ((x - (x & 1)) >> 1);
+  }
+
+  /** Returns the offset y coordinate of a hex. The x coordinate is the same as q. */
+  public static int toOffsetY(int q, int r) {
+    return r + ((q - (q & 1)) >> 1);
+  }
+
+  public static int distance(int x1, int y1, int x2, int y2) {
+    int dq = x2 - x1;
+    int dr = toCubeR(x2, y2) - toCubeR(x1, y1);
+    return (Math.abs(dq) + Math.abs(dr) + Math.abs(dq + dr)) / 2;
+  }
+
+  /**
+   * Returns the direction of the 60 degree sector around (x1, y1) that contains (x2, y2). A hex
+   * lying exactly on the border between two sectors belongs to the clockwise one, and a hex lies to
+   * the south-east of itself.
+   */
+  public static int direction(int x1, int y1, int x2, int y2) {
+    int dq = x2 - x1;
+    int dr = toCubeR(x2, y2) - toCubeR(x1, y1);
+    // Each of these has the same sign as one of the sector borders in pixel space: a is the
+    // height above the east-west line, b the side of the 60 degree line and c the side of the
+    // 120 degree line.
+    int a = -(2 * dr + dq);
+    int b = -(2 * dq + dr);
+    int c = dq - dr;
+    if (b > 0 && c >= 0) {
+      return 0;
+    } else if (a > 0 && b <= 0) {
+      return 1;
+    } else if (a <= 0 && c > 0) {
+      return 2;
+    } else if (b < 0 && c <= 0) {
+      return 3;
+    } else if (a < 0 && b >= 0) {
+      return 4;
+    } else if (a >= 0 && c < 0) {
+      return 5;
+    } else {
+      return 2;
+    }
+  }
+
+  public static int neighborX(int x, int direction) {
+    return x + DIRECTION_Q[direction];
+  }
+
+  public static int neighborY(int x, int y, int direction) {
+    int q = x + DIRECTION_Q[direction];
+    int r = toCubeR(x, y) + DIRECTION_R[direction];
+    return toOffsetY(q, r);
+  }
+
+  /** Visits every hex within the given distance of (x, y), including (x, y) itself. */
+  public static void forEachInRange(int x, int y, int radius, HexConsumer consumer) {
+    int r = toCubeR(x, y);
+    for (int dq = -radius; dq <= radius; dq++) {
+      int minDr = Math.max(-radius, -dq - radius);
+      int maxDr = Math.min(radius, -dq + radius);
+      for (int dr = minDr; dr <= maxDr; dr++) {
+        consumer.accept(x + dq, toOffsetY(x + dq, r + dr));
+      }
+    }
+  }
+
+  private HexMath() {}
+
+  private static final int[] DIRECTION_Q = {0, 1, 1, 0, -1, -1};
+  private static final int[] DIRECTION_R = {-1, -1, 0, 1, 1, 0};
+}
@@ -0,0 +1,71 @@
+package org.heckcorp.spacegame.ui.map;
+
+/**
+ * Distances and directions between hexes, looked up by the column parity of the first hex and the
+ * offset to the second. In offset coordinates these only depend on the column parity, so one entry
+ * covers every pair of hexes the same offset apart, and a map of width w and height h needs
+ * 2 x (2w - 1) x (2h - 1) entries. Offsets too big for the table are computed on the fly.
+ * Immutable, so thread-safe.
+ */
+final class HexOffsetTable {
+  int distance(int x1, int y1, int x2, int y2) {
+    int index = getIndex(x1, x2 - x1, y2 - y1);
+    return index < 0 ? HexMath.distance(x1, y1, x2, y2) : entries[index] >>> DIRECTION_BITS;
+  }
+
+  int direction(int x1, int y1, int x2, int y2) {
+    int index = getIndex(x1, x2 - x1, y2 - y1);
+    return index < 0 ? HexMath.direction(x1, y1, x2, y2) : entries[index] & DIRECTION_MASK;
+  }
+
+  /** Returns the entry for the offset from a hex in column x, or -1 if it's outside the table. */
+  private int getIndex(int x, int dx, int dy) {
+    int column = dx + maxOffsetX;
+    int row = dy + maxOffsetY;
+    if (column < 0 || column >= columns || row < 0 || row >= rows) {
+      return -1;
+    }
+    return ((x & 1) * rows + row) * columns + column;
+  }
+
+  /** Returns the memory the table for a map of the given size takes, in bytes. */
+  static long getSizeBytes(int mapWidth, int mapHeight) {
+    return 2L * (2L * mapWidth - 1) * (2L * mapHeight - 1) * Integer.BYTES;
+  }
+
+  /** Builds the table for a map of the given size; see {@link #getSizeBytes}. */
+  static HexOffsetTable create(int mapWidth, int mapHeight) {
+    int columns = 2 * mapWidth - 1;
+    int rows = 2 * mapHeight - 1;
+    int[] entries = new int[2 * rows * columns];
+    int i = 0;
+    for (int parity = 0; parity < 2; parity++) {
+      for (int dy = 1 - mapHeight; dy < mapHeight; dy++) {
+        for (int dx = 1 - mapWidth; dx < mapWidth; dx++) {
+          entries[i++] =
+              HexMath.distance(parity, 0, parity + dx, dy) << DIRECTION_BITS
+                  | HexMath.direction(parity, 0, parity + dx, dy);
+        }
+      }
+    }
+    return new HexOffsetTable(entries, mapWidth - 1, mapHeight - 1, columns, rows);
+  }
+
+  private HexOffsetTable(int[] entries, int maxOffsetX, int maxOffsetY, int columns, int rows) {
+    this.entries = entries;
+    this.maxOffsetX = maxOffsetX;
+    this.maxOffsetY = maxOffsetY;
+    this.columns = columns;
+    this.rows = rows;
+  }
+
+  private static final int DIRECTION_BITS = 3;
+  private static final int DIRECTION_MASK = (1 << DIRECTION_BITS) - 1;
+
+  private final int columns;
+  // Each entry holds the distance above the direction's three bits.
+  private final int[] entries;
+  private final int maxOffsetX;
+  private final int maxOffsetY;
+  private final int rows;
+}
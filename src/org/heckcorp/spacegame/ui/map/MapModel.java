@@ -2,4 +2,7 @@ package org.heckcorp.spacegame.ui.map;
 
 public interface MapModel {
   void hexClicked(Point hexCoordinates, MouseButton mouseButton);
+
+  /** Called when the mouse moves onto a different hex. */
+  default void hexHovered(Point hexCoordinates) {}
 }
@@ -1,14 +1,22 @@
 package org.heckcorp.spacegame.ui.map;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import javafx.animation.*;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
 import javafx.geometry.VPos;
 import javafx.scene.Node;
+import javafx.scene.Parent;
 import javafx.scene.SnapshotParameters;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -16,204 +24,430 @@ import javafx.scene.shape.*;
 import javafx.scene.text.Text;
 import javafx.util.Duration;
 import org.heckcorp.spacegame.SequentialExecutor;
-import org.heckcorp.spacegame.model.Direction;
 import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static org.heckcorp.spacegame.Constants.*;
 
-public class MapPane extends StackPane {
-  public void addCounter(Counter counter, MapPosition position) {
+/**
+ * Draws the map with scene graph nodes: snapshots of the hex grid, with counters on top. The grid
+ * is split into square tiles that are only snapshotted once they scroll into view, and kept in a
+ * bounded cache so scrolling back is cheap. Only the tiles and counters in the viewport are in the
+ * scene graph, so the cost of a frame doesn't grow with the size of the map.
+ */
+public class MapPane extends StackPane implements MapView {
+  @Override
+  public void addUnit(Unit unit, MapPosition position) {
+    Player.Color color = unit.getOwner().getColor();
+    Counter counter =
+        Counter.build(viewResources, unit.getImageId(), color.r(), color.g(), color.b());
+    unitCounters.put(unit, counter);
     sequentialExecutor.runLaterSequentially(
         () -> {
-          countersPane.getChildren().add(counter);
-          Point2D pixelPos =
-              mapUtils.getHexCenter(new Point(position.position().x(), position.position().y()));
-          setCounterLocation(counter, pixelPos);
-          counter.setRotate(60 * position.direction().getDirection());
+          counters.add(counter);
+          movePlayback.place(counter, position);
+          unitListener.unitShown(unit, position);
         });
   }
 
-  public void moveCounter(Counter counter, MapPosition startMapPos, MapPosition endMapPos) {
-    ParallelTransition parallelTransition = new ParallelTransition(counter);
-
-    Point2D startPos = mapUtils.getHexCenter(startMapPos.position());
-    Point2D endPos = mapUtils.getHexCenter(endMapPos.position());
-    if (!startPos.equals(endPos)) {
-      Path path = new Path();
-      path.getElements()
-          .add(
-              new MoveTo(
-                  counter.getLayoutBounds().getCenterX(), counter.getLayoutBounds().getCenterY()));
-      path.getElements()
-          .add(
-              new LineTo(
-                  endPos.getX() - startPos.getX() + counter.getLayoutBounds().getCenterX(),
-                  endPos.getY() - startPos.getY() + counter.getLayoutBounds().getCenterY()));
-      PathTransition pathTransition = new PathTransition(ANIMATION_DURATION, path);
-      pathTransition.setOrientation(PathTransition.OrientationType.NONE);
-      pathTransition.setOnFinished(event -> setCounterLocation(counter, endPos));
-      parallelTransition.getChildren().add(pathTransition);
-    }
+  @Override
+  public Region asRegion() {
+    return this;
+  }
 
-    if (!startMapPos.direction().equals(endMapPos.direction())) {
-      RotateTransition rotateTransition = new RotateTransition(ANIMATION_DURATION);
-      rotateTransition.setFromAngle(60.0 * startMapPos.direction().getDirection());
-      rotateTransition.setToAngle(getClosestAngle(startMapPos.direction(), endMapPos.direction()));
-      rotateTransition.setByAngle(5);
-      rotateTransition.setOnFinished(
-          event -> counter.setRotate(60 * endMapPos.direction().getDirection()));
-      parallelTransition.getChildren().add(rotateTransition);
-    }
+  @Override
+  public int getAnimationCount() {
+    return dashAnimation.getStatus() == Animation.Status.RUNNING ? 1 : 0;
+  }
 
-    sequentialExecutor.playSequentially(parallelTransition);
+  /** Counts every node in the counters layer, the counters' own children included. */
+  @Override
+  public int getNodeCount() {
+    return countNodes(countersPane) - 1;
   }
 
-  public void removeCounter(@Nullable Counter counter) {
+  @Override
+  public void moveUnit(Unit unit, MapPosition startMapPos, MapPosition endMapPos) {
+    @Nullable Counter counter = unitCounters.get(unit);
+    assert counter != null : "@AssumeAssertion(nullness)";
+    movePlayback.move(
+        counter,
+        startMapPos,
+        endMapPos,
+        () -> unitListener.unitMoved(unit, startMapPos, endMapPos));
+  }
+
+  @Override
+  public void removeUnit(Unit unit) {
+    @Nullable Counter counter = unitCounters.remove(unit);
     if (counter != null) {
-      sequentialExecutor.runLaterSequentially(() -> countersPane.getChildren().remove(counter));
+      sequentialExecutor.runLaterSequentially(
+          () -> {
+            counters.remove(counter);
+            countersPane.getChildren().remove(counter);
+            movePlayback.remove(counter);
+            unitListener.unitHidden(unit);
+          });
     }
   }
 
-  public void selectHexes(Point hexCoordinates) {
+  @Override
+  public void selectHex(Point hexCoordinates) {
     sequentialExecutor.runLaterSequentially(
         () -> {
-          selectedHexes.clear();
-          selectedHexes.addAll(selectHexes(Color.YELLOW, ImmutableSet.of(hexCoordinates)));
+          releaseHighlights(selectedHexes);
+          showHighlights(selectedHexes, Color.YELLOW, ImmutableSet.of(hexCoordinates));
         });
   }
 
+  @Override
+  public void setComputerPlaybackMode(PlaybackMode computerPlaybackMode) {
+    movePlayback.setComputerPlaybackMode(computerPlaybackMode);
+  }
+
+  @Override
+  public void setComputerTurn(boolean computerTurn) {
+    movePlayback.setComputerTurn(computerTurn);
+  }
+
+  @Override
   public void unselectHex() {
     sequentialExecutor.runLaterSequentially(
         () -> {
-          countersPane.getChildren().removeAll(selectedHexes);
-          selectedHexes.clear();
+          releaseHighlights(selectedHexes);
         });
   }
 
+  @Override
+  public void setPathHexes(ImmutableSet<? extends Point> hexes) {
+    sequentialExecutor.runLaterSequentially(
+        () -> {
+          releaseHighlights(pathHexes);
+          showHighlights(pathHexes, Color.LIGHTGREEN, hexes);
+        });
+  }
+
+  @Override
   public void setTargetHexes(ImmutableSet<? extends Point> hexes) {
     sequentialExecutor.runLaterSequentially(
         () -> {
-          countersPane.getChildren().removeAll(targetHexes);
-          targetHexes.clear();
-          targetHexes.addAll(selectHexes(Color.RED, hexes));
+          releaseHighlights(targetHexes);
+          showHighlights(targetHexes, Color.RED, hexes);
         });
   }
 
-  private double getClosestAngle(Direction startDirection, Direction endDirection) {
-    double startAngle = 60.0 * startDirection.getDirection();
-    double endAngle = 60.0 * endDirection.getDirection();
-    if (endAngle - startAngle > 180.0) {
-      return endAngle - 360.0;
-    } else if (endAngle - startAngle < -180.0) {
-      return endAngle + 360.0;
-    } else {
-      return endAngle;
+  @Override
+  public void setUnitListener(UnitListener unitListener) {
+    this.unitListener = unitListener;
+  }
+
+  @Override
+  public void setViewport(Rectangle2D viewport) {
+    Insets insets = getInsets();
+    this.viewport =
+        new Rectangle2D(
+            viewport.getMinX() - insets.getLeft(),
+            viewport.getMinY() - insets.getTop(),
+            viewport.getWidth(),
+            viewport.getHeight());
+    showVisibleTiles();
+    counters.forEach(this::updateCounterVisibility);
+  }
+
+  private boolean isInViewport(Point hex) {
+    Point2D center = mapUtils.getHexCenter(hex);
+    double radius = mapUtils.getHexRadius();
+    return viewport.intersects(
+        center.getX() - radius, center.getY() - radius, 2 * radius, 2 * radius);
+  }
+
+  /**
+   * Removes the highlights and returns their polygons to the pool. The dash animation stops once no
+   * highlights are left.
+   */
+  private void releaseHighlights(Set<Polygon> highlights) {
+    countersPane.getChildren().removeAll(highlights);
+    for (Polygon highlight : highlights) {
+      highlight.strokeDashOffsetProperty().unbind();
+      if (highlightPool.size() < MAX_POOLED_HIGHLIGHTS) {
+        highlightPool.push(highlight);
+      }
+    }
+    highlights.clear();
+    if (pathHexes.isEmpty() && selectedHexes.isEmpty() && targetHexes.isEmpty()) {
+      dashAnimation.stop();
     }
   }
 
-  private Set<Shape> selectHexes(Color color, Set<? extends Point> hexCoordinates) {
-    Set<Shape> hexagons =
-        hexCoordinates.stream()
-            .map(
-                point -> {
-                  Shape hexagon = mapUtils.getHexagon(point);
-                  hexagon.getStrokeDashArray().setAll(10d, 10d);
-                  hexagon.setStrokeWidth(2);
-                  hexagon.setStroke(color);
-                  hexagon.setFill(Color.TRANSPARENT);
-                  return hexagon;
-                })
-            .collect(Collectors.toSet());
-
-    countersPane.getChildren().addAll(hexagons);
-
-    hexagons.forEach(
-        hexagon -> {
-          Timeline timeline =
-              new Timeline(
-                  new KeyFrame(
-                      Duration.ZERO,
-                      new KeyValue(hexagon.strokeDashOffsetProperty(), 20, Interpolator.LINEAR)),
-                  new KeyFrame(
-                      Duration.seconds(2),
-                      new KeyValue(hexagon.strokeDashOffsetProperty(), 0, Interpolator.LINEAR)));
-          timeline.setCycleCount(Timeline.INDEFINITE);
-          timeline.play();
-        });
+  /**
+   * Outlines the hexes with marching dashes, adding the polygons to the given set. Every highlight
+   * follows the one shared dash animation, and polygons are reused from the pool where possible.
+   */
+  private void showHighlights(
+      Set<Polygon> highlights, Color color, Set<? extends Point> hexCoordinates) {
+    Point2D origin = mapUtils.getHexCenter(HIGHLIGHT_ORIGIN);
+    for (Point point : hexCoordinates) {
+      @Nullable Polygon hexagon = highlightPool.poll();
+      if (hexagon == null) {
+        hexagon = mapUtils.getHexagon(HIGHLIGHT_ORIGIN);
+        hexagon.getStrokeDashArray().setAll(10d, 10d);
+        hexagon.setStrokeWidth(2);
+        hexagon.setFill(Color.TRANSPARENT);
+      }
+      Point2D center = mapUtils.getHexCenter(point);
+      hexagon.setLayoutX(center.getX() - origin.getX());
+      hexagon.setLayoutY(center.getY() - origin.getY());
+      hexagon.setStroke(color);
+      hexagon.strokeDashOffsetProperty().bind(dashOffset);
+      highlights.add(hexagon);
+    }
+    countersPane.getChildren().addAll(highlights);
+    if (!highlights.isEmpty()) {
+      dashAnimation.play();
+    }
+  }
 
-    return hexagons;
+  /** Shows the tiles that overlap the viewport, taking them from the cache where it can. */
+  private void showVisibleTiles() {
+    int maxTileX = (int) Math.ceil(mapWidth / TILE_SIZE) - 1;
+    int maxTileY = (int) Math.ceil(mapHeight / TILE_SIZE) - 1;
+    int minX = Math.max(0, (int) Math.floor(viewport.getMinX() / TILE_SIZE));
+    int minY = Math.max(0, (int) Math.floor(viewport.getMinY() / TILE_SIZE));
+    int maxX = Math.min(maxTileX, (int) Math.floor(viewport.getMaxX() / TILE_SIZE));
+    int maxY = Math.min(maxTileY, (int) Math.floor(viewport.getMaxY() / TILE_SIZE));
+    Map<Tile, ImageView> visibleTiles = Maps.newHashMap();
+    for (int x = minX; x <= maxX; x++) {
+      for (int y = minY; y <= maxY; y++) {
+        Tile tile = new Tile(x, y);
+        @Nullable ImageView tileView = tileViews.remove(tile);
+        if (tileView == null) {
+          tileView = new ImageView(tileCache.getUnchecked(tile));
+          tileView.relocate(x * TILE_SIZE, y * TILE_SIZE);
+          tilesPane.getChildren().add(tileView);
+        }
+        visibleTiles.put(tile, tileView);
+      }
+    }
+    tilesPane.getChildren().removeAll(tileViews.values());
+    tileViews.clear();
+    tileViews.putAll(visibleTiles);
   }
 
-  private void setCounterLocation(Counter counter, Point2D location) {
-    counter.setTranslateX(0);
-    counter.setTranslateY(0);
-    counter.relocate(
-        location.getX() - counter.getLayoutBounds().getCenterX(),
-        location.getY() - counter.getLayoutBounds().getCenterY());
+  /** Puts the counter in the scene graph if it's on the map and overlaps the viewport. */
+  private void updateCounterVisibility(Counter counter) {
+    boolean visible =
+        counters.contains(counter)
+            && counter.getBoundsInParent().intersects(
+                viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight());
+    if (visible && counter.getParent() == null) {
+      countersPane.getChildren().add(counter);
+    } else if (!visible && counter.getParent() != null) {
+      countersPane.getChildren().remove(counter);
+    }
+  }
+
+  /** Returns the number of nodes in the tree rooted at the node, counting the node itself. */
+  private static int countNodes(Node node) {
+    int count = 1;
+    if (node instanceof Parent parent) {
+      for (Node child : parent.getChildrenUnmodifiable()) {
+        count += countNodes(child);
+      }
+    }
+    return count;
+  }
+
+  /** Snapshots the hexes and labels that overlap the tile. */
+  private static Image renderTile(MapUtils mapUtils, double mapWidth, double mapHeight, Tile tile) {
+    Rectangle2D bounds =
+        new Rectangle2D(
+            tile.x() * TILE_SIZE,
+            tile.y() * TILE_SIZE,
+            Math.min(TILE_SIZE, mapWidth - tile.x() * TILE_SIZE),
+            Math.min(TILE_SIZE, mapHeight - tile.y() * TILE_SIZE));
+    Pane tilePane = new Pane();
+    tilePane.setBackground(
+        new Background(new BackgroundFill(Color.BLACK, CornerRadii.EMPTY, Insets.EMPTY)));
+    for (Point position : mapUtils.getHexesOverlapping(bounds)) {
+      Polygon hexagon = mapUtils.getHexagon(position);
+      hexagon.setStroke(Color.WHITE);
+      tilePane.getChildren().add(hexagon);
+      Point2D labelPos = mapUtils.getHexLabelPosition(position);
+      Text text = new Text(labelPos.getX(), labelPos.getY(), position.x() + "," + position.y());
+      text.setTextOrigin(VPos.TOP);
+      text.setStroke(Color.WHITE);
+      tilePane.getChildren().add(text);
+    }
+    tilePane.layout();
+
+    SnapshotParameters params = new SnapshotParameters();
+    params.setFill(Color.BLACK);
+    params.setViewport(bounds);
+    return tilePane.snapshot(params, null);
   }
 
   public static MapPane create(
-      MapUtils mapUtils, MapModel model, SequentialExecutor sequentialAnimationExecutor) {
-    MapPane mapPane = new MapPane(mapUtils, sequentialAnimationExecutor);
+      MapUtils mapUtils,
+      MapModel model,
+      ViewResources viewResources,
+      SequentialExecutor sequentialAnimationExecutor) {
+    MapPane mapPane = new MapPane(mapUtils, viewResources, sequentialAnimationExecutor);
     // Not sure why I need this but without it, one line of background shows through at the bottom.
     mapPane.setBackground(
         new Background(new BackgroundFill(Color.BLACK, CornerRadii.EMPTY, Insets.EMPTY)));
 
-    Node mapCanvas = buildMapCanvas(mapUtils, MAP_WIDTH, MAP_HEIGHT);
+    Pane tilesPane = mapPane.tilesPane;
+    tilesPane.setMinSize(mapPane.mapWidth, mapPane.mapHeight);
+    tilesPane.setPrefSize(mapPane.mapWidth, mapPane.mapHeight);
     Pane countersPane = mapPane.countersPane;
     ControllerPane controllerPane = new ControllerPane(model, mapUtils);
-    mapPane.getChildren().addAll(mapCanvas, countersPane, controllerPane);
+    mapPane.getChildren().addAll(tilesPane, countersPane, controllerPane);
+    mapPane.showVisibleTiles();
 
-    controllerPane.setOnMouseClicked(controllerPane::onMouseClicked);
+    // A click on the map skips any animations still queued, so the selection shows at once.
+    controllerPane.setOnMouseClicked(
+        event -> {
+          sequentialAnimationExecutor.cancelAnimations();
+          controllerPane.onMouseClicked(event);
+        });
+    controllerPane.setOnMouseMoved(controllerPane::onMouseMoved);
 
     return mapPane;
   }
 
-  public static Node buildMapCanvas(MapUtils mapUtils, int width, int height) {
-    Pane mapCanvas = new Pane();
-
-    mapCanvas.setBackground(
-        new Background(new BackgroundFill(Color.BLACK, CornerRadii.EMPTY, Insets.EMPTY)));
-
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        Point position = new Point(i, j);
-        Polygon hexagon = mapUtils.getHexagon(position);
-        hexagon.setStroke(Color.WHITE);
-        mapCanvas.getChildren().add(hexagon);
-        Point2D labelPos = mapUtils.getHexLabelPosition(position);
-        Text text = new Text(labelPos.getX(), labelPos.getY(), position.x() + "," + position.y());
-        text.setTextOrigin(VPos.TOP);
-        text.setStroke(Color.WHITE);
-        mapCanvas.getChildren().add(text);
-      }
-    }
-    mapCanvas.layout();
-
-    SnapshotParameters params = new SnapshotParameters();
-    params.setFill(Color.BLACK);
-    params.setViewport(
+  private MapPane(
+      MapUtils mapUtils,
+      ViewResources viewResources,
+      SequentialExecutor sequentialExecutor) {
+    this.mapUtils = mapUtils;
+    this.viewResources = viewResources;
+    this.countersPane = new Pane();
+    this.sequentialExecutor = sequentialExecutor;
+    this.movePlayback = new MovePlayback<>(sequentialExecutor, new CounterAnimator());
+    double width =
+        mapUtils.getMapWidth() * mapUtils.getColumnWidth()
+            + (2.0 * mapUtils.getHexRadius() - mapUtils.getColumnWidth());
+    double height = (mapUtils.getMapHeight() + .5) * 2.0 * mapUtils.getMinorRadius();
+    this.mapWidth = width;
+    this.mapHeight = height;
+    this.tileCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(TILE_CACHE_SIZE)
+            .build(CacheLoader.from(tile -> renderTile(mapUtils, width, height, tile)));
+    this.tilesPane = new Pane();
+    this.dashAnimation =
+        new Timeline(
+            new KeyFrame(Duration.ZERO, new KeyValue(dashOffset, 20, Interpolator.LINEAR)),
+            new KeyFrame(Duration.seconds(2), new KeyValue(dashOffset, 0, Interpolator.LINEAR)));
+    dashAnimation.setCycleCount(Timeline.INDEFINITE);
+    // Until a scroll pane reports its viewport, assume one of the usual size in the top left.
+    this.viewport =
         new Rectangle2D(
             0,
             0,
-            MAP_WIDTH * mapUtils.getColumnWidth() + (2.0 * HEX_RADIUS - mapUtils.getColumnWidth()),
-            (MAP_HEIGHT + .5) * 2.0 * mapUtils.getMinorRadius()));
-    return new ImageView(mapCanvas.snapshot(params, null));
+            Math.min(width, UI_COMPONENT_LARGE_WIDTH),
+            Math.min(height, UI_COMPONENT_LARGE_HEIGHT));
   }
 
-  private MapPane(MapUtils mapUtils, SequentialExecutor sequentialExecutor) {
-    this.mapUtils = mapUtils;
-    this.countersPane = new Pane();
-    this.sequentialExecutor = sequentialExecutor;
-  }
+  /** Highlight polygons are built around this hex and moved into place. */
+  private static final Point HIGHLIGHT_ORIGIN = new Point(0, 0);
+  private static final int MAX_POOLED_HIGHLIGHTS = 256;
+  /** The side of a grid tile, in pixels. */
+  private static final double TILE_SIZE = 512.0;
+  /** At four bytes a pixel, the cache holds at most 48 MB of tiles. */
+  private static final int TILE_CACHE_SIZE = 48;
 
+  // The counters on the map, whether or not they're in the viewport.
+  private final Set<Counter> counters = Sets.newHashSet();
   private final Pane countersPane;
+  // Runs only while highlights are shown; every highlight's dash offset is bound to dashOffset.
+  private final Timeline dashAnimation;
+  private final DoubleProperty dashOffset = new SimpleDoubleProperty();
+  private final Deque<Polygon> highlightPool = new ArrayDeque<>();
+  private final double mapHeight;
   private final MapUtils mapUtils;
-  private final Set<Shape> selectedHexes = Sets.newHashSet();
+  private final double mapWidth;
+  private final MovePlayback<Counter> movePlayback;
+  private final Set<Polygon> pathHexes = Sets.newHashSet();
+  private final Set<Polygon> selectedHexes = Sets.newHashSet();
   private final SequentialExecutor sequentialExecutor;
-  private final Set<Shape> targetHexes = Sets.newHashSet();
+  private final Set<Polygon> targetHexes = Sets.newHashSet();
+  private final LoadingCache<Tile, Image> tileCache;
+  private final Map<Tile, ImageView> tileViews = Maps.newHashMap();
+  private final Pane tilesPane;
+  private final Map<Unit, Counter> unitCounters = Maps.newHashMap();
+  private UnitListener unitListener = new UnitListener() {};
+  private final ViewResources viewResources;
+  private Rectangle2D viewport;
+
+  /** Moves counter nodes with node transitions, bringing them into the scene graph as needed. */
+  private final class CounterAnimator implements MovePlayback.Animator<Counter> {
+    @Override
+    public Animation buildMoveAnimation(
+        Counter counter, MapPosition startMapPos, MapPosition endMapPos, Duration duration) {
+      if (isInViewport(startMapPos.position()) || isInViewport(endMapPos.position())) {
+        if (counter.getParent() == null) {
+          countersPane.getChildren().add(counter);
+        }
+      }
+      ParallelTransition parallelTransition = new ParallelTransition(counter);
+      parallelTransition.setOnFinished(event -> updateCounterVisibility(counter));
+
+      Point2D startPos = mapUtils.getHexCenter(startMapPos.position());
+      Point2D endPos = mapUtils.getHexCenter(endMapPos.position());
+      if (!startPos.equals(endPos)) {
+        Path path = new Path();
+        path.getElements()
+            .add(
+                new MoveTo(
+                    counter.getLayoutBounds().getCenterX(),
+                    counter.getLayoutBounds().getCenterY()));
+        path.getElements()
+            .add(
+                new LineTo(
+                    endPos.getX() - startPos.getX() + counter.getLayoutBounds().getCenterX(),
+                    endPos.getY() - startPos.getY() + counter.getLayoutBounds().getCenterY()));
+        PathTransition pathTransition = new PathTransition(duration, path);
+        pathTransition.setOrientation(PathTransition.OrientationType.NONE);
+        pathTransition.setOnFinished(event -> setCounterLocation(counter, endPos));
+        parallelTransition.getChildren().add(pathTransition);
+      }
+
+      if (!startMapPos.direction().equals(endMapPos.direction())) {
+        RotateTransition rotateTransition = new RotateTransition(duration);
+        rotateTransition.setFromAngle(60.0 * startMapPos.direction().getDirection());
+        rotateTransition.setToAngle(
+            MovePlayback.getClosestAngle(startMapPos.direction(), endMapPos.direction()));
+        rotateTransition.setByAngle(5);
+        rotateTransition.setOnFinished(
+            event -> counter.setRotate(60 * endMapPos.direction().getDirection()));
+        parallelTransition.getChildren().add(rotateTransition);
+      }
+      return parallelTransition;
+    }
+
+    @Override
+    public void place(Counter counter, MapPosition position) {
+      setCounterLocation(counter, mapUtils.getHexCenter(position.position()));
+      counter.setRotate(60 * position.direction().getDirection());
+      updateCounterVisibility(counter);
+    }
+
+    private static void setCounterLocation(Counter counter, Point2D location) {
+      counter.setTranslateX(0);
+      counter.setTranslateY(0);
+      counter.relocate(
+          location.getX() - counter.getLayoutBounds().getCenterX(),
+          location.getY() - counter.getLayoutBounds().getCenterY());
+    }
+  }
+
+  private record Tile(int x, int y) {}
 }
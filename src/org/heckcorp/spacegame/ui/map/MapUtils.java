@@ -1,15 +1,21 @@
 package org.heckcorp.spacegame.ui.map;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.shape.Polygon;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.heckcorp.spacegame.Constants;
 import org.heckcorp.spacegame.model.Direction;
 import org.heckcorp.spacegame.model.MapPosition;
 
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static org.heckcorp.spacegame.Constants.MAP_HEIGHT;
 import static org.heckcorp.spacegame.Constants.MAP_WIDTH;
@@ -17,45 +23,13 @@ import static org.heckcorp.spacegame.Constants.MAP_WIDTH;
 public class MapUtils {
 
   public int distance(Point p1, Point p2) {
-    int distance;
-
-    if (p1 == p2) {
-      distance = 0;
-    } else if (p1.x() == p2.x()) {
-      distance = p1.y() - p2.y();
-    } else {
-      // even->odd 0/+1
-      // odd-even -1/0
-
-      int xDiff = Math.abs(p1.x() - p2.x());
-
-      int minMod = xDiff-1;
-      int maxMod = xDiff-1;
-
-      if (p1.x() % 2 == 0 && p2.x() % 2 != 0) {
-        minMod = minMod - 1;
-      } else if (p1.x() % 2 != 0 && p2.x() % 2 == 0) {
-        maxMod = maxMod - 1;
-      }
-
-      // By moving diagonally, we can move from p1.y() to between
-      // p1.y()-minMod and p1.y()+maxMod.
-      int minY = p1.y() - minMod;
-      int maxY = p1.y() + maxMod;
-      int yDiff = 0;
-
-      if (p2.y() < minY || p2.y() > maxY) {
-        yDiff = Math.min(Math.abs(minY - p2.y()), Math.abs(maxY - p2.y()));
-      }
-
-      distance = xDiff + yDiff;
-    }
-
-    if (distance < 0) {
-      distance = distance * -1;
-    }
+    return distance(p1.x(), p1.y(), p2.x(), p2.y());
+  }
 
-    return distance;
+  /** Returns the distance between two hexes, from the offset table if this map has one. */
+  public int distance(int x1, int y1, int x2, int y2) {
+    @Nullable HexOffsetTable table = getOffsetTable();
+    return table == null ? HexMath.distance(x1, y1, x2, y2) : table.distance(x1, y1, x2, y2);
   }
 
   public Point getAdjacentHex(MapPosition mapPosition) {
@@ -63,14 +37,9 @@ public class MapUtils {
   }
 
   public Point getAdjacentHex(Point pos, Direction direction) {
-    return switch(direction) {
-      case NORTH -> new Point(pos.x(), pos.y() - 1);
-      case NORTHEAST -> new Point(pos.x() + 1, pos.x() % 2 != 0 ? pos.y() : pos.y() - 1);
-      case SOUTHEAST -> new Point(pos.x() + 1, pos.x() % 2 != 0 ? pos.y() + 1 : pos.y());
-      case SOUTH -> new Point(pos.x(), pos.y() + 1);
-      case SOUTHWEST -> new Point(pos.x() - 1, pos.x() % 2 != 0 ? pos.y() + 1 : pos.y());
-      case NORTHWEST -> new Point(pos.x() - 1, pos.x() % 2 != 0 ? pos.y() : pos.y() - 1);
-    };
+    return new Point(
+        HexMath.neighborX(pos.x(), direction.getDirection()),
+        HexMath.neighborY(pos.x(), pos.y(), direction.getDirection()));
   }
 
   public double getColumnWidth() {
@@ -109,13 +78,15 @@ public class MapUtils {
     return new Point(closest.x(), closest.y());
   }
 
+  /**
+   * Returns the direction from the source hex to the destination; see {@link HexMath#direction}.
+   * Uses the offset table if this map has one.
+   */
   public int getHexDirection(Point source, Point destination) {
-    Point2D sourceCenter = getHexCenter(source);
-    Point2D destinationCenter = getHexCenter(destination);
-    double x = destinationCenter.getX() - sourceCenter.getX();
-    double y = sourceCenter.getY() - destinationCenter.getY();
-    double angle = 90 + 30 - Math.toDegrees(Math.atan2(y, x));
-    return (int) angle / 60;
+    @Nullable HexOffsetTable table = getOffsetTable();
+    return table == null
+        ? HexMath.direction(source.x(), source.y(), destination.x(), destination.y())
+        : table.direction(source.x(), source.y(), destination.x(), destination.y());
   }
 
   public Polygon getHexagon(Point hexCoordinates) {
@@ -137,33 +108,99 @@ public class MapUtils {
             center.getY());
   }
 
+  /**
+   * Returns the hexes inside the map whose outlines overlap the rectangle, a column at a time. Hex
+   * (x, y) spans columnWidth * x to columnWidth * x + 2 * hexRadius across, and starts
+   * 2 * minorRadius * y down, half a hex lower in odd columns.
+   */
+  public List<Point> getHexesOverlapping(Rectangle2D area) {
+    double rowHeight = 2.0 * getMinorRadius();
+    int minColumn =
+        Math.max(0, (int) Math.floor((area.getMinX() - 2.0 * hexRadius) / getColumnWidth()));
+    int maxColumn = Math.min(mapWidth - 1, (int) Math.floor(area.getMaxX() / getColumnWidth()));
+    int minRow = Math.max(0, (int) Math.floor(area.getMinY() / rowHeight) - 1);
+    int maxRow = Math.min(mapHeight - 1, (int) Math.floor(area.getMaxY() / rowHeight));
+    List<Point> hexes = Lists.newArrayList();
+    for (int x = minColumn; x <= maxColumn; x++) {
+      for (int y = minRow; y <= maxRow; y++) {
+        hexes.add(new Point(x, y));
+      }
+    }
+    return hexes;
+  }
+
+  public double getHexRadius() {
+    return hexRadius;
+  }
+
+  public int getMapHeight() {
+    return mapHeight;
+  }
+
+  public int getMapWidth() {
+    return mapWidth;
+  }
+
   public double getMinorRadius() {
     return hexRadius * Math.sqrt(3.0) / 2.0;
   }
 
   public Set<Point> getTargetHexes(MapPosition unitPosition) {
-    Point hexInFront = getAdjacentHex(unitPosition);
-    ImmutableSet<Direction> directions =
-        ImmutableSet.of(
-            unitPosition.direction().left(),
-            unitPosition.direction(),
-            unitPosition.direction().right());
-    Set<Point> targetHexes = Sets.newHashSet();
-    Set<Point> hexes = Sets.newHashSet(hexInFront);
-    for (int i = 0; i < Constants.WEAPON_RANGE; i++) {
-      targetHexes.addAll(hexes);
-      Set<Point> newHexes =
-          hexes.stream()
-              .flatMap(p -> directions.stream().map(d -> getAdjacentHex(p, d)))
-              .collect(Collectors.toSet());
-      hexes.clear();
-      hexes = newHexes;
+    return getTargetHexes(unitPosition, Constants.WEAPON_RANGE);
+  }
+
+  /**
+   * Returns the hexes a unit at the given position can fire on. Results are cached per position
+   * and range; see {@link #getTargetHexCacheStats()}.
+   */
+  public Set<Point> getTargetHexes(MapPosition unitPosition, int weaponRange) {
+    return targetHexCache.getUnchecked(new TargetHexKey(unitPosition, weaponRange));
+  }
+
+  public CacheStats getTargetHexCacheStats() {
+    return targetHexCache.stats();
+  }
+
+  /** Returns whether distances and directions come from an offset table rather than arithmetic. */
+  public boolean hasOffsetTable() {
+    return useOffsetTable;
+  }
+
+  private static ImmutableSet<Point> computeTargetHexes(
+      FiringArcTable firingArcTable, int mapWidth, int mapHeight, TargetHexKey key) {
+    Point position = key.unitPosition().position();
+    int[] offsets =
+        firingArcTable.getOffsets(position.x() & 1, key.unitPosition().direction(), key.range());
+    ImmutableSet.Builder<Point> targetHexes = ImmutableSet.builder();
+    for (int i = 0; i < offsets.length; i += 2) {
+      int x = position.x() + offsets[i];
+      int y = position.y() + offsets[i + 1];
+      if (x >= 0 && x < mapWidth && y >= 0 && y < mapHeight) {
+        targetHexes.add(new Point(x, y));
+      }
     }
-    return targetHexes.stream().filter(this::isInsideMap).collect(Collectors.toSet());
+    return targetHexes.build();
   }
 
   public boolean isInsideMap(Point point) {
-    return point.x() >= 0 && point.x() < MAP_WIDTH && point.y() >= 0 && point.y() < MAP_HEIGHT;
+    return point.x() >= 0 && point.x() < mapWidth && point.y() >= 0 && point.y() < mapHeight;
+  }
+
+  /**
+   * Returns the offset table, building it on first use, or null if this map doesn't use one. Two
+   * threads may both build it; either table will do, and its fields are final, so it's safely
+   * published without a lock.
+   */
+  private @Nullable HexOffsetTable getOffsetTable() {
+    if (!useOffsetTable) {
+      return null;
+    }
+    @Nullable HexOffsetTable table = offsetTable;
+    if (table == null) {
+      table = HexOffsetTable.create(mapWidth, mapHeight);
+      offsetTable = table;
+    }
+    return table;
   }
 
   /** Returns three sets of canvas coordinates, one of which corresponds to the clicked-on hex. */
@@ -182,8 +219,42 @@ public class MapUtils {
   }
 
   public MapUtils(double hexRadius) {
+    this(hexRadius, MAP_WIDTH, MAP_HEIGHT);
+  }
+
+  public MapUtils(double hexRadius, int mapWidth, int mapHeight) {
+    this(hexRadius, mapWidth, mapHeight, Constants.HEX_OFFSET_TABLE_BUDGET_BYTES);
+  }
+
+  /**
+   * Creates map utilities that look up distances and directions in an offset table, built on first
+   * use, if the table for this map takes no more than the given number of bytes. Otherwise they
+   * are computed on the fly; a budget of 0 turns the table off.
+   */
+  public MapUtils(double hexRadius, int mapWidth, int mapHeight, long offsetTableBudgetBytes) {
     this.hexRadius = hexRadius;
+    this.mapWidth = mapWidth;
+    this.mapHeight = mapHeight;
+    FiringArcTable firingArcTable = new FiringArcTable();
+    this.targetHexCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(TARGET_HEX_CACHE_SIZE)
+            .recordStats()
+            .build(
+                CacheLoader.from(
+                    key -> computeTargetHexes(firingArcTable, mapWidth, mapHeight, key)));
+    this.useOffsetTable =
+        HexOffsetTable.getSizeBytes(mapWidth, mapHeight) <= offsetTableBudgetBytes;
   }
 
   private final double hexRadius;
+  private final int mapHeight;
+  private final int mapWidth;
+  private @Nullable HexOffsetTable offsetTable;
+  private final LoadingCache<TargetHexKey, ImmutableSet<Point>> targetHexCache;
+  private final boolean useOffsetTable;
+
+  private static final int TARGET_HEX_CACHE_SIZE = 4096;
+
+  private record TargetHexKey(MapPosition unitPosition, int range) {}
 }
@@ -0,0 +1,97 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.ImmutableSet;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.Region;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Unit;
+
+/**
+ * Displays the map with its unit counters and highlighted hexes. Changes are queued on the
+ * sequential executor, so they show in order with the move animations. Only the part of the map
+ * in the viewport is drawn.
+ */
+public interface MapView {
+  void addUnit(Unit unit, MapPosition position);
+
+  /** Returns the region to put in the scene. */
+  Region asRegion();
+
+  /** Returns how many animations the view is running itself, besides those it has queued. */
+  int getAnimationCount();
+
+  /** Returns how many nodes draw the counters and highlighted hexes. */
+  int getNodeCount();
+
+  void moveUnit(Unit unit, MapPosition startMapPos, MapPosition endMapPos);
+
+  void removeUnit(Unit unit);
+
+  void selectHex(Point hexCoordinates);
+
+  /** Sets how moves are animated during computer players' turns. */
+  void setComputerPlaybackMode(PlaybackMode computerPlaybackMode);
+
+  void setComputerTurn(boolean computerTurn);
+
+  /** Shows the path the selected unit would take, as a set of hexes; an empty set hides it. */
+  void setPathHexes(ImmutableSet<? extends Point> hexes);
+
+  void setTargetHexes(ImmutableSet<? extends Point> hexes);
+
+  /** Sets what hears about the units as the map shows them; see {@link UnitListener}. */
+  void setUnitListener(UnitListener unitListener);
+
+  /**
+   * Sets the part of the map that is visible, in the coordinates of {@link #asRegion()}. Called on
+   * the FX thread.
+   */
+  void setViewport(Rectangle2D viewport);
+
+  void unselectHex();
+
+  /**
+   * Returns the part of the region that the scroll pane shows, in the region's coordinates. The
+   * region must be the scroll pane's content.
+   */
+  static Rectangle2D getViewport(ScrollPane scrollPane, Region region) {
+    Bounds viewportBounds = scrollPane.getViewportBounds();
+    double x =
+        getScrollFraction(scrollPane.getHvalue(), scrollPane.getHmin(), scrollPane.getHmax())
+            * Math.max(0, region.getWidth() - viewportBounds.getWidth());
+    double y =
+        getScrollFraction(scrollPane.getVvalue(), scrollPane.getVmin(), scrollPane.getVmax())
+            * Math.max(0, region.getHeight() - viewportBounds.getHeight());
+    return new Rectangle2D(x, y, viewportBounds.getWidth(), viewportBounds.getHeight());
+  }
+
+  /** Keeps the map view's viewport up to date as the scroll pane holding it scrolls or resizes. */
+  static void trackViewport(ScrollPane scrollPane, MapView mapView) {
+    InvalidationListener listener =
+        observable -> mapView.setViewport(getViewport(scrollPane, mapView.asRegion()));
+    scrollPane.hvalueProperty().addListener(listener);
+    scrollPane.vvalueProperty().addListener(listener);
+    scrollPane.viewportBoundsProperty().addListener(listener);
+  }
+
+  private static double getScrollFraction(double value, double min, double max) {
+    return max > min ? (value - min) / (max - min) : 0;
+  }
+
+  /**
+   * Hears about units as the map shows them, on the FX thread: additions and removals in their
+   * steps on the sequential executor, and moves once their animations have played. Following the
+   * map this way keeps other views in step with it without queueing steps of their own, which
+   * would come between the map's animations and stop them being merged.
+   */
+  interface UnitListener {
+    default void unitShown(Unit unit, MapPosition position) {}
+
+    default void unitMoved(Unit unit, MapPosition from, MapPosition to) {}
+
+    default void unitHidden(Unit unit) {}
+  }
+}
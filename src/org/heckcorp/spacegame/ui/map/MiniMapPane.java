@@ -0,0 +1,227 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.model.MapPosition;
+import org.heckcorp.spacegame.model.Player;
+import org.heckcorp.spacegame.model.Unit;
+
+import java.util.Map;
+
+/**
+ * Shows which player holds each part of the map, at one pixel or less per hex, with the main map's
+ * viewport outlined. Clicking it centres the main map on the clicked hex.
+ *
+ * <p>The minimap is never redrawn as a whole. It keeps a count of each player's units under every
+ * pixel, so a unit added, moved or removed repaints at most two pixels, however big the map is.
+ * It follows the main map as a {@link MapView.UnitListener}, so changes show in step with the
+ * map's animations.
+ */
+public class MiniMapPane extends Pane implements MapView.UnitListener {
+  @Override
+  public void unitShown(Unit unit, MapPosition position) {
+    unitHexes.put(unit, position.position());
+    updatePixel(position.position(), getOwnerIndex(unit), 1);
+  }
+
+  @Override
+  public void unitMoved(Unit unit, MapPosition from, MapPosition to) {
+    @Nullable Point fromHex = unitHexes.get(unit);
+    if (fromHex == null || fromHex.equals(to.position())) {
+      return;
+    }
+    unitHexes.put(unit, to.position());
+    int owner = getOwnerIndex(unit);
+    updatePixel(fromHex, owner, -1);
+    updatePixel(to.position(), owner, 1);
+  }
+
+  @Override
+  public void unitHidden(Unit unit) {
+    @Nullable Point hex = unitHexes.remove(unit);
+    if (hex != null) {
+      updatePixel(hex, getOwnerIndex(unit), -1);
+    }
+  }
+
+  private int getOwnerIndex(Unit unit) {
+    return players.indexOf(unit.getOwner());
+  }
+
+  /** Scrolls the main map so the clicked hex is in the middle of its viewport. */
+  private void onMouseClicked(MouseEvent event) {
+    int mapWidth = mapUtils.getMapWidth();
+    int mapHeight = mapUtils.getMapHeight();
+    Point hex =
+        new Point(
+            (int) Math.min(mapWidth - 1, event.getX() * mapWidth / width),
+            (int) Math.min(mapHeight - 1, event.getY() * mapHeight / height));
+    Point2D center = mapUtils.getHexCenter(hex);
+    Bounds viewportBounds = mapScrollPane.getViewportBounds();
+    double scrollableWidth = mapRegion.getWidth() - viewportBounds.getWidth();
+    double scrollableHeight = mapRegion.getHeight() - viewportBounds.getHeight();
+    if (scrollableWidth > 0) {
+      double fraction = (center.getX() - viewportBounds.getWidth() / 2) / scrollableWidth;
+      mapScrollPane.setHvalue(
+          mapScrollPane.getHmin()
+              + clamp(fraction) * (mapScrollPane.getHmax() - mapScrollPane.getHmin()));
+    }
+    if (scrollableHeight > 0) {
+      double fraction = (center.getY() - viewportBounds.getHeight() / 2) / scrollableHeight;
+      mapScrollPane.setVvalue(
+          mapScrollPane.getVmin()
+              + clamp(fraction) * (mapScrollPane.getVmax() - mapScrollPane.getVmin()));
+    }
+  }
+
+  /** Adjusts the owner's unit count under the hex's pixel and repaints that pixel. */
+  private void updatePixel(Point hex, int owner, int delta) {
+    int pixelX = hex.x() * imageWidth / mapUtils.getMapWidth();
+    int pixelY = hex.y() * imageHeight / mapUtils.getMapHeight();
+    int pixel = pixelY * imageWidth + pixelX;
+    int base = pixel * players.size();
+    ownerCounts[base + owner] += delta;
+    int argb = EMPTY_ARGB;
+    int mostUnits = 0;
+    for (int i = 0; i < players.size(); i++) {
+      if (ownerCounts[base + i] > mostUnits) {
+        mostUnits = ownerCounts[base + i];
+        argb = playerArgbs[i];
+      }
+    }
+    pixelWriter.setArgb(pixelX, pixelY, argb);
+  }
+
+  /** Outlines the part of the map the main map's viewport shows. */
+  private void updateViewportOutline() {
+    Rectangle2D viewport = MapView.getViewport(mapScrollPane, mapRegion);
+    double scaleX = width / (mapUtils.getMapWidth() * mapUtils.getColumnWidth());
+    double scaleY = height / (mapUtils.getMapHeight() * 2.0 * mapUtils.getMinorRadius());
+    viewportOutline.setX(viewport.getMinX() * scaleX);
+    viewportOutline.setY(viewport.getMinY() * scaleY);
+    viewportOutline.setWidth(Math.min(width, viewport.getWidth() * scaleX));
+    viewportOutline.setHeight(Math.min(height, viewport.getHeight() * scaleY));
+  }
+
+  private static double clamp(double fraction) {
+    return Math.max(0, Math.min(1, fraction));
+  }
+
+  private static int toArgb(Player.Color color) {
+    return 0xff000000
+        | (int) Math.round(color.r() * 255) << 16
+        | (int) Math.round(color.g() * 255) << 8
+        | (int) Math.round(color.b() * 255);
+  }
+
+  /**
+   * Creates a minimap of the given size for the map shown by the region in the scroll pane. Maps
+   * with fewer hexes than pixels get a pixel per hex, scaled up to fill the minimap.
+   */
+  public static MiniMapPane create(
+      MapUtils mapUtils,
+      ImmutableList<Player> players,
+      ScrollPane mapScrollPane,
+      Region mapRegion,
+      double width,
+      double height) {
+    int imageWidth = (int) Math.min(mapUtils.getMapWidth(), width);
+    int imageHeight = (int) Math.min(mapUtils.getMapHeight(), height);
+    WritableImage image = new WritableImage(imageWidth, imageHeight);
+    PixelWriter pixelWriter = image.getPixelWriter();
+    for (int x = 0; x < imageWidth; x++) {
+      for (int y = 0; y < imageHeight; y++) {
+        pixelWriter.setArgb(x, y, EMPTY_ARGB);
+      }
+    }
+    int[] playerArgbs = players.stream().mapToInt(player -> toArgb(player.getColor())).toArray();
+    MiniMapPane miniMapPane =
+        new MiniMapPane(
+            mapUtils,
+            players,
+            playerArgbs,
+            mapScrollPane,
+            mapRegion,
+            pixelWriter,
+            new int[imageWidth * imageHeight * players.size()],
+            imageWidth,
+            imageHeight,
+            width,
+            height);
+
+    ImageView imageView = new ImageView(image);
+    imageView.setFitWidth(width);
+    imageView.setFitHeight(height);
+    imageView.setSmooth(false);
+    Rectangle viewportOutline = miniMapPane.viewportOutline;
+    viewportOutline.setFill(Color.TRANSPARENT);
+    viewportOutline.setStroke(Color.WHITE);
+    viewportOutline.setMouseTransparent(true);
+    miniMapPane.getChildren().addAll(imageView, viewportOutline);
+    miniMapPane.setPrefSize(width, height);
+    miniMapPane.setOnMouseClicked(miniMapPane::onMouseClicked);
+
+    InvalidationListener viewportListener = observable -> miniMapPane.updateViewportOutline();
+    mapScrollPane.hvalueProperty().addListener(viewportListener);
+    mapScrollPane.vvalueProperty().addListener(viewportListener);
+    mapScrollPane.viewportBoundsProperty().addListener(viewportListener);
+    return miniMapPane;
+  }
+
+  private MiniMapPane(
+      MapUtils mapUtils,
+      ImmutableList<Player> players,
+      int[] playerArgbs,
+      ScrollPane mapScrollPane,
+      Region mapRegion,
+      PixelWriter pixelWriter,
+      int[] ownerCounts,
+      int imageWidth,
+      int imageHeight,
+      double width,
+      double height) {
+    this.mapUtils = mapUtils;
+    this.players = players;
+    this.playerArgbs = playerArgbs;
+    this.mapScrollPane = mapScrollPane;
+    this.mapRegion = mapRegion;
+    this.pixelWriter = pixelWriter;
+    this.ownerCounts = ownerCounts;
+    this.imageWidth = imageWidth;
+    this.imageHeight = imageHeight;
+    this.width = width;
+    this.height = height;
+  }
+
+  private static final int EMPTY_ARGB = 0xff000000;
+
+  private final double height;
+  private final int imageHeight;
+  private final int imageWidth;
+  private final Region mapRegion;
+  private final ScrollPane mapScrollPane;
+  private final MapUtils mapUtils;
+  // For each pixel, row by row, the number of units each player has there.
+  private final int[] ownerCounts;
+  private final PixelWriter pixelWriter;
+  private final int[] playerArgbs;
+  private final ImmutableList<Player> players;
+  // Where each unit is shown; only touched on the FX thread.
+  private final Map<Unit, Point> unitHexes = Maps.newHashMap();
+  private final Rectangle viewportOutline = new Rectangle(0, 0);
+  private final double width;
+}
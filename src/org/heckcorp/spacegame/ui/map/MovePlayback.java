@@ -0,0 +1,175 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import javafx.animation.Animation;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.util.Duration;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.SequentialExecutor;
+import org.heckcorp.spacegame.model.Direction;
+import org.heckcorp.spacegame.model.MapPosition;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.heckcorp.spacegame.Constants.ANIMATION_DURATION;
+import static org.heckcorp.spacegame.Constants.COMPUTER_PLAYBACK_MODE;
+
+/**
+ * Queues counter moves on the sequential executor according to the playback mode, for either map
+ * renderer. Move animations are built only when the counter's earlier moves have played; a move
+ * is dropped if the counter by then isn't where the move starts, as when it has been removed.
+ * Only used on the FX thread.
+ *
+ * @param <C> the renderer's counter type.
+ */
+final class MovePlayback<C> {
+  /**
+   * Queues the counter's move. Once the move has been shown, when its animation has played, the
+   * given callback runs; it doesn't if the move is dropped.
+   */
+  void move(C counter, MapPosition startMapPos, MapPosition endMapPos, Runnable onShown) {
+    switch (getPlaybackMode()) {
+      case FULL ->
+          sequentialExecutor.playSequentially(
+              () ->
+                  buildMoveAnimation(
+                      counter, startMapPos, endMapPos, ANIMATION_DURATION, onShown));
+      case ACCELERATED ->
+          sequentialExecutor.playSequentially(
+              () ->
+                  buildMoveAnimation(
+                      counter,
+                      startMapPos,
+                      endMapPos,
+                      ANIMATION_DURATION.divide(ACCELERATED_PLAYBACK_RATE),
+                      onShown));
+      case COLLAPSED -> {
+        @Nullable PendingMove queuedMove = pendingMoves.get(counter);
+        if (queuedMove != null) {
+          queuedMove.end = endMapPos;
+          queuedMove.onShown.add(onShown);
+          return;
+        }
+        PendingMove pendingMove = new PendingMove(startMapPos, endMapPos, onShown);
+        pendingMoves.put(counter, pendingMove);
+        sequentialExecutor.playSequentially(
+            () -> {
+              pendingMoves.remove(counter);
+              return buildMoveAnimation(
+                  counter,
+                  pendingMove.start,
+                  pendingMove.end,
+                  ANIMATION_DURATION,
+                  () -> pendingMove.onShown.forEach(Runnable::run));
+            });
+      }
+      case INSTANT ->
+          sequentialExecutor.runLaterSequentially(
+              () -> {
+                if (counterPositions.containsKey(counter)) {
+                  place(counter, endMapPos);
+                  onShown.run();
+                }
+              });
+    }
+  }
+
+  /** Shows the counter at the position straight away. */
+  void place(C counter, MapPosition position) {
+    counterPositions.put(counter, position);
+    animator.place(counter, position);
+  }
+
+  void remove(C counter) {
+    counterPositions.remove(counter);
+    pendingMoves.remove(counter);
+  }
+
+  void setComputerPlaybackMode(PlaybackMode computerPlaybackMode) {
+    this.computerPlaybackMode = computerPlaybackMode;
+  }
+
+  void setComputerTurn(boolean computerTurn) {
+    this.computerTurn = computerTurn;
+  }
+
+  /** Builds the move's animation, which runs the callback after its own finish handler. */
+  private @Nullable Animation buildMoveAnimation(
+      C counter,
+      MapPosition startMapPos,
+      MapPosition endMapPos,
+      Duration duration,
+      Runnable onShown) {
+    if (!startMapPos.equals(counterPositions.get(counter))) {
+      return null;
+    }
+    counterPositions.put(counter, endMapPos);
+    Animation animation = animator.buildMoveAnimation(counter, startMapPos, endMapPos, duration);
+    @Nullable EventHandler<ActionEvent> onFinished = animation.getOnFinished();
+    animation.setOnFinished(
+        event -> {
+          if (onFinished != null) {
+            onFinished.handle(event);
+          }
+          onShown.run();
+        });
+    return animation;
+  }
+
+  private PlaybackMode getPlaybackMode() {
+    return computerTurn ? computerPlaybackMode : PlaybackMode.FULL;
+  }
+
+  /** Returns the angle to rotate a counter to, so that it turns the short way round. */
+  static double getClosestAngle(Direction startDirection, Direction endDirection) {
+    double startAngle = 60.0 * startDirection.getDirection();
+    double endAngle = 60.0 * endDirection.getDirection();
+    if (endAngle - startAngle > 180.0) {
+      return endAngle - 360.0;
+    } else if (endAngle - startAngle < -180.0) {
+      return endAngle + 360.0;
+    } else {
+      return endAngle;
+    }
+  }
+
+  MovePlayback(SequentialExecutor sequentialExecutor, Animator<C> animator) {
+    this.sequentialExecutor = sequentialExecutor;
+    this.animator = animator;
+  }
+
+  private static final double ACCELERATED_PLAYBACK_RATE = 8.0;
+
+  private final Animator<C> animator;
+  private PlaybackMode computerPlaybackMode = COMPUTER_PLAYBACK_MODE;
+  private boolean computerTurn;
+  // Where each counter is shown once the animations built so far have played.
+  private final Map<C, MapPosition> counterPositions = Maps.newHashMap();
+  private final Map<C, PendingMove> pendingMoves = Maps.newHashMap();
+  private final SequentialExecutor sequentialExecutor;
+
+  /** Draws counters for a renderer. */
+  interface Animator<C> {
+    Animation buildMoveAnimation(
+        C counter, MapPosition startMapPos, MapPosition endMapPos, Duration duration);
+
+    void place(C counter, MapPosition position);
+  }
+
+  /** A collapsed move that hasn't started playing yet, and so can still be extended. */
+  private static class PendingMove {
+    PendingMove(MapPosition start, MapPosition end, Runnable onShown) {
+      this.start = start;
+      this.end = end;
+      this.onShown.add(onShown);
+    }
+
+    MapPosition end;
+    // The callbacks of the moves collapsed into this one, in order.
+    final List<Runnable> onShown = Lists.newArrayList();
+    final MapPosition start;
+  }
+}
@@ -0,0 +1,23 @@
+package org.heckcorp.spacegame.ui.map;
+
+/** How unit moves are animated on the map. */
+public enum PlaybackMode {
+  /** Every move and rotation plays at normal speed. */
+  FULL("Full"),
+  /** Every move and rotation plays, at several times normal speed. */
+  ACCELERATED("Accelerated"),
+  /** Moves queued up behind each other for the same unit play as one move to where it ended. */
+  COLLAPSED("Final Positions"),
+  /** Counters jump straight to their new positions. */
+  INSTANT("Instant");
+
+  public String getLabel() {
+    return label;
+  }
+
+  PlaybackMode(String label) {
+    this.label = label;
+  }
+
+  private final String label;
+}
@@ -4,10 +4,11 @@ import com.google.common.collect.Maps;
 import javafx.scene.image.Image;
 
 import java.io.InputStream;
+import java.io.Serializable;
 import java.util.Map;
 
 public class ViewResources {
-  public record Identifier() {}
+  public record Identifier() implements Serializable {}
 
   public Identifier addImageResource(InputStream inputStream) {
     Identifier identifier = new Identifier();
@@ -0,0 +1,165 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.heckcorp.spacegame.model.TestGames.createEmptyGame;
+import static org.heckcorp.spacegame.model.TestGames.createUnit;
+import static org.heckcorp.spacegame.model.TestGames.describe;
+import static org.heckcorp.spacegame.model.TestGames.imageId;
+import static org.heckcorp.spacegame.model.TestGames.mapUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class GameJournalTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setUp() {
+    snapshotFile = folder.getRoot().toPath().resolve("autosave.sgs");
+    journalFile = folder.getRoot().toPath().resolve("autosave.sgj");
+  }
+
+  @Test
+  public void recoverReplaysEveryCommand() throws IOException {
+    GameState gameState = createGame();
+    try (GameJournal journal = GameJournal.create(gameState, snapshotFile, journalFile)) {
+      playTurns(gameState);
+      gameState.rotateLeft(getUnit(gameState, 1));
+    }
+
+    assertEquals(describe(gameState), describe(recover()));
+  }
+
+  @Test
+  public void recoverStopsBeforePartlyWrittenCommand() throws IOException {
+    GameState gameState = createGame();
+    List<String> beforeLastCommand;
+    try (GameJournal journal = GameJournal.create(gameState, snapshotFile, journalFile)) {
+      playTurns(gameState);
+      beforeLastCommand = describe(gameState);
+      gameState.attack(getUnit(gameState, 0), getUnit(gameState, 1));
+    }
+    // Cut the attack off part way through its defender's index.
+    try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 2);
+    }
+
+    assertEquals(beforeLastCommand, describe(recover()));
+  }
+
+  @Test
+  public void recoverIgnoresJournalAfterDifferentSnapshot() throws IOException {
+    GameState gameState = createGame();
+    try (GameJournal journal = GameJournal.create(gameState, snapshotFile, journalFile)) {
+      playTurns(gameState);
+    }
+    // A snapshot the journal doesn't follow, as if it had been replaced without the journal.
+    GameStateCodec.write(gameState, snapshotFile);
+
+    GameState recovered = recover();
+
+    // Replaying the journal again would have moved the units on from where they are now.
+    assertEquals(describe(gameState), describe(recovered));
+  }
+
+  @Test
+  public void unitIdsFollowCompaction() throws IOException {
+    GameState gameState = createGame();
+    try (GameJournal journal = GameJournal.create(gameState, snapshotFile, journalFile)) {
+      // Destroys the weak unit, which the snapshot will leave out.
+      gameState.attack(getUnit(gameState, 0), getUnit(gameState, WEAK_UNIT));
+      journal.compact();
+      assertEquals(0, journal.getCommandCount());
+      Unit added = createUnit(new UnitStore(1), gameState.getPlayers().get(0));
+      gameState.addUnit(added, new MapPosition(new Point(9, 9), Direction.SOUTH));
+      // The units on either side of the gap the destroyed unit left, and the new one.
+      gameState.rotateRight(getUnit(gameState, WEAK_UNIT - 1));
+      gameState.rotateRight(getUnit(gameState, WEAK_UNIT));
+      gameState.moveForward(added);
+      gameState.attack(added, getUnit(gameState, WEAK_UNIT));
+      gameState.endTurn();
+    }
+
+    GameState recovered = recover();
+
+    assertEquals(describe(gameState), describe(recovered));
+    GameState compacted = GameStateCodec.read(snapshotFile, mapUtils, imageId);
+    assertNotEquals(describe(compacted), describe(recovered));
+  }
+
+  @Test
+  public void recoveredGameIsJournaledInNextSession() throws IOException {
+    GameState gameState = createGame();
+    try (GameJournal journal = GameJournal.create(gameState, snapshotFile, journalFile)) {
+      playTurns(gameState);
+    }
+    // The next session picks the game up where the last one left off, as the game does on launch.
+    GameState nextSession = recover();
+    try (GameJournal journal = GameJournal.create(nextSession, snapshotFile, journalFile)) {
+      playTurns(nextSession);
+    }
+    playTurns(gameState);
+
+    assertEquals(describe(gameState), describe(recover()));
+  }
+
+  private GameState recover() throws IOException {
+    return GameJournal.recover(snapshotFile, journalFile, mapUtils, imageId);
+  }
+
+  /** Moves, turns and attacks with every unit, ending each turn. */
+  private static void playTurns(GameState gameState) {
+    for (int turn = 0; turn < 3; turn++) {
+      for (Unit unit : ImmutableList.copyOf(gameState.getUnits())) {
+        if (unit.getOwner() == gameState.getCurrentPlayer()) {
+          gameState.moveForward(unit);
+          gameState.rotateRight(unit);
+        }
+      }
+      gameState.attack(getUnit(gameState, 0), getUnit(gameState, 1));
+      gameState.endTurn();
+    }
+  }
+
+  private static Unit getUnit(GameState gameState, int index) {
+    return ImmutableList.copyOf(gameState.getUnits()).get(index);
+  }
+
+  /**
+   * Returns a game with a few units for each player, one of them, at {@link #WEAK_UNIT}, with no
+   * armor and one health, so that one attack destroys it.
+   */
+  private static GameState createGame() {
+    GameState gameState = createEmptyGame();
+    ImmutableList<Player> players = gameState.getPlayers();
+    UnitStore unitStore = new UnitStore(UNIT_COUNT);
+    for (int i = 0; i < UNIT_COUNT; i++) {
+      Unit unit = createUnit(unitStore, players.get(i % 2));
+      if (i == WEAK_UNIT) {
+        for (int side = 0; side < UnitStore.SIDES; side++) {
+          unit.setArmor(side, 0);
+        }
+        unit.setHealth(1);
+      }
+      gameState.addUnit(unit, new MapPosition(new Point(2 * i, 5), Direction.NORTH));
+    }
+    return gameState;
+  }
+
+  private static final int UNIT_COUNT = 6;
+  private static final int WEAK_UNIT = 3;
+
+  private Path journalFile;
+  private Path snapshotFile;
+}
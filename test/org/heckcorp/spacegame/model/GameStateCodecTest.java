@@ -0,0 +1,192 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.heckcorp.spacegame.model.TestGames.createEmptyGame;
+import static org.heckcorp.spacegame.model.TestGames.imageId;
+import static org.heckcorp.spacegame.model.TestGames.mapUtils;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+public class GameStateCodecTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTripKeepsPlayersTurnWinnerAndUnits() throws IOException {
+    GameState gameState = createGame();
+    gameState.restoreTurn(gameState.getPlayers().get(1), 7, gameState.getPlayers().get(0));
+
+    GameState loaded = roundTrip(gameState);
+
+    assertSameGame(gameState, loaded);
+  }
+
+  @Test
+  public void roundTripKeepsNoWinner() throws IOException {
+    GameState gameState = createGame();
+
+    GameState loaded = roundTrip(gameState);
+
+    assertNull(loaded.getWinner());
+    assertSameGame(gameState, loaded);
+  }
+
+  @Test
+  public void readRejectsWrongMagic() throws IOException {
+    byte[] bytes = save(createGame());
+    bytes[0] ^= 1;
+
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsUnknownVersion() throws IOException {
+    byte[] bytes = save(createGame());
+    bytes[Integer.BYTES + 1]++;
+
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsOutOfRangePlayerIndex() throws IOException {
+    GameState gameState = createGame();
+    byte[] bytes = save(gameState);
+    // The first unit's owner index comes right after the unit count.
+    int firstUnit = bytes.length - gameState.getUnits().size() * GameStateCodec.UNIT_BYTES;
+    ByteBuffer.wrap(bytes).putInt(firstUnit, gameState.getPlayers().size());
+
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsHugeUnitCountBeforeAllocating() throws IOException {
+    GameState gameState = createGame();
+    byte[] bytes = save(gameState);
+    int unitCount =
+        bytes.length - gameState.getUnits().size() * GameStateCodec.UNIT_BYTES - Integer.BYTES;
+    ByteBuffer.wrap(bytes).putInt(unitCount, HUGE_UNIT_COUNT);
+
+    // Allocating a store for that many units would run out of memory rather than fail to read.
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsHugePlayerCount() throws IOException {
+    byte[] bytes = save(createGame());
+    ByteBuffer.wrap(bytes).putInt(PLAYER_COUNT, Integer.MAX_VALUE);
+
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsNameLongerThanFile() throws IOException {
+    byte[] bytes = save(createGame());
+    ByteBuffer.wrap(bytes).putShort(PLAYER_COUNT + Integer.BYTES, Short.MAX_VALUE);
+
+    assertThrows(IOException.class, () -> read(bytes));
+  }
+
+  @Test
+  public void readRejectsEveryTruncation() throws IOException {
+    byte[] bytes = save(createGame());
+
+    for (int length = 0; length < bytes.length; length++) {
+      byte[] truncated = Arrays.copyOf(bytes, length);
+      assertThrows("Truncated to " + length, IOException.class, () -> read(truncated));
+    }
+  }
+
+  private GameState roundTrip(GameState gameState) throws IOException {
+    Path path = folder.newFile("save.sgs").toPath();
+    GameStateCodec.write(gameState, path);
+    return GameStateCodec.read(path, mapUtils, imageId);
+  }
+
+  private byte[] save(GameState gameState) throws IOException {
+    Path path = folder.newFile("save.sgs").toPath();
+    GameStateCodec.write(gameState, path);
+    return Files.readAllBytes(path);
+  }
+
+  private GameState read(byte[] bytes) throws IOException {
+    return GameStateCodec.read(ByteBuffer.wrap(bytes), mapUtils, imageId);
+  }
+
+  /** Returns a game whose units all have different stats, facings and positions. */
+  private static GameState createGame() {
+    GameState gameState = createEmptyGame();
+    ImmutableList<Player> players = gameState.getPlayers();
+    UnitStore unitStore = new UnitStore(UNIT_COUNT);
+    for (int i = 0; i < UNIT_COUNT; i++) {
+      Unit unit = unitStore.allocate(players.get(i % 2), imageId, 1 + i, 10 + i, 5 + i, 0);
+      unit.setHealth(1 + i);
+      unit.setEnergy(i % 5);
+      for (int side = 0; side < UnitStore.SIDES; side++) {
+        unit.setMaxArmor(side, 10 + i + side);
+        unit.setArmor(side, i + side);
+      }
+      Direction direction = Direction.values()[i % Direction.values().length];
+      gameState.addUnit(unit, new MapPosition(new Point(i, 2 * i % 7), direction));
+    }
+    return gameState;
+  }
+
+  private static void assertSameGame(GameState expected, GameState actual) {
+    assertEquals(expected.getPlayers().size(), actual.getPlayers().size());
+    for (int i = 0; i < expected.getPlayers().size(); i++) {
+      Player expectedPlayer = expected.getPlayers().get(i);
+      Player actualPlayer = actual.getPlayers().get(i);
+      assertEquals(expectedPlayer.getName(), actualPlayer.getName());
+      assertEquals(expectedPlayer.getType(), actualPlayer.getType());
+      assertEquals(expectedPlayer.getColor(), actualPlayer.getColor());
+    }
+    assertEquals(
+        expected.getPlayers().indexOf(expected.getCurrentPlayer()),
+        actual.getPlayers().indexOf(actual.getCurrentPlayer()));
+    assertEquals(expected.getTurnCount(), actual.getTurnCount());
+    assertEquals(
+        expected.getPlayers().indexOf(expected.getWinner()),
+        actual.getPlayers().indexOf(actual.getWinner()));
+
+    List<Unit> expectedUnits = ImmutableList.copyOf(expected.getUnits());
+    List<Unit> actualUnits = ImmutableList.copyOf(actual.getUnits());
+    assertEquals(expectedUnits.size(), actualUnits.size());
+    for (int i = 0; i < expectedUnits.size(); i++) {
+      Unit expectedUnit = expectedUnits.get(i);
+      Unit actualUnit = actualUnits.get(i);
+      String message = "Unit " + i;
+      assertEquals(
+          message,
+          expected.getPlayers().indexOf(expectedUnit.getOwner()),
+          actual.getPlayers().indexOf(actualUnit.getOwner()));
+      assertEquals(message, expectedUnit.getAttackStrength(), actualUnit.getAttackStrength());
+      assertEquals(message, expectedUnit.getHealth(), actualUnit.getHealth());
+      assertEquals(message, expectedUnit.getMaxHealth(), actualUnit.getMaxHealth());
+      assertEquals(message, expectedUnit.getEnergy(), actualUnit.getEnergy());
+      assertEquals(message, expectedUnit.getMaxEnergy(), actualUnit.getMaxEnergy());
+      for (int side = 0; side < UnitStore.SIDES; side++) {
+        assertEquals(message, expectedUnit.getArmor(side), actualUnit.getArmor(side));
+        assertEquals(message, expectedUnit.getMaxArmor(side), actualUnit.getMaxArmor(side));
+      }
+      assertEquals(message, expected.getPosition(expectedUnit), actual.getPosition(actualUnit));
+    }
+  }
+
+  /** Few enough that a store's stats for them fit in an array, but too many for the heap. */
+  private static final int HUGE_UNIT_COUNT = 100_000_000;
+  /** The offset of the player count, after the magic number and the version. */
+  private static final int PLAYER_COUNT = Integer.BYTES + Short.BYTES;
+  private static final int UNIT_COUNT = 12;
+}
@@ -0,0 +1,186 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.heckcorp.spacegame.model.TestGames.createEmptyGame;
+import static org.heckcorp.spacegame.model.TestGames.describe;
+import static org.heckcorp.spacegame.model.TestGames.imageId;
+import static org.junit.Assert.assertEquals;
+
+public class GameStateTest {
+  @Test
+  public void undoRestoresStateExactly() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    for (int trial = 0; trial < TRIALS; trial++) {
+      GameState gameState = createGame(random);
+      playRandomly(gameState, random, random.nextInt(MAX_COMMANDS));
+      List<String> before = describe(gameState);
+      List<Unit> unitsBefore = ImmutableList.copyOf(gameState.getUnits());
+
+      int mark = gameState.mark();
+      playRandomly(gameState, random, random.nextInt(MAX_COMMANDS));
+      gameState.undo(mark);
+
+      assertEquals("Trial " + trial, before, describe(gameState));
+      // The same units, not just units like them.
+      assertEquals("Trial " + trial, unitsBefore, ImmutableList.copyOf(gameState.getUnits()));
+    }
+  }
+
+  @Test
+  public void nestedUndoRestoresEachMark() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    for (int trial = 0; trial < TRIALS; trial++) {
+      GameState gameState = createGame(random);
+      List<String> atOuterMark = describe(gameState);
+      List<Unit> unitsAtOuterMark = ImmutableList.copyOf(gameState.getUnits());
+      int outerMark = gameState.mark();
+      playRandomly(gameState, random, random.nextInt(MAX_COMMANDS));
+      List<String> atInnerMark = describe(gameState);
+      List<Unit> unitsAtInnerMark = ImmutableList.copyOf(gameState.getUnits());
+      int innerMark = gameState.mark();
+      playRandomly(gameState, random, random.nextInt(MAX_COMMANDS));
+
+      gameState.undo(innerMark);
+      assertEquals("Trial " + trial, atInnerMark, describe(gameState));
+      assertEquals("Trial " + trial, unitsAtInnerMark, ImmutableList.copyOf(gameState.getUnits()));
+      gameState.undo(outerMark);
+      assertEquals("Trial " + trial, atOuterMark, describe(gameState));
+      assertEquals("Trial " + trial, unitsAtOuterMark, ImmutableList.copyOf(gameState.getUnits()));
+    }
+  }
+
+  @Test
+  public void hashMatchesRecomputedHashAfterEachCommandAndUndo() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    for (int trial = 0; trial < TRIALS; trial++) {
+      GameState gameState = createGame(random);
+      assertEquals("Trial " + trial, recomputeHash(gameState), gameState.getHash());
+      int mark = gameState.mark();
+      int commands = random.nextInt(MAX_COMMANDS);
+      for (int i = 0; i < commands; i++) {
+        playRandomly(gameState, random, 1);
+        assertEquals("Trial " + trial, recomputeHash(gameState), gameState.getHash());
+      }
+
+      gameState.undo(mark);
+
+      assertEquals("Trial " + trial, recomputeHash(gameState), gameState.getHash());
+    }
+  }
+
+  @Test
+  public void unitsKeepTheirOrderWhenManyAreDestroyed() {
+    GameState gameState = createEmptyGame();
+    Player computer = gameState.getPlayers().get(0);
+    UnitStore unitStore = new UnitStore(MANY_UNITS);
+    List<Unit> targets = Lists.newArrayList();
+    for (int i = 0; i < MANY_UNITS; i++) {
+      // Every fourth unit is the computer's; the human's are destroyed by one attack.
+      Unit unit =
+          i % 4 == 0
+              ? TestGames.createUnit(unitStore, computer)
+              : unitStore.allocate(
+                  gameState.getPlayers().get(1), imageId, Unit.DEFAULT_ATTACK_STRENGTH, 1, 0, 0);
+      gameState.addUnit(unit, new MapPosition(new Point(i % CORNER_SIZE, 0), Direction.NORTH));
+      if (i % 4 != 0) {
+        targets.add(unit);
+      }
+    }
+    Unit attacker = ImmutableList.copyOf(gameState.getUnits()).get(0);
+    List<Unit> remaining = Lists.newArrayList(gameState.getUnits());
+    // All but one, so that the game goes on.
+    for (Unit target : targets.subList(0, targets.size() - 1)) {
+      if (!gameState.attack(attacker, target)) {
+        gameState.endTurn();
+        gameState.attack(attacker, target);
+      }
+      remaining.remove(target);
+    }
+
+    assertEquals(remaining, ImmutableList.copyOf(gameState.getUnits()));
+    assertEquals(remaining.size(), gameState.getUnits().size());
+    assertEquals(recomputeHash(gameState), gameState.getHash());
+
+    List<String> before = describe(gameState);
+    int mark = gameState.mark();
+    gameState.endTurn();
+    gameState.attack(attacker, targets.get(targets.size() - 1));
+    gameState.undo(mark);
+
+    assertEquals(before, describe(gameState));
+    assertEquals(remaining, ImmutableList.copyOf(gameState.getUnits()));
+  }
+
+  /**
+   * Plays random moves, turns, attacks, ends of turn and new units, on a crowded map where units
+   * are soon destroyed and the game is often won.
+   */
+  private static void playRandomly(GameState gameState, SplittableRandom random, int commands) {
+    for (int i = 0; i < commands; i++) {
+      List<Unit> units = ImmutableList.copyOf(gameState.getUnits());
+      if (units.isEmpty()) {
+        return;
+      }
+      Unit unit = units.get(random.nextInt(units.size()));
+      switch (random.nextInt(6)) {
+        case 0 -> gameState.moveForward(unit);
+        case 1 -> gameState.rotateLeft(unit);
+        case 2 -> gameState.rotateRight(unit);
+        case 3 -> gameState.attack(unit, units.get(random.nextInt(units.size())));
+        case 4 -> gameState.endTurn();
+        default -> addRandomUnit(gameState, random);
+      }
+    }
+  }
+
+  /** Returns the hash of the game worked out from scratch, rather than kept up to date. */
+  private static long recomputeHash(GameState gameState) {
+    long hash =
+        ZobristKeys.forPlayer(gameState.getPlayers().indexOf(gameState.getCurrentPlayer()));
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      hash ^= ZobristKeys.forUnit(unit, position);
+    }
+    return hash;
+  }
+
+  private static GameState createGame(SplittableRandom random) {
+    GameState gameState = createEmptyGame();
+    for (int i = 0; i < INITIAL_UNITS; i++) {
+      addRandomUnit(gameState, random);
+    }
+    return gameState;
+  }
+
+  /** Adds a fragile unit for a random player, somewhere in a small corner of the map. */
+  private static void addRandomUnit(GameState gameState, SplittableRandom random) {
+    ImmutableList<Player> players = gameState.getPlayers();
+    Unit unit =
+        new Unit(
+            players.get(random.nextInt(players.size())),
+            imageId,
+            Unit.DEFAULT_ATTACK_STRENGTH,
+            1 + random.nextInt(Unit.DEFAULT_MAX_HEALTH),
+            Unit.DEFAULT_MAX_ENERGY,
+            random.nextInt(Unit.DEFAULT_ATTACK_STRENGTH));
+    Point point = new Point(random.nextInt(CORNER_SIZE), random.nextInt(CORNER_SIZE));
+    Direction direction = Direction.values()[random.nextInt(Direction.values().length)];
+    gameState.addUnit(unit, new MapPosition(point, direction));
+  }
+
+  private static final int CORNER_SIZE = 4;
+  private static final int INITIAL_UNITS = 8;
+  private static final int MANY_UNITS = 400;
+  private static final int MAX_COMMANDS = 60;
+  private static final long SEED = 0;
+  private static final int TRIALS = 500;
+}
@@ -0,0 +1,176 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.heckcorp.spacegame.model.TestGames.createEmptyGame;
+import static org.heckcorp.spacegame.model.TestGames.imageId;
+import static org.heckcorp.spacegame.model.TestGames.mapUtils;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A short version of the {@code modelStress} check: writer threads queue random commands, one of
+ * them only if nothing has changed since its snapshot, while reader threads check every snapshot
+ * they get. A single-threaded executor stands in for the FX thread.
+ */
+public class ModelTest {
+  @Test
+  public void snapshotsStayConsistentUnderConcurrentCommands() throws InterruptedException {
+    GameState gameState = createGame();
+    ExecutorService uiExecutor = Executors.newSingleThreadExecutor();
+    Model model = Model.create(mapUtils, gameState, uiExecutor);
+    Queue<String> errors = new ConcurrentLinkedQueue<>();
+    AtomicBoolean writing = new AtomicBoolean(true);
+
+    List<Thread> writers = Lists.newArrayList();
+    for (int i = 0; i < WRITERS; i++) {
+      boolean onlyIfUnchanged = i == 0;
+      SplittableRandom random = new SplittableRandom(i);
+      writers.add(
+          new Thread(
+              () -> {
+                for (int command = 0; command < COMMANDS_PER_WRITER; command++) {
+                  GameSnapshot snapshot = model.getSnapshot();
+                  if (onlyIfUnchanged) {
+                    model.submitIfUnchanged(snapshot, randomCommand(snapshot, random)).join();
+                  } else {
+                    model.submit(randomCommand(snapshot, random)).join();
+                  }
+                }
+              }));
+    }
+    List<Thread> readers = Lists.newArrayList();
+    for (int i = 0; i < READERS; i++) {
+      readers.add(
+          new Thread(
+              () -> {
+                long lastVersion = -1;
+                while (writing.get()) {
+                  GameSnapshot snapshot = model.getSnapshot();
+                  if (snapshot.getVersion() < lastVersion) {
+                    errors.add("Version went from " + lastVersion + " to " + snapshot.getVersion());
+                  }
+                  lastVersion = snapshot.getVersion();
+                  check(snapshot, errors);
+                }
+              }));
+    }
+    writers.forEach(Thread::start);
+    readers.forEach(Thread::start);
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    writing.set(false);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+
+    // Once the writer has run everything queued, the last snapshot must match the game state, and
+    // once the UI executor has too, so must the properties.
+    model
+        .submit(
+            state -> {
+              if (model.getSnapshot().getHash() != state.getHash()) {
+                errors.add("The last snapshot's hash differs from the game's");
+              }
+            })
+        .join();
+    uiExecutor.execute(() -> compare(model, gameState, errors));
+    uiExecutor.shutdown();
+    uiExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    model.shutdown();
+
+    assertEquals(ImmutableList.of(), ImmutableList.copyOf(errors));
+  }
+
+  /** Returns a move, rotation or attack by a random unit, or now and then the end of the turn. */
+  private static Consumer<GameState> randomCommand(
+      GameSnapshot snapshot, SplittableRandom random) {
+    ImmutableList<Unit> units = snapshot.getUnits();
+    if (random.nextInt(END_TURN_ODDS) == 0) {
+      return GameState::endTurn;
+    }
+    Unit unit = units.get(random.nextInt(units.size()));
+    Unit other = units.get(random.nextInt(units.size()));
+    return switch (random.nextInt(4)) {
+      case 0 -> state -> state.rotateLeft(unit);
+      case 1 -> state -> state.rotateRight(unit);
+      case 2 -> state -> state.attack(unit, other);
+      default -> state -> state.moveForward(unit);
+    };
+  }
+
+  /**
+   * Checks that every unit is in the hex its position says, and that a copy of the state hashes
+   * the same as the snapshot. The hash covers every unit's position and stats, so a torn snapshot
+   * would show up there.
+   */
+  private static void check(GameSnapshot snapshot, Queue<String> errors) {
+    String version = "Version " + snapshot.getVersion() + ": ";
+    for (Unit unit : snapshot.getUnits()) {
+      @Nullable MapPosition position = snapshot.getPosition(unit);
+      if (position == null || !snapshot.getUnitsAt(position.position()).contains(unit)) {
+        errors.add(version + "a unit isn't in its hex");
+      }
+    }
+    if (snapshot.copyState().getHash() != snapshot.getHash()) {
+      errors.add(version + "the copied state's hash differs from the snapshot's");
+    }
+  }
+
+  private static void compare(Model model, GameState gameState, Queue<String> errors) {
+    Map<Unit, MapPosition> positions = Maps.newHashMap();
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      positions.put(unit, position);
+    }
+    if (!positions.equals(model.unitPositionsProperty())) {
+      errors.add("The unit positions property differs from the game's positions");
+    }
+    if (!model.currentPlayerProperty().get().equals(gameState.getCurrentPlayer())) {
+      errors.add("The current player property differs from the game's");
+    }
+  }
+
+  /** Returns a game with units that are hard to destroy, so that it goes on for the whole test. */
+  private static GameState createGame() {
+    GameState gameState = createEmptyGame();
+    ImmutableList<Player> players = gameState.getPlayers();
+    UnitStore unitStore = new UnitStore(UNITS_PER_SIDE * 2);
+    for (int i = 0; i < UNITS_PER_SIDE * 2; i++) {
+      Unit unit =
+          unitStore.allocate(
+              players.get(i % 2),
+              imageId,
+              Unit.DEFAULT_ATTACK_STRENGTH,
+              UNIT_HEALTH,
+              Unit.DEFAULT_MAX_ENERGY,
+              Unit.DEFAULT_MAX_ARMOR);
+      gameState.addUnit(unit, new MapPosition(new Point(i, i % 2 * 5), Direction.NORTH));
+    }
+    return gameState;
+  }
+
+  private static final int COMMANDS_PER_WRITER = 2_000;
+  private static final int END_TURN_ODDS = 50;
+  private static final int READERS = 2;
+  private static final int UNIT_HEALTH = 1_000_000;
+  private static final int UNITS_PER_SIDE = 10;
+  private static final int WRITERS = 4;
+}
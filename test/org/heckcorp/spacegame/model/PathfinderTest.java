@@ -0,0 +1,170 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.Point;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the pathfinder against a breadth-first search over every (hex, facing) state of a small
+ * map, from every start position: paths must be as cheap as the search's, and made only of legal
+ * steps.
+ */
+public class PathfinderTest {
+  @Test
+  public void findPathCostsMatchBreadthFirstSearch() {
+    for (MapPosition start : getAllPositions()) {
+      Map<MapPosition, Integer> costs = breadthFirstSearch(start);
+      for (int x = 0; x < SIZE; x++) {
+        for (int y = 0; y < SIZE; y++) {
+          Point destination = new Point(x, y);
+          @Nullable ImmutableList<MapPosition> path = pathfinder.findPath(start, destination);
+          String message = start + " to " + destination;
+          assertNotNull(message, path);
+          assertLegal(message, start, path);
+          assertEquals(message, destination, path.get(path.size() - 1).position());
+          assertEquals(
+              message,
+              getCheapest(costs, position -> position.position().equals(destination)),
+              path.size() - 1);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void findPathToFireCostsMatchBreadthFirstSearch() {
+    for (MapPosition start : getAllPositions()) {
+      Map<MapPosition, Integer> costs = breadthFirstSearch(start);
+      for (int x = 0; x < SIZE; x++) {
+        for (int y = 0; y < SIZE; y++) {
+          Point target = new Point(x, y);
+          Predicate<MapPosition> canFire =
+              position ->
+                  mapUtils.distance(position.position(), target) <= Constants.WEAPON_RANGE
+                      && mapUtils.getTargetHexes(position).contains(target);
+          @Nullable ImmutableList<MapPosition> path = pathfinder.findPathToFire(start, target);
+          String message = start + " to fire at " + target;
+          int cheapest = getCheapest(costs, canFire);
+          if (cheapest < 0) {
+            assertNull(message, path);
+            continue;
+          }
+          assertNotNull(message, path);
+          assertLegal(message, start, path);
+          assertTrue(message, canFire.test(path.get(path.size() - 1)));
+          assertEquals(message, cheapest, path.size() - 1);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void findPathToOffMapDestinationReturnsNull() {
+    MapPosition start = new MapPosition(new Point(2, 2), Direction.NORTH);
+
+    assertNull(pathfinder.findPath(start, new Point(-1, 2)));
+    assertNull(pathfinder.findPath(start, new Point(2, -1)));
+    assertNull(pathfinder.findPath(start, new Point(SIZE, 2)));
+    assertNull(pathfinder.findPath(start, new Point(2, SIZE)));
+  }
+
+  @Test
+  public void findPathFromOffMapStartReturnsNull() {
+    MapPosition start = new MapPosition(new Point(SIZE, 0), Direction.NORTH);
+
+    assertNull(pathfinder.findPath(start, new Point(2, 2)));
+    assertNull(pathfinder.findPathToFire(start, new Point(2, 2)));
+  }
+
+  /**
+   * Checks that the path starts at the start position and that each step after it is a move
+   * forward onto the map or a single turn.
+   */
+  private void assertLegal(String message, MapPosition start, List<MapPosition> path) {
+    assertEquals(message, start, path.get(0));
+    for (int i = 1; i < path.size(); i++) {
+      MapPosition from = path.get(i - 1);
+      MapPosition to = path.get(i);
+      assertTrue(message + ", step " + i + " leaves the map", mapUtils.isInsideMap(to.position()));
+      assertTrue(
+          message + ", step " + i + " from " + from + " to " + to,
+          getSteps(from).contains(to));
+    }
+  }
+
+  /** Returns the fewest moves and turns to every position reachable from the start. */
+  private Map<MapPosition, Integer> breadthFirstSearch(MapPosition start) {
+    Map<MapPosition, Integer> costs = Maps.newHashMap();
+    costs.put(start, 0);
+    Queue<MapPosition> queue = new ArrayDeque<>();
+    queue.add(start);
+    while (!queue.isEmpty()) {
+      MapPosition position = queue.remove();
+      @Nullable Integer cost = costs.get(position);
+      assert cost != null : "@AssumeAssertion(nullness)";
+      for (MapPosition next : getSteps(position)) {
+        if (!costs.containsKey(next)) {
+          costs.put(next, cost + 1);
+          queue.add(next);
+        }
+      }
+    }
+    return costs;
+  }
+
+  /** Returns the positions one move forward, onto the map, or one turn away. */
+  private List<MapPosition> getSteps(MapPosition position) {
+    List<MapPosition> steps = Lists.newArrayList();
+    Point forward = mapUtils.getAdjacentHex(position);
+    if (mapUtils.isInsideMap(forward)) {
+      steps.add(new MapPosition(forward, position.direction()));
+    }
+    steps.add(new MapPosition(position.position(), position.direction().left()));
+    steps.add(new MapPosition(position.position(), position.direction().right()));
+    return steps;
+  }
+
+  /** Returns the lowest cost of any position meeting the goal, or -1 if none is reachable. */
+  private static int getCheapest(Map<MapPosition, Integer> costs, Predicate<MapPosition> goal) {
+    int cheapest = -1;
+    for (Map.Entry<MapPosition, Integer> entry : costs.entrySet()) {
+      if (goal.test(entry.getKey()) && (cheapest < 0 || entry.getValue() < cheapest)) {
+        cheapest = entry.getValue();
+      }
+    }
+    return cheapest;
+  }
+
+  private static List<MapPosition> getAllPositions() {
+    List<MapPosition> positions = Lists.newArrayList();
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        for (Direction direction : Direction.values()) {
+          positions.add(new MapPosition(new Point(x, y), direction));
+        }
+      }
+    }
+    return positions;
+  }
+
+  private static final int SIZE = 7;
+
+  private final MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS, SIZE, SIZE);
+  private final Pathfinder pathfinder = new Pathfinder(mapUtils);
+}
@@ -0,0 +1,75 @@
+package org.heckcorp.spacegame.model;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.heckcorp.spacegame.Constants;
+import org.heckcorp.spacegame.ui.map.MapUtils;
+import org.heckcorp.spacegame.ui.map.ViewResources;
+
+import java.util.List;
+import java.util.Map;
+
+/** Games, and descriptions of games to compare them by, for the model tests. */
+final class TestGames {
+  /** Returns a game between a computer and a human player, the computer first, with no units. */
+  static GameState createEmptyGame() {
+    Player computer = new Player("Computer", Player.Type.COMPUTER, .75, .25, .25);
+    Player human = new Player("Human", Player.Type.HUMAN, .25, .45, .85);
+    return new GameState(mapUtils, ImmutableList.of(computer, human));
+  }
+
+  static Unit createUnit(UnitStore unitStore, Player owner) {
+    return unitStore.allocate(
+        owner,
+        imageId,
+        Unit.DEFAULT_ATTACK_STRENGTH,
+        Unit.DEFAULT_MAX_HEALTH,
+        Unit.DEFAULT_MAX_ENERGY,
+        Unit.DEFAULT_MAX_ARMOR);
+  }
+
+  /**
+   * Returns the turn and, in the order they were added, every unit's owner, position and stats,
+   * and which units share its hex. Units are told apart by their order, so a game and its copy, or
+   * a game and the same game loaded or recovered, have the same description.
+   */
+  static List<String> describe(GameState gameState) {
+    ImmutableList.Builder<String> description = ImmutableList.builder();
+    ImmutableList<Player> players = gameState.getPlayers();
+    description.add(
+        "Turn "
+            + gameState.getTurnCount()
+            + ", player "
+            + players.indexOf(gameState.getCurrentPlayer())
+            + ", winner "
+            + players.indexOf(gameState.getWinner()));
+    Map<Unit, Integer> indexes = Maps.newHashMap();
+    for (Unit unit : gameState.getUnits()) {
+      indexes.put(unit, indexes.size());
+    }
+    for (Unit unit : gameState.getUnits()) {
+      @Nullable MapPosition position = gameState.getPosition(unit);
+      assert position != null : "@AssumeAssertion(nullness)";
+      // Units sharing a hex may come back from an undo in a different order, so these are sorted.
+      description.add(
+          "Player "
+              + players.indexOf(unit.getOwner())
+              + " at "
+              + position
+              + ", stats "
+              + UnitStats.of(unit)
+              + ", sharing its hex with "
+              + gameState.getUnitsAt(position.position()).stream()
+                  .map(indexes::get)
+                  .sorted()
+                  .toList());
+    }
+    return description.build();
+  }
+
+  private TestGames() {}
+
+  static final ViewResources.Identifier imageId = new ViewResources.Identifier();
+  static final MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS);
+}
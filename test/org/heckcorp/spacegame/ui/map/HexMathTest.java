@@ -0,0 +1,157 @@
+package org.heckcorp.spacegame.ui.map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks HexMath against brute force on every hex, and every pair of hexes, in a 20x20 map: a
+ * table of neighbours in offset coordinates, a breadth-first search over them for distances, and
+ * the angle between the hexes' centres for directions. Ranges are checked against the hexes
+ * {@link HexMath#distance} puts within them.
+ */
+public class HexMathTest {
+  @Test
+  public void neighborsMatchOffsetTable() {
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        for (int direction = 0; direction < 6; direction++) {
+          Point expected = offsetNeighbor(x, y, direction);
+          String message = "(" + x + ", " + y + ") direction " + direction;
+          assertEquals(message, expected.x(), HexMath.neighborX(x, direction));
+          assertEquals(message, expected.y(), HexMath.neighborY(x, y, direction));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void distanceMatchesBreadthFirstSearch() {
+    for (int x1 = 0; x1 < SIZE; x1++) {
+      for (int y1 = 0; y1 < SIZE; y1++) {
+        int[][] steps = breadthFirstSearch(x1, y1);
+        for (int x2 = 0; x2 < SIZE; x2++) {
+          for (int y2 = 0; y2 < SIZE; y2++) {
+            assertEquals(
+                "(" + x1 + ", " + y1 + ") to (" + x2 + ", " + y2 + ")",
+                steps[x2][y2],
+                HexMath.distance(x1, y1, x2, y2));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void directionMatchesAngleBetweenCenters() {
+    for (int x1 = 0; x1 < SIZE; x1++) {
+      for (int y1 = 0; y1 < SIZE; y1++) {
+        for (int x2 = 0; x2 < SIZE; x2++) {
+          for (int y2 = 0; y2 < SIZE; y2++) {
+            double dx = centerX(x2) - centerX(x1);
+            double dy = centerY(x1, y1) - centerY(x2, y2);
+            // Degrees clockwise from the start of the north sector, 30 degrees west of north.
+            double sectors = (90 + 30 - Math.toDegrees(Math.atan2(dy, dx))) / 60;
+            // A hex on a border between sectors belongs to the clockwise one, which starts there.
+            long sector =
+                Math.abs(sectors - Math.rint(sectors)) < 1e-9
+                    ? Math.round(sectors)
+                    : (long) Math.floor(sectors);
+            assertEquals(
+                "(" + x1 + ", " + y1 + ") to (" + x2 + ", " + y2 + ")",
+                Math.floorMod(sector, 6),
+                HexMath.direction(x1, y1, x2, y2));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void forEachInRangeVisitsEveryHexInRangeOnce() {
+    for (int x = 0; x < SIZE; x++) {
+      for (int y = 0; y < SIZE; y++) {
+        for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+          String message = "(" + x + ", " + y + ") radius " + radius;
+          List<Point> visited = Lists.newArrayList();
+          HexMath.forEachInRange(x, y, radius, (x2, y2) -> visited.add(new Point(x2, y2)));
+          Set<Point> expected = Sets.newHashSet();
+          // Off the map too: the range doesn't stop at its edges.
+          for (int x2 = x - radius; x2 <= x + radius; x2++) {
+            for (int y2 = y - radius; y2 <= y + radius; y2++) {
+              if (HexMath.distance(x, y, x2, y2) <= radius) {
+                expected.add(new Point(x2, y2));
+              }
+            }
+          }
+          assertEquals(message, visited.size(), Sets.newHashSet(visited).size());
+          assertEquals(message, expected, Sets.newHashSet(visited));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void hexIsSouthEastOfItself() {
+    assertEquals(2, HexMath.direction(3, 4, 3, 4));
+  }
+
+  /** Returns the number of steps from (x, y) to every hex, staying on the map. */
+  private static int[][] breadthFirstSearch(int x, int y) {
+    int[][] steps = new int[SIZE][SIZE];
+    for (int[] column : steps) {
+      Arrays.fill(column, -1);
+    }
+    steps[x][y] = 0;
+    Queue<Point> queue = new ArrayDeque<>();
+    queue.add(new Point(x, y));
+    while (!queue.isEmpty()) {
+      Point hex = queue.remove();
+      for (int direction = 0; direction < 6; direction++) {
+        Point neighbor = offsetNeighbor(hex.x(), hex.y(), direction);
+        if (neighbor.x() >= 0
+            && neighbor.x() < SIZE
+            && neighbor.y() >= 0
+            && neighbor.y() < SIZE
+            && steps[neighbor.x()][neighbor.y()] < 0) {
+          steps[neighbor.x()][neighbor.y()] = steps[hex.x()][hex.y()] + 1;
+          queue.add(neighbor);
+        }
+      }
+    }
+    return steps;
+  }
+
+  private static double centerX(int x) {
+    return 1.5 * x;
+  }
+
+  /** Returns the y of the hex's centre, with the odd columns shifted half a hex down. */
+  private static double centerY(int x, int y) {
+    return Math.sqrt(3) * (y + (x & 1) / 2.0);
+  }
+
+  private static Point offsetNeighbor(int x, int y, int direction) {
+    boolean odd = x % 2 != 0;
+    return switch (direction) {
+      case 0 -> new Point(x, y - 1);
+      case 1 -> new Point(x + 1, odd ? y : y - 1);
+      case 2 -> new Point(x + 1, odd ? y + 1 : y);
+      case 3 -> new Point(x, y + 1);
+      case 4 -> new Point(x - 1, odd ? y + 1 : y);
+      case 5 -> new Point(x - 1, odd ? y : y - 1);
+      default -> throw new IllegalArgumentException("No direction " + direction);
+    };
+  }
+
+  private static final int MAX_RADIUS = 6;
+  private static final int SIZE = 20;
+}
@@ -0,0 +1,71 @@
+package org.heckcorp.spacegame.ui.map;
+
+import org.heckcorp.spacegame.Constants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the distances and directions MapUtils looks up in its offset table against HexMath, on
+ * every pair of hexes in a small map, and off it where the table falls back to HexMath.
+ */
+public class HexOffsetTableTest {
+  @Test
+  public void mapUtilsMatchesHexMathOnEveryPair() {
+    MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS, WIDTH, HEIGHT);
+
+    assertTrue(mapUtils.hasOffsetTable());
+    assertMatchesHexMath(mapUtils);
+  }
+
+  @Test
+  public void mapUtilsWithNoBudgetMatchesHexMath() {
+    MapUtils mapUtils = new MapUtils(Constants.HEX_RADIUS, WIDTH, HEIGHT, 0);
+
+    assertFalse(mapUtils.hasOffsetTable());
+    assertMatchesHexMath(mapUtils);
+  }
+
+  @Test
+  public void offsetsOutsideTableFallBackToHexMath() {
+    HexOffsetTable table = HexOffsetTable.create(WIDTH, HEIGHT);
+
+    // Hexes up to a map's width and height off every side, so some offsets are too big.
+    for (int x1 = -WIDTH; x1 < 2 * WIDTH; x1++) {
+      for (int y1 = -HEIGHT; y1 < 2 * HEIGHT; y1++) {
+        for (int x2 = -WIDTH; x2 < 2 * WIDTH; x2++) {
+          for (int y2 = -HEIGHT; y2 < 2 * HEIGHT; y2++) {
+            String message = "(" + x1 + ", " + y1 + ") to (" + x2 + ", " + y2 + ")";
+            assertEquals(
+                message, HexMath.distance(x1, y1, x2, y2), table.distance(x1, y1, x2, y2));
+            assertEquals(
+                message, HexMath.direction(x1, y1, x2, y2), table.direction(x1, y1, x2, y2));
+          }
+        }
+      }
+    }
+  }
+
+  private static void assertMatchesHexMath(MapUtils mapUtils) {
+    for (int x1 = 0; x1 < WIDTH; x1++) {
+      for (int y1 = 0; y1 < HEIGHT; y1++) {
+        for (int x2 = 0; x2 < WIDTH; x2++) {
+          for (int y2 = 0; y2 < HEIGHT; y2++) {
+            String message = "(" + x1 + ", " + y1 + ") to (" + x2 + ", " + y2 + ")";
+            assertEquals(
+                message, HexMath.distance(x1, y1, x2, y2), mapUtils.distance(x1, y1, x2, y2));
+            assertEquals(
+                message,
+                HexMath.direction(x1, y1, x2, y2),
+                mapUtils.getHexDirection(new Point(x1, y1), new Point(x2, y2)));
+          }
+        }
+      }
+    }
+  }
+
+  private static final int HEIGHT = 7;
+  private static final int WIDTH = 9;
+}